@@ -5,6 +5,7 @@ plugins {
     alias(libs.plugins.run.velocity)
     alias(libs.plugins.blossom)
     alias(libs.plugins.jetbrains.gradle)
+    alias(libs.plugins.jmh)
 
     eclipse
     idea
@@ -39,6 +40,18 @@ dependencies {
     compileOnly(libs.geyser)
     compileOnly(libs.floodgate)
     implementation(libs.bstats)
+    jmh(libs.velocity.api)
+
+    testImplementation(libs.velocity.api)
+    testImplementation(platform(libs.junit.bom))
+    testImplementation(libs.junit.jupiter)
+    testRuntimeOnly(libs.junit.platform.launcher)
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    resultFormat.set("JSON") // Keep results diffable, so regressions show up in reviews
+    resultsFile.set(layout.buildDirectory.file("reports/jmh/results.json"))
 }
 
 tasks {
@@ -93,6 +106,13 @@ tasks {
         failFast = false
     }
 
+    register<JavaExec>("loadTest") {
+        group = "verification"
+        description = "Simulates players joining and a pack release rollout against a stub proxy, GitHub API and pack CDN."
+        classpath = sourceSets["jmh"].runtimeClasspath
+        mainClass.set("io.github.alathra.vpack.benchmark.LoadTest")
+    }
+
     runVelocity {
         velocityVersion("3.4.0-SNAPSHOT")
 
@@ -0,0 +1,80 @@
+package io.github.alathra.vpack.benchmark;
+
+import com.velocitypowered.api.network.ProtocolVersion;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import io.github.alathra.vpack.VPack;
+import io.github.alathra.vpack.pack.resource.PackInfo;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * The plugin started against a stub proxy with the default config, in a temporary data directory.
+ * The main pack points at a local {@link PackStub}, and its hash is known once the environment is started.
+ */
+final class BenchmarkEnvironment implements AutoCloseable {
+    private final Path dataDirectory;
+    private final PackStub packStub;
+    private final VPack plugin;
+
+    /**
+     * Starts the plugin.
+     *
+     * @param packSize the size of the main pack in bytes
+     * @throws IOException if the data directory or pack stub could not be created
+     */
+    BenchmarkEnvironment(int packSize) throws IOException {
+        this.dataDirectory = Files.createTempDirectory("vpack-benchmark");
+        this.packStub = new PackStub(packSize);
+        Files.writeString(dataDirectory.resolve("data.yml"), "pack-uri: " + packStub.getUrl() + "\n");
+
+        this.plugin = new VPack(Stubs.of(ProxyServer.class), LoggerFactory.getLogger("VPack"), dataDirectory, null);
+        plugin.onProxyInitialization(null);
+        getPackInfo().updateSha1().join();
+    }
+
+    PackInfo getPackInfo() {
+        return plugin.getPackHandler().getPackInfo();
+    }
+
+    PackStub getPackStub() {
+        return packStub;
+    }
+
+    VPack getPlugin() {
+        return plugin;
+    }
+
+    /**
+     * Creates a player connected with the latest protocol version.
+     *
+     * @param name the name of the player
+     * @return the player
+     */
+    static Player player(String name) {
+        final UUID uuid = UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8));
+        return Stubs.of(Player.class, Map.of(
+            "getUsername", args -> name,
+            "getUniqueId", args -> uuid,
+            "getProtocolVersion", args -> ProtocolVersion.MAXIMUM_VERSION
+        ));
+    }
+
+    @Override
+    public void close() throws IOException {
+        plugin.onProxyShutdown(null);
+        packStub.close();
+        try (Stream<Path> files = Files.walk(dataDirectory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList())
+                Files.deleteIfExists(file);
+        }
+    }
+}
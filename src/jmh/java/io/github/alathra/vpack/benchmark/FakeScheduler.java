@@ -0,0 +1,94 @@
+package io.github.alathra.vpack.benchmark;
+
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import com.velocitypowered.api.scheduler.Scheduler;
+import com.velocitypowered.api.scheduler.TaskStatus;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A proxy scheduler backed by a thread pool, so delayed and repeating plugin tasks run like they would on the proxy.
+ */
+final class FakeScheduler implements AutoCloseable {
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(4, r -> {
+        final Thread thread = new Thread(r, "Fake Scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Scheduler scheduler = Stubs.of(Scheduler.class, Map.of(
+        "buildTask", args -> taskBuilder(args[0], args[1])
+    ));
+
+    Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    private Scheduler.TaskBuilder taskBuilder(Object plugin, Object task) {
+        if (!(task instanceof Runnable runnable))
+            throw new UnsupportedOperationException("Only runnable tasks are supported");
+
+        final long[] delay = {0};
+        final long[] repeat = {0};
+        final AtomicReference<Scheduler.TaskBuilder> builder = new AtomicReference<>();
+        builder.set(Stubs.of(Scheduler.TaskBuilder.class, Map.of(
+            "delay", args -> {
+                delay[0] = nanos(args);
+                return builder.get();
+            },
+            "repeat", args -> {
+                repeat[0] = nanos(args);
+                return builder.get();
+            },
+            "clearDelay", args -> {
+                delay[0] = 0;
+                return builder.get();
+            },
+            "clearRepeat", args -> {
+                repeat[0] = 0;
+                return builder.get();
+            },
+            "schedule", args -> schedule(plugin, runnable, delay[0], repeat[0])
+        )));
+        return builder.get();
+    }
+
+    private ScheduledTask schedule(Object plugin, Runnable runnable, long delay, long repeat) {
+        final Runnable task = () -> {
+            try {
+                runnable.run();
+            } catch (Throwable t) {
+                t.printStackTrace(); // Keep repeating tasks alive, like the proxy does
+            }
+        };
+
+        final ScheduledFuture<?> future = repeat > 0
+            ? executor.scheduleAtFixedRate(task, delay, repeat, TimeUnit.NANOSECONDS)
+            : executor.schedule(task, delay, TimeUnit.NANOSECONDS);
+
+        return Stubs.of(ScheduledTask.class, Map.of(
+            "plugin", args -> plugin,
+            "status", args -> future.isCancelled() ? TaskStatus.CANCELLED : future.isDone() ? TaskStatus.FINISHED : TaskStatus.SCHEDULED,
+            "cancel", args -> future.cancel(false)
+        ));
+    }
+
+    /**
+     * Gets a delay passed either as an amount and unit or as a duration.
+     */
+    private static long nanos(Object[] args) {
+        if (args.length == 1)
+            return ((Duration) args[0]).toNanos();
+        return ((TimeUnit) args[1]).toNanos((Long) args[0]);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
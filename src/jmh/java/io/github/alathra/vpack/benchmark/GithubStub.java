@@ -0,0 +1,150 @@
+package io.github.alathra.vpack.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A local stand-in for the GitHub REST API, serving one repository whose latest release can be replaced.
+ * Responses carry an ETag and rate limit headers like the real API, and conditional requests are answered with
+ * {@code 304 Not Modified} without counting against the rate limit.
+ */
+final class GithubStub implements AutoCloseable {
+    private static final int RATE_LIMIT = 5000;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String owner;
+    private final String repository;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final AtomicInteger remaining = new AtomicInteger(RATE_LIMIT);
+    private final long resetAt = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 3600;
+    private volatile Release latest;
+
+    /**
+     * Starts serving the API on a free local port.
+     *
+     * @param owner      the owner of the repository
+     * @param repository the name of the repository
+     * @throws IOException if the server could not be started
+     */
+    GithubStub(String owner, String repository) throws IOException {
+        this.owner = owner;
+        this.repository = repository;
+
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 64);
+        this.executor = Executors.newFixedThreadPool(2, r -> {
+            final Thread thread = new Thread(r, "GitHub Stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Publishes a release, which is returned as the latest release from then on.
+     *
+     * @param id   the id of the release, also used as the id of its asset
+     * @param tag  the tag of the release
+     * @param pack the url the pack asset is downloaded from
+     * @param size the size of the pack asset in bytes
+     */
+    void release(long id, String tag, URL pack, long size) {
+        latest = new Release(id, tag, pack.toString(), size);
+    }
+
+    String getApiUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    long getRequests() {
+        return requests.sum();
+    }
+
+    long getNotModified() {
+        return notModified.sum();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.increment();
+            final String repoPath = "/repos/" + owner + "/" + repository;
+            final String path = exchange.getRequestURI().getPath();
+
+            final String body;
+            if (path.equals(repoPath)) {
+                body = repositoryJson(repoPath);
+            } else if (path.equals(repoPath + "/releases/latest") && latest != null) {
+                body = latest.toJson(getApiUrl() + repoPath);
+            } else {
+                send(exchange, 404, "{\"message\":\"Not Found\"}", null);
+                return;
+            }
+
+            final String etag = "\"" + Integer.toHexString(body.hashCode()) + "\"";
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.increment();
+                send(exchange, 304, null, etag);
+                return;
+            }
+
+            remaining.updateAndGet(left -> Math.max(left - 1, 0));
+            send(exchange, 200, body, etag);
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, String body, String etag) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.getResponseHeaders().set("X-RateLimit-Limit", String.valueOf(RATE_LIMIT));
+        exchange.getResponseHeaders().set("X-RateLimit-Remaining", String.valueOf(remaining.get()));
+        exchange.getResponseHeaders().set("X-RateLimit-Used", String.valueOf(RATE_LIMIT - remaining.get()));
+        exchange.getResponseHeaders().set("X-RateLimit-Reset", String.valueOf(resetAt));
+        exchange.getResponseHeaders().set("X-RateLimit-Resource", "core");
+        if (etag != null)
+            exchange.getResponseHeaders().set("ETag", etag);
+
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private String repositoryJson(String repoPath) {
+        return """
+            {"id":1,"name":"%s","full_name":"%s/%s","owner":{"login":"%s","id":1,"type":"Organization"},"url":"%s","html_url":"https://github.com/%s/%s"}"""
+            .formatted(repository, owner, repository, owner, getApiUrl() + repoPath, owner, repository);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private record Release(long id, String tag, String downloadUrl, long size) {
+        String toJson(String repoUrl) {
+            return """
+                {"id":%d,"tag_name":"%s","name":"%s","url":"%s/releases/%d","assets":[{"id":%d,"name":"pack-%s.zip","size":%d,"content_type":"application/zip","state":"uploaded","url":"%s/releases/assets/%d","browser_download_url":"%s","created_at":"2026-01-01T00:00:00Z","updated_at":"2026-01-01T00:00:00Z"}]}"""
+                .formatted(id, tag, tag, repoUrl, id, id, tag, size, repoUrl, id, downloadUrl);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package io.github.alathra.vpack.benchmark;
+
+import io.github.alathra.vpack.utils.HexUtil;
+import io.github.alathra.vpack.utils.ResourcePackUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting a pack hash, which happens for every pack info that is built.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HexBenchmark {
+    private byte[] sha1;
+    private String hex;
+
+    @Setup
+    public void setup() {
+        sha1 = new byte[20];
+        new Random(0).nextBytes(sha1);
+        hex = HexUtil.toString(sha1);
+    }
+
+    /**
+     * The formatting used before {@link HexUtil}, kept here as the baseline.
+     */
+    @Benchmark
+    public String stringFormatHex() {
+        final StringBuilder hexString = new StringBuilder(sha1.length * 2);
+        for (byte b : sha1) {
+            hexString.append(String.format("%02x", b)); // lowercase hex
+        }
+        return hexString.toString();
+    }
+
+    @Benchmark
+    public String hexUtilToString() {
+        return HexUtil.toString(sha1);
+    }
+
+    @Benchmark
+    public byte[] hexUtilToByteArray() {
+        return HexUtil.toByteArray(hex);
+    }
+
+    @Benchmark
+    public UUID packId() {
+        return ResourcePackUtil.packId(sha1);
+    }
+}
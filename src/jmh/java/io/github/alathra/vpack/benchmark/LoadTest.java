@@ -0,0 +1,257 @@
+package io.github.alathra.vpack.benchmark;
+
+import com.velocitypowered.api.event.player.ServerPostConnectEvent;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import io.github.alathra.vpack.VPack;
+import io.github.alathra.vpack.listeners.JoinHandler;
+import io.github.alathra.vpack.metrics.PackMetrics;
+import io.github.alathra.vpack.pack.resource.PackInfo;
+import io.github.alathra.vpack.utils.HexUtil;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Simulates players joining a proxy and a new pack release being rolled out to them, without any network access.
+ * The plugin runs against a stub proxy, polls a local stand-in for the GitHub API, and the simulated clients download
+ * the pack from a local stand-in for the pack CDN.
+ * <p>
+ * Run with {@code ./gradlew loadTest --args="players=2000 join-rate=200"}. Options are passed as {@code key=value}:
+ * <ul>
+ *     <li>{@code players}: the amount of simulated players (default 2000)</li>
+ *     <li>{@code join-rate}: players joining per second (default 200)</li>
+ *     <li>{@code pack-size}: the size of the pack in bytes (default 1 MiB)</li>
+ *     <li>{@code cdn-rate}: the rate each download is served at in bytes per second, 0 for unlimited (default 4 MiB)</li>
+ *     <li>{@code paced}: whether the rollout is sent in waves (default false)</li>
+ *     <li>{@code timeout}: seconds to wait for each phase (default 120)</li>
+ * </ul>
+ */
+public final class LoadTest {
+    private static final String OWNER = "Alathra";
+    private static final String REPOSITORY = "Alathra-Resourcepack";
+
+    private final int players;
+    private final int joinRate;
+    private final int packSize;
+    private final long cdnRate;
+    private final boolean paced;
+    private final long timeoutNanos;
+
+    private LoadTest(Map<String, String> options) {
+        this.players = Integer.parseInt(options.getOrDefault("players", "2000"));
+        this.joinRate = Math.max(Integer.parseInt(options.getOrDefault("join-rate", "200")), 1);
+        this.packSize = Integer.parseInt(options.getOrDefault("pack-size", String.valueOf(1024 * 1024)));
+        this.cdnRate = Long.parseLong(options.getOrDefault("cdn-rate", String.valueOf(4 * 1024 * 1024)));
+        this.paced = Boolean.parseBoolean(options.getOrDefault("paced", "false"));
+        this.timeoutNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("timeout", "120")));
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (separator < 0)
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        new LoadTest(options).run();
+        System.exit(0); // The proxy stubs leave non-daemon threads of the HTTP clients behind
+    }
+
+    private void run() throws Exception {
+        final Path dataDirectory = Files.createTempDirectory("vpack-loadtest");
+        try (
+            PackStub v1 = new PackStub(packSize, 1, cdnRate);
+            PackStub v2 = new PackStub(packSize, 2, cdnRate);
+            GithubStub github = new GithubStub(OWNER, REPOSITORY);
+            FakeScheduler scheduler = new FakeScheduler()
+        ) {
+            github.release(1, "v1", v1.getUrl(), packSize);
+            writeConfig(dataDirectory, github.getApiUrl());
+
+            final SimulatedClients clients = new SimulatedClients(() -> VPack.getInstance().getPackHandler().getPackInfo().distribute());
+            final ProxyServer proxy = Stubs.of(ProxyServer.class, Map.of(
+                "getAllPlayers", args -> clients.getOnline(),
+                "getPlayerCount", args -> clients.getOnlineCount(),
+                "getPlayer", args -> clients.getOnline().stream()
+                    .filter(player -> args[0].equals(player.getUniqueId()) || args[0].equals(player.getUsername()))
+                    .findFirst(),
+                "getScheduler", args -> scheduler.getScheduler()
+            ));
+
+            final VPack plugin = new VPack(proxy, LoggerFactory.getLogger("VPack"), dataDirectory, null);
+            plugin.onProxyInitialization(null);
+            try {
+                final PackInfo packInfo = plugin.getPackHandler().getPackInfo();
+                await("initial release", packInfo::isConfigured);
+                System.out.printf(Locale.ROOT, "Simulating %d players joining at %d/s, %s pack, %s per download%n%n",
+                    players, joinRate, bytes(packSize), cdnRate <= 0 ? "unlimited" : bytes(cdnRate) + "/s");
+
+                joins(packInfo, clients, hash(v1));
+                rollout(clients, github, v2);
+
+                System.out.printf(Locale.ROOT, "GitHub API: %d requests, %d not modified%n", github.getRequests(), github.getNotModified());
+                if (clients.getFailures() > 0)
+                    System.out.printf(Locale.ROOT, "Failed client downloads: %d%n", clients.getFailures());
+            } finally {
+                plugin.onProxyShutdown(null);
+            }
+        } finally {
+            delete(dataDirectory);
+        }
+    }
+
+    /**
+     * Connects the players at the join rate and waits until all of them loaded the pack.
+     */
+    private void joins(PackInfo packInfo, SimulatedClients clients, String hash) throws InterruptedException {
+        final JoinHandler handler = new JoinHandler(packInfo);
+        final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        final CountDownLatch joined = new CountDownLatch(players);
+        final ScheduledExecutorService joinThreads = Executors.newScheduledThreadPool(8, r -> {
+            final Thread thread = new Thread(r, "Simulated Join");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        final long startedAt = System.nanoTime();
+        try {
+            for (int i = 0; i < players; i++) {
+                final String name = "Player" + i;
+                joinThreads.schedule(() -> {
+                    final Player player = clients.connect(name);
+                    final long joinStartedAt = System.nanoTime();
+                    handler.onPlayerConnect(new ServerPostConnectEvent(player, null));
+                    latencies.add(System.nanoTime() - joinStartedAt);
+                    joined.countDown();
+                }, TimeUnit.SECONDS.toNanos(i) / joinRate, TimeUnit.NANOSECONDS);
+            }
+
+            if (!joined.await(timeoutNanos, TimeUnit.NANOSECONDS))
+                throw new IllegalStateException("Players did not finish joining in time");
+            await("players loading the initial pack", () -> clients.getLoaded(hash) >= players);
+        } finally {
+            joinThreads.shutdownNow();
+        }
+
+        System.out.println("Join path");
+        System.out.println("  handler latency " + percentiles(latencies.stream().mapToLong(Long::longValue).toArray()));
+        System.out.println("  pack load time  " + percentiles(clients.getLoadTimes(hash)));
+        System.out.println("  all players loaded after " + millis(System.nanoTime() - startedAt));
+        System.out.println();
+    }
+
+    /**
+     * Publishes a new release on the GitHub stub and waits until every player loaded it, sampling the CDN load.
+     */
+    private void rollout(SimulatedClients clients, GithubStub github, PackStub pack) throws IOException, InterruptedException, NoSuchAlgorithmException {
+        final String hash = hash(pack);
+        final PackMetrics.Snapshot before = PackMetrics.snapshot();
+        final List<Integer> concurrency = new ArrayList<>();
+        final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> {
+            synchronized (concurrency) {
+                concurrency.add(pack.getInFlight());
+            }
+        }, 0, 100, TimeUnit.MILLISECONDS);
+
+        final long startedAt = System.nanoTime();
+        final long detectedAt;
+        try {
+            github.release(2, "v2", pack.getUrl(), packSize);
+            await("the new release to be detected", () -> PackMetrics.snapshot().fanOuts() > before.fanOuts());
+            detectedAt = System.nanoTime();
+            await("players loading the new pack", () -> clients.getLoaded(hash) >= clients.getOnlineCount());
+        } finally {
+            sampler.shutdownNow();
+        }
+        final long finishedAt = System.nanoTime();
+        final PackMetrics.Snapshot after = PackMetrics.snapshot();
+
+        System.out.println("Release rollout" + (paced ? " (paced)" : ""));
+        System.out.println("  detected and fanned out after " + millis(detectedAt - startedAt));
+        System.out.println("  fan-out " + millis(after.fanOutTime().minus(before.fanOutTime()).toNanos()) + " for " + after.lastFanOutPlayers() + " players");
+        System.out.println("  pack load time  " + percentiles(clients.getLoadTimes(hash)));
+        System.out.println("  all players loaded after " + millis(finishedAt - startedAt));
+        System.out.println("  CDN requests " + pack.getRequests() + ", peak concurrency " + pack.getPeakInFlight());
+        synchronized (concurrency) {
+            System.out.println("  CDN concurrency per 100 ms " + concurrency);
+        }
+        System.out.println();
+    }
+
+    private void writeConfig(Path dataDirectory, String githubApiUrl) throws IOException {
+        Files.writeString(dataDirectory.resolve("config.yml"), """
+            github:
+              enabled: true
+              interval: 1
+              username: "%s"
+              repository: "%s"
+              api-url: "%s"
+            distribution:
+              paced: %s
+            """.formatted(OWNER, REPOSITORY, githubApiUrl, paced));
+        Files.writeString(dataDirectory.resolve("data.yml"), "pack-uri: \"\"\n");
+    }
+
+    private void await(String what, BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + timeoutNanos;
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline)
+                throw new IllegalStateException("Timed out waiting for " + what);
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+
+    private static String hash(PackStub pack) throws NoSuchAlgorithmException {
+        return HexUtil.toString(MessageDigest.getInstance("SHA-1").digest(pack.getPack()));
+    }
+
+    private static String percentiles(long[] nanos) {
+        if (nanos.length == 0)
+            return "(no samples)";
+
+        Arrays.sort(nanos);
+        return "p50 %s, p90 %s, p99 %s, max %s".formatted(
+            millis(nanos[(int) (nanos.length * 0.50)]),
+            millis(nanos[(int) (nanos.length * 0.90)]),
+            millis(nanos[(int) (nanos.length * 0.99)]),
+            millis(nanos[nanos.length - 1])
+        );
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f ms", nanos / 1_000_000d);
+    }
+
+    private static String bytes(long bytes) {
+        return bytes >= 1024 * 1024 ? (bytes / (1024 * 1024)) + " MiB" : (bytes / 1024) + " KiB";
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList())
+                Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.alathra.vpack.benchmark;
+
+import io.github.alathra.vpack.pack.http.PackHttpClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashing a pack while downloading it with the {@link PackHttpClient} from a local HTTP server.
+ * This is the baseline for {@link Sha1StreamingBenchmark}, the JDK HTTP client picks its own buffer size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PackHttpClientSha1Benchmark {
+    @Param({"8388608"}) // 8 MiB, a typical zipped pack
+    public int packSize;
+
+    private BenchmarkEnvironment environment;
+    private URL url;
+    private PackHttpClient http;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        environment = new BenchmarkEnvironment(packSize);
+        url = environment.getPackStub().getUrl();
+        http = environment.getPlugin().getPackHandler().getHttpClient();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        environment.close();
+    }
+
+    @Benchmark
+    public byte[] packHttpClient() throws IOException, NoSuchAlgorithmException {
+        final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        http.download(url, digest, null, null);
+        return digest.digest();
+    }
+}
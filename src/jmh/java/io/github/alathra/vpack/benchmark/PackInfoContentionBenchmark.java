@@ -0,0 +1,69 @@
+package io.github.alathra.vpack.benchmark;
+
+import io.github.alathra.vpack.pack.resource.PackInfo;
+import io.github.alathra.vpack.pack.resource.PackSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the pack info from many threads at once, as happens when a large number of players join together.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(Threads.MAX)
+@Fork(1)
+public class PackInfoContentionBenchmark {
+    private BenchmarkEnvironment environment;
+    private PackInfo packInfo;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        environment = new BenchmarkEnvironment(64 * 1024);
+        packInfo = environment.getPackInfo();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        environment.close();
+    }
+
+    @Benchmark
+    public PackSnapshot getSnapshot() {
+        return packInfo.getSnapshot();
+    }
+
+    @Benchmark
+    public PackSnapshot getNamedSnapshot() {
+        return packInfo.getSnapshot(PackInfo.DEFAULT_PACK);
+    }
+
+    @Benchmark
+    public Optional<byte[]> getSha1() {
+        return packInfo.getSha1();
+    }
+
+    @Benchmark
+    public Optional<URI> getDownloadUri() throws URISyntaxException {
+        return packInfo.getDownloadUri(packInfo.getSnapshot());
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.alathra.vpack.benchmark;
+
+import io.github.alathra.vpack.pack.resource.PackInfo;
+import io.github.alathra.vpack.pack.resource.PackSnapshot;
+import io.github.alathra.vpack.utils.ResourcePackUtil;
+import net.kyori.adventure.resource.ResourcePackInfo;
+import net.kyori.adventure.resource.ResourcePackRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the pack info and request that are sent to a player.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PackRequestBenchmark {
+    private BenchmarkEnvironment environment;
+    private PackInfo packInfo;
+    private PackSnapshot snapshot;
+    private List<ResourcePackInfo> infos;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, URISyntaxException {
+        environment = new BenchmarkEnvironment(64 * 1024);
+        packInfo = environment.getPackInfo();
+        snapshot = packInfo.getSnapshot();
+        infos = List.of(ResourcePackUtil.createPackInfo(packInfo, snapshot));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        environment.close();
+    }
+
+    @Benchmark
+    public ResourcePackInfo createPackInfo() throws URISyntaxException {
+        return ResourcePackUtil.createPackInfo(packInfo, snapshot);
+    }
+
+    @Benchmark
+    public ResourcePackRequest createPackRequest() {
+        return ResourcePackUtil.createPackRequest(infos).build();
+    }
+
+    @Benchmark
+    public ResourcePackRequest createPackInfoAndRequest() throws URISyntaxException {
+        return ResourcePackUtil.createPackRequest(List.of(ResourcePackUtil.createPackInfo(packInfo, snapshot))).build();
+    }
+}
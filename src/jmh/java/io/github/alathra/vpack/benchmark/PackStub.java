@@ -0,0 +1,119 @@
+package io.github.alathra.vpack.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A local stand-in for a pack CDN, serving one pack of random bytes over HTTP.
+ * It keeps track of how many downloads are in progress, so the load a rollout puts on the CDN can be measured.
+ */
+final class PackStub implements AutoCloseable {
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] pack;
+    private final long bytesPerSecond;
+    private final LongAdder requests = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    PackStub(int size) throws IOException {
+        this(size, size, 0);
+    }
+
+    /**
+     * Starts serving a pack on a free local port.
+     *
+     * @param size           the size of the pack in bytes
+     * @param seed           the seed of the pack content, packs with different seeds have different hashes
+     * @param bytesPerSecond the rate each download is served at, 0 to serve as fast as possible
+     * @throws IOException if the server could not be started
+     */
+    PackStub(int size, long seed, long bytesPerSecond) throws IOException {
+        this.pack = new byte[size];
+        new Random(seed).nextBytes(pack); // Random content does not compress, like a zipped pack
+        this.bytesPerSecond = bytesPerSecond;
+
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        this.executor = Executors.newCachedThreadPool(r -> {
+            final Thread thread = new Thread(r, "Pack Stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/pack.zip", exchange -> {
+            requests.increment();
+            peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try (exchange) {
+                exchange.getResponseHeaders().set("Content-Type", "application/zip");
+                exchange.sendResponseHeaders(200, pack.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    write(out);
+                }
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+        server.start();
+    }
+
+    private void write(OutputStream out) throws IOException {
+        if (bytesPerSecond <= 0) {
+            out.write(pack);
+            return;
+        }
+
+        final long startedAt = System.nanoTime();
+        for (int offset = 0; offset < pack.length; offset += CHUNK_SIZE) {
+            out.write(pack, offset, Math.min(CHUNK_SIZE, pack.length - offset));
+
+            final long due = startedAt + TimeUnit.SECONDS.toNanos(offset + CHUNK_SIZE) / bytesPerSecond;
+            final long wait = due - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while serving pack", e);
+                }
+            }
+        }
+    }
+
+    URL getUrl() throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/pack.zip");
+    }
+
+    byte[] getPack() {
+        return pack;
+    }
+
+    long getRequests() {
+        return requests.sum();
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    int getPeakInFlight() {
+        return peakInFlight.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,63 @@
+package io.github.alathra.vpack.benchmark;
+
+import com.velocitypowered.api.proxy.Player;
+import io.github.alathra.vpack.pack.resource.PromptTemplate;
+import io.github.milkdrinkers.colorparser.velocity.ColorParser;
+import net.kyori.adventure.text.Component;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering the pack prompt, parsed from scratch with the color parser or through a compiled template.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PromptBenchmark {
+    @Param({
+        "<red><bold>Please download the resource pack!",
+        "&cPlease download the resource pack, <player_name>!"
+    })
+    public String message;
+
+    private Player player;
+    private PromptTemplate template;
+
+    @Setup
+    public void setup() {
+        player = BenchmarkEnvironment.player("Benchmark");
+        template = PromptTemplate.compile(message);
+    }
+
+    @Benchmark
+    public Component colorParser() {
+        return ColorParser.of(message)
+            .legacy()
+            .mini(player)
+            .build();
+    }
+
+    @Benchmark
+    public Component template() {
+        return template.render(player);
+    }
+
+    @Benchmark
+    public Component compileAndRender() {
+        return PromptTemplate.compile(message).render(player);
+    }
+}
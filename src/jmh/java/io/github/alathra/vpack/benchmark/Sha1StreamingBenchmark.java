@@ -0,0 +1,102 @@
+package io.github.alathra.vpack.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashing a pack while streaming it, from a local file and from a local HTTP server, at different buffer sizes.
+ * The JDK HTTP client picks its own buffer size, so it is measured by {@link PackHttpClientSha1Benchmark} instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Sha1StreamingBenchmark {
+    @Param({"8388608"}) // 8 MiB, a typical zipped pack
+    public int packSize;
+
+    @Param({"8192", "65536", "262144"})
+    public int bufferSize;
+
+    private BenchmarkEnvironment environment;
+    private PackStub packStub;
+    private URL url;
+    private Path file;
+    private byte[] buffer;
+    private ByteBuffer directBuffer;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        environment = new BenchmarkEnvironment(packSize);
+        packStub = environment.getPackStub();
+        url = packStub.getUrl();
+        file = Files.createTempFile("vpack-benchmark", ".zip");
+        Files.write(file, packStub.getPack());
+        buffer = new byte[bufferSize];
+        directBuffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        environment.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public byte[] fileStream() throws IOException, NoSuchAlgorithmException {
+        final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        try (InputStream in = Files.newInputStream(file)) {
+            return digest(digest, in);
+        }
+    }
+
+    @Benchmark
+    public byte[] fileChannel() throws IOException, NoSuchAlgorithmException {
+        final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(directBuffer.clear()) != -1)
+                digest.update(directBuffer.flip());
+        }
+        return digest.digest();
+    }
+
+    @Benchmark
+    public byte[] urlConnection() throws IOException, NoSuchAlgorithmException {
+        final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        try (InputStream in = url.openStream()) {
+            return digest(digest, in);
+        }
+    }
+
+    private byte[] digest(MessageDigest digest, InputStream in) throws IOException {
+        int read;
+        while ((read = in.read(buffer)) != -1)
+            digest.update(buffer, 0, read);
+        return digest.digest();
+    }
+}
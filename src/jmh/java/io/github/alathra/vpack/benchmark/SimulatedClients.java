@@ -0,0 +1,122 @@
+package io.github.alathra.vpack.benchmark;
+
+import com.velocitypowered.api.event.player.PlayerResourcePackStatusEvent;
+import com.velocitypowered.api.network.ProtocolVersion;
+import com.velocitypowered.api.proxy.Player;
+import io.github.alathra.vpack.pack.resource.PackInfo;
+import net.kyori.adventure.resource.ResourcePackInfo;
+import net.kyori.adventure.resource.ResourcePackRequest;
+import net.kyori.adventure.resource.ResourcePackRequestLike;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * Players connected to a stub proxy, whose clients download the packs they are sent from the pack URL and report
+ * their status back like a real client. The time from a pack being sent to it being loaded is recorded per pack hash.
+ */
+final class SimulatedClients {
+    private final Supplier<PackInfo.Distribute> distribute;
+    private final HttpClient http = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1) // Like the game client
+        .connectTimeout(Duration.ofSeconds(10))
+        .build();
+    private final Map<UUID, Player> online = new ConcurrentHashMap<>();
+    private final Map<String, Queue<Long>> loadTimes = new ConcurrentHashMap<>();
+    private final Queue<String> failures = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates the clients.
+     *
+     * @param distribute the distributor the clients report the status of their packs to
+     */
+    SimulatedClients(Supplier<PackInfo.Distribute> distribute) {
+        this.distribute = distribute;
+    }
+
+    /**
+     * Connects a new player to the proxy.
+     *
+     * @param name the name of the player
+     * @return the player
+     */
+    Player connect(String name) {
+        final UUID uuid = UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8));
+        final Player[] player = new Player[1];
+        player[0] = Stubs.of(Player.class, Map.of(
+            "getUsername", args -> name,
+            "getUniqueId", args -> uuid,
+            "getProtocolVersion", args -> ProtocolVersion.MAXIMUM_VERSION,
+            "isActive", args -> online.containsKey(uuid),
+            "sendResourcePacks", args -> {
+                if (args.length == 1 && args[0] instanceof ResourcePackRequestLike request)
+                    receive(player[0], request.asResourcePackRequest());
+                return null;
+            }
+        ));
+        online.put(uuid, player[0]);
+        return player[0];
+    }
+
+    Collection<Player> getOnline() {
+        return List.copyOf(online.values());
+    }
+
+    int getOnlineCount() {
+        return online.size();
+    }
+
+    /**
+     * Gets the time each player took from being sent a pack to loading it.
+     *
+     * @param hash the hex hash of the pack
+     * @return the load times in nanoseconds
+     */
+    long[] getLoadTimes(String hash) {
+        return loadTimes.getOrDefault(hash, new ConcurrentLinkedQueue<>()).stream().mapToLong(Long::longValue).toArray();
+    }
+
+    int getLoaded(String hash) {
+        final Queue<Long> times = loadTimes.get(hash);
+        return times == null ? 0 : times.size();
+    }
+
+    int getFailures() {
+        return failures.size();
+    }
+
+    private void receive(Player player, ResourcePackRequest request) {
+        for (ResourcePackInfo pack : request.packs())
+            download(player, pack);
+    }
+
+    private void download(Player player, ResourcePackInfo pack) {
+        final long sentAt = System.nanoTime();
+        final PackInfo.Distribute distribute = this.distribute.get();
+        distribute.onStatus(player, pack.id(), PlayerResourcePackStatusEvent.Status.ACCEPTED);
+
+        http.sendAsync(HttpRequest.newBuilder(pack.uri()).build(), HttpResponse.BodyHandlers.discarding())
+            .whenComplete((response, e) -> {
+                if (e != null || response.statusCode() != 200) {
+                    failures.add(player.getUsername());
+                    distribute.onStatus(player, pack.id(), PlayerResourcePackStatusEvent.Status.FAILED_DOWNLOAD);
+                    return;
+                }
+
+                distribute.onStatus(player, pack.id(), PlayerResourcePackStatusEvent.Status.DOWNLOADED);
+                distribute.onStatus(player, pack.id(), PlayerResourcePackStatusEvent.Status.SUCCESSFUL);
+                loadTimes.computeIfAbsent(pack.hash(), h -> new ConcurrentLinkedQueue<>()).add(System.nanoTime() - sentAt);
+            });
+    }
+}
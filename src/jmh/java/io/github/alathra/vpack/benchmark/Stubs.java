@@ -0,0 +1,76 @@
+package io.github.alathra.vpack.benchmark;
+
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Creates stand-ins for proxy API interfaces, so the plugin can be started without a running proxy.
+ * Methods return empty values, or another stub for interface types, unless they are overridden by name.
+ */
+final class Stubs {
+    private Stubs() {
+    }
+
+    static <T> T of(Class<T> type) {
+        return of(type, Map.of());
+    }
+
+    /**
+     * Creates a stub.
+     *
+     * @param type      the interface to stub
+     * @param overrides the results of methods by method name, computed from the call arguments
+     * @return the stub
+     */
+    static <T> T of(Class<T> type, Map<String, Function<Object[], Object>> overrides) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            final Function<Object[], Object> override = overrides.get(method.getName());
+            if (override != null)
+                return override.apply(args == null ? new Object[0] : args);
+
+            return switch (method.getName()) {
+                case "equals" -> proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "toString" -> "Stub[" + type.getSimpleName() + "]";
+                default -> emptyValue(method.getReturnType());
+            };
+        }));
+    }
+
+    private static Object emptyValue(Class<?> type) {
+        if (type == boolean.class)
+            return false;
+        if (type == int.class)
+            return 0;
+        if (type == long.class)
+            return 0L;
+        if (type == double.class)
+            return 0d;
+        if (type == float.class)
+            return 0f;
+        if (type == short.class)
+            return (short) 0;
+        if (type == byte.class)
+            return (byte) 0;
+        if (type == char.class)
+            return '\0';
+        if (type == String.class)
+            return "";
+        if (type == Optional.class)
+            return Optional.empty();
+        if (type == List.class || type == Collection.class)
+            return List.of();
+        if (type == Set.class)
+            return Set.of();
+        if (type == Map.class)
+            return Map.of();
+        if (type.isInterface())
+            return of(type);
+        return null;
+    }
+}
@@ -6,6 +6,12 @@ public interface Reloadable {
      */
     void onInit(VPack plugin);
 
+    /**
+     * On config reload, called after the new config snapshot has been applied.
+     */
+    default void onReload(VPack plugin) {
+    }
+
     /**
      * On plugin disable.
      */
@@ -8,8 +8,11 @@ import com.velocitypowered.api.plugin.Dependency;
 import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.plugin.annotation.DataDirectory;
 import com.velocitypowered.api.proxy.ProxyServer;
+import io.github.alathra.vpack.command.CommandHandler;
 import io.github.alathra.vpack.config.ConfigHandler;
+import io.github.alathra.vpack.metrics.MetricsHandler;
 import io.github.alathra.vpack.pack.PackHandler;
+import org.bstats.velocity.Metrics;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 
@@ -32,20 +35,24 @@ public class VPack {
     private final Path dataDirectory;
     private final ProxyServer proxy;
     private final Logger logger;
+    private final Metrics.Factory metricsFactory;
 
     // handlers
     private ConfigHandler configHandler;
     private PackHandler packHandler;
+    private CommandHandler commandHandler;
+    private MetricsHandler metricsHandler;
 
     // Handlers list (defines order of load/enable/disable)
     private List<? extends Reloadable> handlers;
 
     @Inject
-    public VPack(ProxyServer proxy, Logger logger, @DataDirectory Path dataDirectory) {
+    public VPack(ProxyServer proxy, Logger logger, @DataDirectory Path dataDirectory, Metrics.Factory metricsFactory) {
         instance = this;
         this.proxy = proxy;
         this.logger = logger;
         this.dataDirectory = dataDirectory;
+        this.metricsFactory = metricsFactory;
     }
 
     @Subscribe
@@ -53,10 +60,14 @@ public class VPack {
     public void onProxyInitialization(ProxyInitializeEvent event) {
         configHandler = new ConfigHandler(instance);
         packHandler = new PackHandler(this, proxy, logger);
+        commandHandler = new CommandHandler(this, proxy);
+        metricsHandler = new MetricsHandler(metricsFactory);
 
         handlers = List.of(
             configHandler,
-            packHandler
+            packHandler,
+            commandHandler,
+            metricsHandler
         );
 
         for (Reloadable handler : handlers)
@@ -70,6 +81,14 @@ public class VPack {
             handler.onShutdown(instance);
     }
 
+    /**
+     * Reloads config.yml and lets every handler apply the changes.
+     */
+    public synchronized void reload() {
+        for (Reloadable handler : handlers)
+            handler.onReload(instance);
+    }
+
     @NotNull
     public static VPack getInstance() {
         return instance;
@@ -80,6 +99,11 @@ public class VPack {
         return configHandler;
     }
 
+    @NotNull
+    public PackHandler getPackHandler() {
+        return packHandler;
+    }
+
     @NotNull
     public Path getDataDirectory() {
         return dataDirectory;
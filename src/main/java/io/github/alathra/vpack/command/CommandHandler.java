@@ -0,0 +1,36 @@
+package io.github.alathra.vpack.command;
+
+import com.velocitypowered.api.command.CommandMeta;
+import com.velocitypowered.api.proxy.ProxyServer;
+import io.github.alathra.vpack.Reloadable;
+import io.github.alathra.vpack.VPack;
+
+/**
+ * A class to handle registration of commands.
+ */
+public class CommandHandler implements Reloadable {
+    private final VPack plugin;
+    private final ProxyServer proxy;
+    private CommandMeta meta;
+
+    public CommandHandler(VPack plugin, ProxyServer proxy) {
+        this.plugin = plugin;
+        this.proxy = proxy;
+    }
+
+    @Override
+    public void onInit(VPack plugin) {
+        meta = proxy.getCommandManager()
+            .metaBuilder("vpack")
+            .plugin(plugin)
+            .build();
+
+        proxy.getCommandManager().register(meta, new VPackCommand(plugin));
+    }
+
+    @Override
+    public void onShutdown(VPack plugin) {
+        if (meta != null)
+            proxy.getCommandManager().unregister(meta);
+    }
+}
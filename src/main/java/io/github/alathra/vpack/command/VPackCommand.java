@@ -0,0 +1,190 @@
+package io.github.alathra.vpack.command;
+
+import com.velocitypowered.api.command.CommandSource;
+import com.velocitypowered.api.command.SimpleCommand;
+import io.github.alathra.vpack.VPack;
+import io.github.alathra.vpack.config.PluginConfig;
+import io.github.alathra.vpack.metrics.PackMetrics;
+import io.github.alathra.vpack.pack.http.PackHttpClient;
+import io.github.alathra.vpack.pack.resource.PlayerPackStates;
+import io.github.alathra.vpack.pack.resource.Rollout;
+import io.github.alathra.vpack.pack.store.PackStore;
+import io.github.alathra.vpack.utils.HexUtil;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The {@code /vpack} admin command.
+ */
+public class VPackCommand implements SimpleCommand {
+    private static final String PERMISSION = "vpack.admin";
+    private static final List<String> SUBCOMMANDS = List.of("reload", "rollback", "rollout", "stats");
+
+    private final VPack plugin;
+
+    public VPackCommand(VPack plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void execute(Invocation invocation) {
+        final CommandSource source = invocation.source();
+        final String[] args = invocation.arguments();
+
+        if (args.length == 0) {
+            source.sendMessage(Component.text("Usage: /vpack <" + String.join("|", SUBCOMMANDS) + ">", NamedTextColor.RED));
+            return;
+        }
+
+        switch (args[0].toLowerCase(Locale.ROOT)) {
+            case "reload" -> reload(source);
+            case "rollback" -> rollback(source, args);
+            case "rollout" -> rollout(source);
+            case "stats" -> stats(source);
+            default -> source.sendMessage(Component.text("Unknown subcommand: " + args[0], NamedTextColor.RED));
+        }
+    }
+
+    private void reload(CommandSource source) {
+        final PluginConfig previous = plugin.getConfigHandler().getSnapshot();
+        plugin.reload();
+        if (plugin.getConfigHandler().getSnapshot() == previous)
+            source.sendMessage(Component.text("Failed to reload config.yml, see the console for details.", NamedTextColor.RED));
+        else
+            source.sendMessage(Component.text("Reloaded config.yml.", NamedTextColor.GREEN));
+    }
+
+    private void rollback(CommandSource source, String[] args) {
+        final PackStore store = plugin.getPackHandler().getStore();
+        if (args.length < 2) {
+            final List<PackStore.Entry> entries = store.list();
+            if (entries.isEmpty()) {
+                source.sendMessage(Component.text("No resource packs are stored yet.", NamedTextColor.YELLOW));
+                return;
+            }
+
+            source.sendMessage(Component.text("Stored resource packs, most recently used first (/vpack rollback <tag|hash>):", NamedTextColor.GOLD));
+            for (PackStore.Entry entry : entries) {
+                stat(source, entry.sha1().substring(0, 12), "%s, %d KiB, last used %d min ago".formatted(
+                    entry.label() == null ? entry.url() : entry.label(), entry.size() / 1024,
+                    Duration.ofMillis(System.currentTimeMillis() - entry.lastUsed()).toMinutes()
+                ));
+            }
+            return;
+        }
+
+        // Without the pack server players download the pack from its URL, which may serve a newer pack by now
+        if (!plugin.getPackHandler().getPackServer().isRunning()) {
+            source.sendMessage(Component.text("Rolling back requires the pack server (pack-server.enabled), so players download the stored pack from this proxy.", NamedTextColor.RED));
+            return;
+        }
+
+        final PackStore.Entry entry = store.find(args[1]);
+        if (entry == null) {
+            source.sendMessage(Component.text("No single stored resource pack matches " + args[1], NamedTextColor.RED));
+            return;
+        }
+
+        final URL url;
+        try {
+            url = new URL(entry.url());
+        } catch (MalformedURLException e) {
+            source.sendMessage(Component.text("Stored resource pack has an invalid URL: " + entry.url(), NamedTextColor.RED));
+            return;
+        }
+
+        final byte[] sha1 = HexUtil.toByteArray(entry.sha1());
+        plugin.getPackHandler().getPackInfo().adopt(url, sha1).whenComplete((changed, e) -> {
+            if (e != null) {
+                source.sendMessage(Component.text("Failed to roll back: " + (e.getCause() != null ? e.getCause() : e).getMessage(), NamedTextColor.RED));
+            } else if (!changed) {
+                source.sendMessage(Component.text("Resource pack " + entry.sha1() + " is already in use.", NamedTextColor.YELLOW));
+            } else {
+                plugin.getPackHandler().getCoordinator().announce(url, sha1, null, null);
+                source.sendMessage(Component.text("Rolled back to resource pack " + entry.sha1() + ", it stays in use until the next GitHub release.", NamedTextColor.GREEN));
+            }
+        });
+    }
+
+    private void rollout(CommandSource source) {
+        final Rollout rollout = plugin.getPackHandler().getPackInfo().distribute().getRollout().orElse(null);
+        if (rollout == null) {
+            source.sendMessage(Component.text("No paced rollout has been started.", NamedTextColor.YELLOW));
+            return;
+        }
+
+        final Rollout.Progress progress = rollout.getProgress();
+        source.sendMessage(
+            Component.text("Rollout of pack version " + progress.version() + (progress.done() ? " (finished): " : ": "), NamedTextColor.GOLD)
+                .append(Component.text(progress.toString(), NamedTextColor.WHITE))
+        );
+    }
+
+    private void stats(CommandSource source) {
+        final PackMetrics.Snapshot metrics = PackMetrics.snapshot();
+        final PlayerPackStates states = plugin.getPackHandler().getPackInfo().distribute().getStates();
+        final PackHttpClient.Stats http = plugin.getPackHandler().getHttpClient().getStats();
+
+        source.sendMessage(Component.text("VPack statistics since startup:", NamedTextColor.GOLD));
+        stat(source, "Downloads", "%d (%d not modified), %d KiB at %d KiB/s, avg %s, hashing avg %s".formatted(
+            metrics.downloads(), metrics.notModified(), metrics.downloadedBytes() / 1024, metrics.downloadBytesPerSecond() / 1024,
+            format(metrics.averageDownloadTime()), format(metrics.averageHashTime())
+        ));
+        stat(source, "HTTP", http.toString());
+        stat(source, "GitHub polls", "%d (%d failed), avg %s, %s requests left".formatted(
+            metrics.githubPolls(), metrics.githubFailures(), format(metrics.averageGithubPollTime()),
+            metrics.githubQuota() < 0 ? "unknown" : metrics.githubQuota()
+        ));
+        stat(source, "Fan-outs", "%d, avg %s, last to %d players".formatted(
+            metrics.fanOuts(), format(metrics.averageFanOutTime()), metrics.lastFanOutPlayers()
+        ));
+        stat(source, "Join sends", "%d, avg %s".formatted(metrics.joinSends(), format(metrics.averageJoinSendTime())));
+        stat(source, "Joins until loaded", "%d in configuration phase (avg %s), %d after connecting (avg %s)".formatted(
+            metrics.configurationJoins(), format(metrics.averageConfigurationJoinTime()),
+            metrics.connectedJoins(), format(metrics.averageConnectedJoinTime())
+        ));
+        stat(source, "Client responses", "%d accepted, %d loaded (avg %s after sending), %d declined, %d failed".formatted(
+            states.getAccepted(), states.getLoaded(), format(metrics.averageLoadTime()), states.getDeclined(), states.getFailed()
+        ));
+        for (String mirror : plugin.getPackHandler().getMirrors().describe())
+            stat(source, "Mirror", mirror);
+    }
+
+    private static void stat(CommandSource source, String name, String value) {
+        source.sendMessage(
+            Component.text(name + ": ", NamedTextColor.YELLOW)
+                .append(Component.text(value, NamedTextColor.WHITE))
+        );
+    }
+
+    private static String format(Duration duration) {
+        if (duration.toMillis() >= 1000)
+            return "%.1f s".formatted(duration.toMillis() / 1000d);
+        if (duration.toNanos() >= 1_000_000)
+            return duration.toMillis() + " ms";
+        return "%.2f ms".formatted(duration.toNanos() / 1_000_000d);
+    }
+
+    @Override
+    public List<String> suggest(Invocation invocation) {
+        final String[] args = invocation.arguments();
+        if (args.length > 1)
+            return List.of();
+
+        final String prefix = args.length == 0 ? "" : args[0].toLowerCase(Locale.ROOT);
+        return SUBCOMMANDS.stream()
+            .filter(subcommand -> subcommand.startsWith(prefix))
+            .toList();
+    }
+
+    @Override
+    public boolean hasPermission(Invocation invocation) {
+        return invocation.source().hasPermission(PERMISSION);
+    }
+}
@@ -3,17 +3,40 @@ package io.github.alathra.vpack.config;
 import io.github.alathra.vpack.Reloadable;
 import io.github.alathra.vpack.VPack;
 import io.github.milkdrinkers.crate.Config;
+import org.jetbrains.annotations.Nullable;
 
 import javax.inject.Singleton;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * A class that generates/loads {@literal &} provides access to a configuration file.
+ * The config file is parsed into an immutable {@link PluginConfig} snapshot, which is replaced atomically on
+ * {@code /vpack reload} or, if {@code auto-reload} is enabled, whenever the file is saved.
  */
 @Singleton
 public class ConfigHandler implements Reloadable {
+    private static final long WATCH_DEBOUNCE_MILLIS = 500; // Editors often write a file several times when saving it
+
     private final VPack plugin;
-    private final Config cfg;
+    private final AtomicReference<PluginConfig> snapshot = new AtomicReference<>();
+    private final List<Subscription<?>> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile Config cfg;
     private final Config data;
+    private @Nullable WatchService watchService;
 
     /**
      * Instantiates a new Config handler.
@@ -22,16 +45,130 @@ public class ConfigHandler implements Reloadable {
      */
     public ConfigHandler(VPack plugin) {
         this.plugin = plugin;
-        cfg = new Config("config", plugin.getDataDirectory().toString(), plugin.getClass().getResourceAsStream("/config.yml")); // Create a config file from the template in our resources folder
+        cfg = loadConfig(); // Create a config file from the template in our resources folder
         data = new Config("data", plugin.getDataDirectory().toString(), plugin.getClass().getResourceAsStream("/data.yml")); // Create a config file from the template in our resources folder
+        snapshot.set(PluginConfig.load(cfg, plugin.getLogger()));
+    }
+
+    private Config loadConfig() {
+        return new Config("config", plugin.getDataDirectory().toString(), plugin.getClass().getResourceAsStream("/config.yml"));
     }
 
     @Override
     public void onInit(VPack plugin) {
+        if (getSnapshot().autoReload())
+            startWatching();
+    }
+
+    @Override
+    public void onReload(VPack plugin) {
+        final Config reloadedCfg;
+        final PluginConfig reloaded;
+        try {
+            reloadedCfg = loadConfig();
+            reloaded = PluginConfig.load(reloadedCfg, plugin.getLogger());
+        } catch (RuntimeException e) {
+            plugin.getLogger().error("Failed to reload config.yml, keeping the current config", e);
+            return;
+        }
+
+        cfg = reloadedCfg;
+        final PluginConfig previous = snapshot.getAndSet(reloaded);
+        for (Subscription<?> subscription : subscriptions)
+            subscription.notify(previous, reloaded, plugin);
+
+        if (reloaded.autoReload() && watchService == null)
+            startWatching();
+        else if (!reloaded.autoReload())
+            stopWatching();
+        plugin.getLogger().info("Reloaded config.yml");
     }
 
     @Override
     public void onShutdown(VPack plugin) {
+        stopWatching();
+    }
+
+    /**
+     * Gets the current config snapshot. The snapshot never changes, a reload replaces it with a new one.
+     *
+     * @return the config snapshot
+     */
+    public PluginConfig getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Registers a listener that is called after a reload, but only if the part of the config it depends on changed.
+     * Listeners are called on the thread that reloaded the config.
+     *
+     * @param field    the part of the config the listener depends on, compared with {@link Object#equals}
+     * @param listener the listener, called with the new snapshot
+     * @param <T>      the type of the part of the config
+     */
+    public <T> void subscribe(Function<PluginConfig, T> field, Consumer<PluginConfig> listener) {
+        subscriptions.add(new Subscription<>(field, listener));
+    }
+
+    /**
+     * Watches the data directory and reloads the config once config.yml has been saved.
+     */
+    private synchronized void startWatching() {
+        if (watchService != null)
+            return;
+
+        final WatchService service;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+            plugin.getDataDirectory().register(service, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+        } catch (IOException e) {
+            plugin.getLogger().warn("Failed to watch config.yml for changes, use /vpack reload instead: {}", e.getMessage());
+            return;
+        }
+
+        watchService = service;
+        final Thread thread = new Thread(() -> watch(service), "VPack Config Watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private synchronized void stopWatching() {
+        if (watchService == null)
+            return;
+
+        try {
+            watchService.close();
+        } catch (IOException ignored) {
+        }
+        watchService = null;
+    }
+
+    private void watch(WatchService service) {
+        try {
+            while (true) {
+                final WatchKey key = service.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.context() instanceof Path path && path.getFileName().toString().equals("config.yml"))
+                        changed = true;
+                }
+                key.reset();
+
+                if (!changed)
+                    continue;
+
+                // Wait for the editor to finish writing, and drain the events it caused meanwhile
+                WatchKey next;
+                while ((next = service.poll(WATCH_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    next.pollEvents();
+                    next.reset();
+                }
+
+                plugin.getLogger().info("config.yml changed, reloading");
+                plugin.reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+        }
     }
 
     /**
@@ -51,4 +188,17 @@ public class ConfigHandler implements Reloadable {
     public Config getDataConfig() {
         return data;
     }
+
+    private record Subscription<T>(Function<PluginConfig, T> field, Consumer<PluginConfig> listener) {
+        private void notify(PluginConfig previous, PluginConfig current, VPack plugin) {
+            if (Objects.equals(field.apply(previous), field.apply(current)))
+                return;
+
+            try {
+                listener.accept(current);
+            } catch (RuntimeException e) {
+                plugin.getLogger().error("Failed to apply reloaded config", e);
+            }
+        }
+    }
 }
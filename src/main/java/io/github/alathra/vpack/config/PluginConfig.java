@@ -0,0 +1,237 @@
+package io.github.alathra.vpack.config;
+
+import io.github.milkdrinkers.crate.Config;
+import org.slf4j.Logger;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * An immutable, validated snapshot of config.yml.
+ * The file is parsed once when it is loaded or reloaded, so reading a setting is a plain field access instead of a
+ * lookup in the YAML tree. Invalid values are replaced with their default and logged while loading.
+ * Every section is its own record, so subscribers can compare sections with {@link Object#equals} to find out
+ * whether a reload changed anything they use.
+ */
+public record PluginConfig(
+    boolean autoReload,
+    Github github,
+    PackPrompt packInfo,
+    Map<String, String> packs,
+    Map<String, List<String>> servers,
+    List<String> defaultPacks,
+    Bedrock bedrock,
+    Network network,
+    Distribution distribution,
+    PackServer packServer,
+    Store store,
+    Mirrors mirrors,
+    Coordination coordination,
+    Metrics metrics
+) {
+    /**
+     * Parses and validates a config file.
+     *
+     * @param cfg    the config file
+     * @param logger the logger to report invalid values to
+     * @return the config snapshot
+     */
+    public static PluginConfig load(Config cfg, Logger logger) {
+        final Validator v = new Validator(logger);
+
+        final Map<String, String> packs = new LinkedHashMap<>();
+        for (String name : cfg.singleLayerKeySet("packs"))
+            packs.put(name, cfg.getOrDefault("packs." + name, ""));
+
+        final Map<String, List<String>> servers = new LinkedHashMap<>();
+        for (String server : cfg.singleLayerKeySet("servers"))
+            servers.put(server, List.copyOf(cfg.getStringList("servers." + server)));
+
+        return new PluginConfig(
+            cfg.getOrDefault("auto-reload", false),
+            new Github(
+                cfg.getOrDefault("github.enabled", false),
+                v.atLeast("github.interval", cfg.getOrDefault("github.interval", 600), 1, 600),
+                cfg.getOrDefault("github.username", ""),
+                cfg.getOrDefault("github.repository", ""),
+                v.pattern("github.asset-pattern", cfg.getOrDefault("github.asset-pattern", ".*\\.zip"), ".*\\.zip"),
+                v.url("github.api-url", cfg.getOrDefault("github.api-url", "https://api.github.com"), "https://api.github.com"),
+                cfg.getOrDefault("github.token", ""),
+                new Webhook(
+                    cfg.getOrDefault("github.webhook.enabled", false),
+                    cfg.getOrDefault("github.webhook.bind", "0.0.0.0"),
+                    v.port("github.webhook.port", cfg.getOrDefault("github.webhook.port", 25581), 25581),
+                    cfg.getOrDefault("github.webhook.path", "/github"),
+                    cfg.getOrDefault("github.webhook.secret", ""),
+                    v.atLeast("github.webhook.fallback-interval", cfg.getOrDefault("github.webhook.fallback-interval", 3600), 1, 3600)
+                )
+            ),
+            new PackPrompt(
+                cfg.getOrDefault("pack-info.required", true),
+                cfg.getOrDefault("pack-info.prompt", "Please download the resource pack!")
+            ),
+            Map.copyOf(packs),
+            Map.copyOf(servers),
+            List.copyOf(cfg.getOrDefault("default-packs", List.of("default"))),
+            new Bedrock(
+                cfg.getOrDefault("bedrock.skip-java-packs", true),
+                cfg.getOrDefault("bedrock.pack.enabled", false),
+                cfg.getOrDefault("bedrock.pack.uri", ""),
+                v.pattern("bedrock.pack.asset-pattern", cfg.getOrDefault("bedrock.pack.asset-pattern", ".*\\.mcpack"), ".*\\.mcpack")
+            ),
+            new Network(
+                v.atLeast("network.threads", cfg.getOrDefault("network.threads", 2), 1, 2),
+                v.atLeast("network.connect-timeout", cfg.getOrDefault("network.connect-timeout", 10), 1, 10),
+                v.atLeast("network.read-timeout", cfg.getOrDefault("network.read-timeout", 30), 1, 30),
+                v.atLeast("network.retries", cfg.getOrDefault("network.retries", 3), 0, 3),
+                v.atLeast("network.retry-delay", cfg.getOrDefault("network.retry-delay", 2000), 0, 2000)
+            ),
+            new Distribution(
+                cfg.getOrDefault("distribution.paced", false),
+                v.atLeast("distribution.batch-size", cfg.getOrDefault("distribution.batch-size", 20), 1, 20),
+                v.atLeast("distribution.batch-interval", cfg.getOrDefault("distribution.batch-interval", 1000), 1, 1000),
+                v.atLeast("distribution.max-in-flight", cfg.getOrDefault("distribution.max-in-flight", 100), 1, 100),
+                v.atLeast("distribution.in-flight-timeout", cfg.getOrDefault("distribution.in-flight-timeout", 60), 1, 60),
+                v.atLeast("distribution.max-attempts", cfg.getOrDefault("distribution.max-attempts", 3), 1, 3),
+                v.atLeast("distribution.retry-delay", cfg.getOrDefault("distribution.retry-delay", 5), 1, 5),
+                cfg.getOrDefault("distribution.configuration-phase.enabled", false),
+                v.atLeast("distribution.configuration-phase.timeout", cfg.getOrDefault("distribution.configuration-phase.timeout", 20), 1, 20)
+            ),
+            new PackServer(
+                cfg.getOrDefault("pack-server.enabled", false),
+                cfg.getOrDefault("pack-server.bind", "0.0.0.0"),
+                v.port("pack-server.port", cfg.getOrDefault("pack-server.port", 25580), 25580),
+                v.optionalUrl("pack-server.public-url", cfg.getOrDefault("pack-server.public-url", "")),
+                v.atLeast("pack-server.max-connections", cfg.getOrDefault("pack-server.max-connections", 64), 1, 64),
+                v.atLeast("pack-server.keep-alive-timeout", cfg.getOrDefault("pack-server.keep-alive-timeout", 15), 1, 15),
+                cfg.getOrDefault("pack-server.optimize.enabled", false),
+                cfg.getOrDefault("pack-server.optimize.png", true)
+            ),
+            new Store(
+                v.atLeast("store.max-size", cfg.getOrDefault("store.max-size", 512), 1, 512),
+                v.atLeast("store.max-packs", cfg.getOrDefault("store.max-packs", 10), 1, 10)
+            ),
+            new Mirrors(
+                v.urls("mirrors.urls", cfg.getOrDefault("mirrors.urls", List.of())),
+                v.atLeast("mirrors.probe-interval", cfg.getOrDefault("mirrors.probe-interval", 60), 5, 60),
+                v.atLeast("mirrors.max-failures", cfg.getOrDefault("mirrors.max-failures", 2), 1, 2)
+            ),
+            new Coordination(
+                v.oneOf("coordination.backend", cfg.getOrDefault("coordination.backend", "none").toLowerCase(Locale.ROOT), List.of("none", "directory"), "none"),
+                cfg.getOrDefault("coordination.directory", "../vpack-shared"),
+                cfg.getOrDefault("coordination.proxy-name", ""),
+                v.atLeast("coordination.poll-interval", cfg.getOrDefault("coordination.poll-interval", 2), 1, 2),
+                v.atLeast("coordination.distribute-delay", cfg.getOrDefault("coordination.distribute-delay", 5), 0, 5)
+            ),
+            new Metrics(
+                v.atLeast("metrics.bstats-id", cfg.getOrDefault("metrics.bstats-id", 0), 0, 0)
+            )
+        );
+    }
+
+    public record Github(boolean enabled, int interval, String username, String repository, String assetPattern, String apiUrl, String token, Webhook webhook) {
+    }
+
+    public record Webhook(boolean enabled, String bind, int port, String path, String secret, int fallbackInterval) {
+    }
+
+    public record PackPrompt(boolean required, String prompt) {
+    }
+
+    public record Bedrock(boolean skipJavaPacks, boolean packEnabled, String packUri, String assetPattern) {
+    }
+
+    public record Network(int threads, int connectTimeout, int readTimeout, int retries, int retryDelay) {
+    }
+
+    public record Distribution(boolean paced, int batchSize, int batchInterval, int maxInFlight, int inFlightTimeout, int maxAttempts, int retryDelay, boolean configurationPhase, int configurationTimeout) {
+    }
+
+    public record PackServer(boolean enabled, String bind, int port, String publicUrl, int maxConnections, int keepAliveTimeout, boolean optimize, boolean optimizePng) {
+    }
+
+    public record Store(int maxSize, int maxPacks) {
+    }
+
+    public record Mirrors(List<String> urls, int probeInterval, int maxFailures) {
+    }
+
+    public record Coordination(String backend, String directory, String proxyName, int pollInterval, int distributeDelay) {
+    }
+
+    public record Metrics(int bstatsId) {
+    }
+
+    /**
+     * Checks values while loading, replacing invalid ones with their default.
+     */
+    private record Validator(Logger logger) {
+        private int atLeast(String key, int value, int min, int fallback) {
+            if (value >= min)
+                return value;
+
+            logger.warn("Config value \"{}\" must be at least {}, using {} instead of {}", key, min, fallback, value);
+            return fallback;
+        }
+
+        private int port(String key, int value, int fallback) {
+            if (value >= 1 && value <= 65535)
+                return value;
+
+            logger.warn("Config value \"{}\" is not a valid port, using {} instead of {}", key, fallback, value);
+            return fallback;
+        }
+
+        private String pattern(String key, String value, String fallback) {
+            try {
+                Pattern.compile(value);
+                return value;
+            } catch (PatternSyntaxException e) {
+                logger.warn("Config value \"{}\" is not a valid regex, using \"{}\" instead: {}", key, fallback, e.getMessage());
+                return fallback;
+            }
+        }
+
+        private String url(String key, String value, String fallback) {
+            try {
+                new URL(value);
+                return value;
+            } catch (MalformedURLException e) {
+                logger.warn("Config value \"{}\" is not a valid URL, using \"{}\" instead of \"{}\"", key, fallback, value);
+                return fallback;
+            }
+        }
+
+        private String optionalUrl(String key, String value) {
+            return value.isEmpty() ? value : url(key, value, "");
+        }
+
+        private List<String> urls(String key, List<String> values) {
+            return values.stream()
+                .filter(value -> {
+                    try {
+                        new URL(value);
+                        return true;
+                    } catch (MalformedURLException e) {
+                        logger.warn("Config value \"{}\" contains an invalid URL, ignoring \"{}\"", key, value);
+                        return false;
+                    }
+                })
+                .toList();
+        }
+
+        private String oneOf(String key, String value, List<String> allowed, String fallback) {
+            if (allowed.contains(value))
+                return value;
+
+            logger.warn("Config value \"{}\" must be one of {}, using \"{}\" instead of \"{}\"", key, allowed, fallback, value);
+            return fallback;
+        }
+    }
+}
@@ -1,9 +1,16 @@
 package io.github.alathra.vpack.config;
 
-import io.github.alathra.vpack.utils.Cfg;
+import io.github.alathra.vpack.VPack;
 import io.github.alathra.vpack.utils.Data;
 
+import java.util.List;
+import java.util.Set;
+
 public class Settings {
+    private static PluginConfig config() {
+        return VPack.getInstance().getConfigHandler().getSnapshot();
+    }
+
     public static String getPackUrl() {
         return Data.get().getOrDefault("pack-uri", "");
     }
@@ -12,27 +19,295 @@ public class Settings {
         Data.get().set("pack-uri", url);
     }
 
+    public static String getCachedPackUri() {
+        return Data.get().getOrDefault("pack-cache.uri", "");
+    }
+
+    public static String getCachedPackSha1() {
+        return Data.get().getOrDefault("pack-cache.sha1", "");
+    }
+
+    public static long getCachedPackSize() {
+        return Data.get().getOrDefault("pack-cache.size", (Number) (-1L)).longValue();
+    }
+
+    public static String getCachedPackEtag() {
+        return Data.get().getOrDefault("pack-cache.etag", "");
+    }
+
+    public static String getCachedPackLastModified() {
+        return Data.get().getOrDefault("pack-cache.last-modified", "");
+    }
+
+    public static void setCachedPack(String uri, String sha1, long size, String etag, String lastModified) {
+        Data.get().set("pack-cache.uri", uri);
+        Data.get().set("pack-cache.sha1", sha1);
+        Data.get().set("pack-cache.size", size);
+        Data.get().set("pack-cache.etag", etag);
+        Data.get().set("pack-cache.last-modified", lastModified);
+    }
+
     public static boolean getIsGithubEnabled() {
-        return Cfg.get().getOrDefault("github.enabled", false);
+        return config().github().enabled();
     }
 
     public static int getGithubUpdateInterval() {
-        return Cfg.get().getOrDefault("github.interval", 600);
+        return config().github().interval();
     }
 
     public static String getGithubUsername() {
-        return Cfg.get().getOrDefault("github.username", "");
+        return config().github().username();
     }
 
     public static String getGithubRepository() {
-        return Cfg.get().getOrDefault("github.repository", "");
+        return config().github().repository();
+    }
+
+    public static String getGithubAssetPattern() {
+        return config().github().assetPattern();
+    }
+
+    public static String getGithubApiUrl() {
+        return config().github().apiUrl();
+    }
+
+    public static String getGithubToken() {
+        return config().github().token();
+    }
+
+    public static boolean getGithubWebhookEnabled() {
+        return config().github().webhook().enabled();
+    }
+
+    public static String getGithubWebhookBind() {
+        return config().github().webhook().bind();
+    }
+
+    public static int getGithubWebhookPort() {
+        return config().github().webhook().port();
+    }
+
+    public static String getGithubWebhookPath() {
+        return config().github().webhook().path();
+    }
+
+    public static String getGithubWebhookSecret() {
+        return config().github().webhook().secret();
+    }
+
+    public static int getGithubWebhookFallbackInterval() {
+        return config().github().webhook().fallbackInterval();
+    }
+
+    public static long getGithubReleaseId() {
+        return Data.get().getOrDefault("github.release-id", (Number) 0L).longValue();
+    }
+
+    public static String getGithubReleaseTag() {
+        return Data.get().getOrDefault("github.release-tag", "");
+    }
+
+    public static long getGithubAssetId() {
+        return Data.get().getOrDefault("github.asset-id", (Number) 0L).longValue();
+    }
+
+    public static long getGithubAssetSize() {
+        return Data.get().getOrDefault("github.asset-size", (Number) 0L).longValue();
+    }
+
+    public static long getGithubAssetUpdatedAt() {
+        return Data.get().getOrDefault("github.asset-updated-at", (Number) 0L).longValue();
+    }
+
+    public static void setGithubRelease(long releaseId, String tag, long assetId, long assetSize, long updatedAt) {
+        Data.get().set("github.release-id", releaseId);
+        Data.get().set("github.release-tag", tag);
+        Data.get().set("github.asset-id", assetId);
+        Data.get().set("github.asset-size", assetSize);
+        Data.get().set("github.asset-updated-at", updatedAt);
     }
 
     public static boolean getPackIsRequired() {
-        return Cfg.get().getOrDefault("pack-info.required", true);
+        return config().packInfo().required();
     }
 
     public static String getPackPromptMessage() {
-        return Cfg.get().getOrDefault("pack-info.prompt", "Please download the resource pack!");
+        return config().packInfo().prompt();
+    }
+
+    public static Set<String> getPackNames() {
+        return config().packs().keySet();
+    }
+
+    public static String getNamedPackUrl(String name) {
+        return config().packs().getOrDefault(name, "");
+    }
+
+    public static Set<String> getMappedServers() {
+        return config().servers().keySet();
+    }
+
+    public static List<String> getServerPacks(String server) {
+        return config().servers().getOrDefault(server, List.of());
+    }
+
+    public static List<String> getDefaultPacks() {
+        return config().defaultPacks();
+    }
+
+    public static boolean getPackServerEnabled() {
+        return config().packServer().enabled();
+    }
+
+    public static String getPackServerBind() {
+        return config().packServer().bind();
+    }
+
+    public static int getPackServerPort() {
+        return config().packServer().port();
+    }
+
+    public static String getPackServerPublicUrl() {
+        return config().packServer().publicUrl();
+    }
+
+    public static int getPackServerMaxConnections() {
+        return config().packServer().maxConnections();
+    }
+
+    public static int getPackServerKeepAliveTimeout() {
+        return config().packServer().keepAliveTimeout();
+    }
+
+    public static boolean getPackServerOptimize() {
+        return config().packServer().optimize();
+    }
+
+    public static boolean getPackServerOptimizePng() {
+        return config().packServer().optimizePng();
+    }
+
+    public static boolean getDistributionPaced() {
+        return config().distribution().paced();
+    }
+
+    public static int getDistributionBatchSize() {
+        return config().distribution().batchSize();
+    }
+
+    public static int getDistributionBatchInterval() {
+        return config().distribution().batchInterval();
+    }
+
+    public static int getDistributionMaxInFlight() {
+        return config().distribution().maxInFlight();
+    }
+
+    public static int getDistributionInFlightTimeout() {
+        return config().distribution().inFlightTimeout();
+    }
+
+    public static int getDistributionMaxAttempts() {
+        return config().distribution().maxAttempts();
+    }
+
+    public static int getDistributionRetryDelay() {
+        return config().distribution().retryDelay();
+    }
+
+    public static boolean getDistributionConfigurationPhase() {
+        return config().distribution().configurationPhase();
+    }
+
+    public static int getDistributionConfigurationTimeout() {
+        return config().distribution().configurationTimeout();
+    }
+
+    public static boolean getBedrockSkipJavaPacks() {
+        return config().bedrock().skipJavaPacks();
+    }
+
+    public static boolean getBedrockPackEnabled() {
+        return config().bedrock().packEnabled();
+    }
+
+    public static String getBedrockPackUri() {
+        return config().bedrock().packUri();
+    }
+
+    public static String getBedrockAssetPattern() {
+        return config().bedrock().assetPattern();
+    }
+
+    public static String getBedrockReleasePackUri() {
+        return Data.get().getOrDefault("bedrock-pack-uri", "");
+    }
+
+    public static void setBedrockReleasePackUri(String uri) {
+        Data.get().set("bedrock-pack-uri", uri);
+    }
+
+    public static int getNetworkThreads() {
+        return config().network().threads();
+    }
+
+    public static int getNetworkConnectTimeout() {
+        return config().network().connectTimeout();
+    }
+
+    public static int getNetworkReadTimeout() {
+        return config().network().readTimeout();
+    }
+
+    public static int getNetworkRetries() {
+        return config().network().retries();
+    }
+
+    public static int getNetworkRetryDelay() {
+        return config().network().retryDelay();
+    }
+
+    public static int getStoreMaxSize() {
+        return config().store().maxSize();
+    }
+
+    public static int getStoreMaxPacks() {
+        return config().store().maxPacks();
+    }
+
+    public static List<String> getMirrorUrls() {
+        return config().mirrors().urls();
+    }
+
+    public static int getMirrorProbeInterval() {
+        return config().mirrors().probeInterval();
+    }
+
+    public static int getMirrorMaxFailures() {
+        return config().mirrors().maxFailures();
+    }
+
+    public static String getCoordinationBackend() {
+        return config().coordination().backend();
+    }
+
+    public static String getCoordinationDirectory() {
+        return config().coordination().directory();
+    }
+
+    public static String getCoordinationProxyName() {
+        return config().coordination().proxyName();
+    }
+
+    public static int getCoordinationPollInterval() {
+        return config().coordination().pollInterval();
+    }
+
+    public static int getCoordinationDistributeDelay() {
+        return config().coordination().distributeDelay();
+    }
+
+    public static int getMetricsBstatsId() {
+        return config().metrics().bstatsId();
     }
 }
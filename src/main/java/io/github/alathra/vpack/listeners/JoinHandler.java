@@ -1,20 +1,100 @@
 package io.github.alathra.vpack.listeners;
 
+import com.velocitypowered.api.event.EventTask;
 import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.DisconnectEvent;
 import com.velocitypowered.api.event.player.ServerPostConnectEvent;
+import com.velocitypowered.api.event.player.ServerPreConnectEvent;
+import com.velocitypowered.api.event.player.configuration.PlayerConfigurationEvent;
+import com.velocitypowered.api.network.ProtocolVersion;
+import com.velocitypowered.api.proxy.Player;
+import io.github.alathra.vpack.config.Settings;
+import io.github.alathra.vpack.metrics.PackMetrics;
 import io.github.alathra.vpack.pack.resource.PackInfo;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends players the packs of the server they connect to.
+ * If enabled, clients that have a configuration phase get their packs before they enter the world, so they do not
+ * reload their resources a second time after loading it. Other clients get their packs once they are connected.
+ */
 public class JoinHandler {
     private final PackInfo packInfo;
+    private final Map<UUID, Long> connectingSince = new ConcurrentHashMap<>();
+    private final Map<UUID, String> configured = new ConcurrentHashMap<>();
 
     public JoinHandler(PackInfo packInfo) {
         this.packInfo = packInfo;
     }
 
+    @Subscribe
+    @SuppressWarnings("unused")
+    public void onServerPreConnect(ServerPreConnectEvent event) {
+        connectingSince.put(event.getPlayer().getUniqueId(), System.nanoTime());
+    }
+
+    @Subscribe
+    @SuppressWarnings("unused")
+    public @Nullable EventTask onPlayerConfiguration(PlayerConfigurationEvent event) {
+        final Player player = event.player();
+        if (!Settings.getDistributionConfigurationPhase() || player.getProtocolVersion().lessThan(ProtocolVersion.MINECRAFT_1_20_2))
+            return null;
+
+        final String server = event.server().getServerInfo().getName();
+        final boolean sent = send(player, server);
+        configured.put(player.getUniqueId(), server);
+        if (!sent)
+            return null;
+
+        // Velocity holds the player in the configuration phase until the task completes
+        return EventTask.resumeWhenComplete(await(player, server, true, Settings.getDistributionConfigurationTimeout()));
+    }
+
     @Subscribe
     @SuppressWarnings("unused")
     public void onPlayerConnect(ServerPostConnectEvent event) {
-        if (event.getPreviousServer() == null)
-            packInfo.distribute().sendToPlayer(event.getPlayer());
+        final Player player = event.getPlayer();
+        final String server = player.getCurrentServer().map(connection -> connection.getServerInfo().getName()).orElse(null);
+        if (server != null && server.equals(configured.remove(player.getUniqueId()))) {
+            connectingSince.remove(player.getUniqueId());
+            return; // Already sent in the configuration phase
+        }
+
+        if (send(player, server)) // Only sends the packs that differ from the previous server
+            await(player, server, false, Settings.getDistributionInFlightTimeout());
+    }
+
+    @Subscribe
+    @SuppressWarnings("unused")
+    public void onDisconnect(DisconnectEvent event) {
+        connectingSince.remove(event.getPlayer().getUniqueId());
+        configured.remove(event.getPlayer().getUniqueId());
+    }
+
+    private boolean send(Player player, @Nullable String server) {
+        final long startedAt = System.nanoTime();
+        final boolean sent = packInfo.distribute().sendToPlayer(player, server);
+        PackMetrics.recordJoinSend(player.getUsername(), server, sent, System.nanoTime() - startedAt);
+        return sent;
+    }
+
+    /**
+     * Waits for the player to answer the packs sent for a server connection, and records how long the connection
+     * took until then.
+     */
+    private CompletableFuture<Boolean> await(Player player, @Nullable String server, boolean configurationPhase, int timeoutSeconds) {
+        final Long since = connectingSince.remove(player.getUniqueId());
+        final long startedAt = since != null ? since : System.nanoTime();
+        return packInfo.distribute()
+            .awaitPacks(player, timeoutSeconds, TimeUnit.SECONDS)
+            .whenComplete((settled, e) -> PackMetrics.recordJoin(
+                player.getUsername(), server, configurationPhase, settled != null && settled, System.nanoTime() - startedAt
+            ));
     }
 }
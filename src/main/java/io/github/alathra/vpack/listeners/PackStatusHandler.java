@@ -0,0 +1,26 @@
+package io.github.alathra.vpack.listeners;
+
+import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.DisconnectEvent;
+import com.velocitypowered.api.event.player.PlayerResourcePackStatusEvent;
+import io.github.alathra.vpack.pack.resource.PackInfo;
+
+public class PackStatusHandler {
+    private final PackInfo packInfo;
+
+    public PackStatusHandler(PackInfo packInfo) {
+        this.packInfo = packInfo;
+    }
+
+    @Subscribe
+    @SuppressWarnings("unused")
+    public void onResourcePackStatus(PlayerResourcePackStatusEvent event) {
+        packInfo.distribute().onStatus(event.getPlayer(), event.getPackId(), event.getStatus());
+    }
+
+    @Subscribe
+    @SuppressWarnings("unused")
+    public void onDisconnect(DisconnectEvent event) {
+        packInfo.distribute().onDisconnect(event.getPlayer());
+    }
+}
@@ -0,0 +1,24 @@
+package io.github.alathra.vpack.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("io.github.alathra.vpack.GithubPoll")
+@Label("GitHub Poll")
+@Category(PackMetrics.CATEGORY)
+@Description("A lookup of the latest release on GitHub")
+final class GithubPollEvent extends jdk.jfr.Event {
+    @Label("Latency")
+    @Timespan
+    long latency;
+
+    @Label("Remaining Requests")
+    @Description("The requests left in the GitHub rate limit, -1 if unknown")
+    int remaining;
+
+    @Label("Success")
+    boolean success;
+}
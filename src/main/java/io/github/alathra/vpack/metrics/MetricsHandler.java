@@ -0,0 +1,91 @@
+package io.github.alathra.vpack.metrics;
+
+import io.github.alathra.vpack.Reloadable;
+import io.github.alathra.vpack.VPack;
+import io.github.alathra.vpack.config.Settings;
+import io.github.alathra.vpack.pack.resource.PlayerPackStates;
+import org.bstats.charts.SimplePie;
+import org.bstats.charts.SingleLineChart;
+import org.bstats.velocity.Metrics;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Reports the pack metrics to bStats.
+ * Counters are reported as the change since the previous submission, since bStats adds up the values of all servers
+ * for each submission period.
+ */
+public class MetricsHandler implements Reloadable {
+    private final Metrics.Factory metricsFactory;
+    private @Nullable Metrics metrics;
+
+    public MetricsHandler(Metrics.Factory metricsFactory) {
+        this.metricsFactory = metricsFactory;
+    }
+
+    @Override
+    public void onInit(VPack plugin) {
+        final int serviceId = Settings.getMetricsBstatsId();
+        if (serviceId <= 0)
+            return;
+
+        final PlayerPackStates states = plugin.getPackHandler().getPackInfo().distribute().getStates();
+        metrics = metricsFactory.make(plugin, serviceId);
+        metrics.addCustomChart(new SingleLineChart("downloaded_megabytes", delta(() -> PackMetrics.snapshot().downloadedBytes() / (1024 * 1024))));
+        metrics.addCustomChart(new SingleLineChart("packs_loaded", delta(states::getLoaded)));
+        metrics.addCustomChart(new SingleLineChart("packs_declined", delta(states::getDeclined)));
+        metrics.addCustomChart(new SingleLineChart("packs_failed", delta(states::getFailed)));
+        metrics.addCustomChart(new SimplePie("average_load_time", () -> bucket(PackMetrics.snapshot().averageLoadTime())));
+        metrics.addCustomChart(new SimplePie("download_speed", () -> speedBucket(PackMetrics.snapshot().downloadBytesPerSecond())));
+    }
+
+    @Override
+    public void onShutdown(VPack plugin) {
+        if (metrics != null) {
+            metrics.shutdown();
+            metrics = null;
+        }
+    }
+
+    private static Callable<Integer> delta(LongSupplier counter) {
+        final AtomicLong last = new AtomicLong();
+        return () -> {
+            final long current = counter.getAsLong();
+            return (int) Math.min(current - last.getAndSet(current), Integer.MAX_VALUE);
+        };
+    }
+
+    private static @Nullable String bucket(Duration duration) {
+        if (duration.isZero())
+            return null; // Nothing loaded yet, skip the chart
+
+        final long seconds = duration.toSeconds();
+        if (seconds < 1)
+            return "< 1s";
+        if (seconds < 5)
+            return "1-5s";
+        if (seconds < 15)
+            return "5-15s";
+        if (seconds < 60)
+            return "15-60s";
+        return "> 60s";
+    }
+
+    private static @Nullable String speedBucket(long bytesPerSecond) {
+        if (bytesPerSecond == 0)
+            return null;
+
+        final long mbit = bytesPerSecond * 8 / 1_000_000;
+        if (mbit < 10)
+            return "< 10 Mbit/s";
+        if (mbit < 100)
+            return "10-100 Mbit/s";
+        if (mbit < 1000)
+            return "100-1000 Mbit/s";
+        return "> 1 Gbit/s";
+    }
+}
@@ -0,0 +1,36 @@
+package io.github.alathra.vpack.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("io.github.alathra.vpack.PackDownload")
+@Label("Pack Download")
+@Category(PackMetrics.CATEGORY)
+@Description("A resource pack downloaded and hashed, or revalidated, by the proxy")
+final class PackDownloadEvent extends jdk.jfr.Event {
+    @Label("URL")
+    String url;
+
+    @Label("Status")
+    int status;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Transfer Time")
+    @Timespan
+    long transferTime;
+
+    @Label("Hash Time")
+    @Description("The part of the transfer time spent hashing the pack")
+    @Timespan
+    long hashTime;
+
+    @Label("Connection Reused")
+    boolean reused;
+}
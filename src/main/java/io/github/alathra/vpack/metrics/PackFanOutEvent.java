@@ -0,0 +1,23 @@
+package io.github.alathra.vpack.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("io.github.alathra.vpack.PackFanOut")
+@Label("Pack Fan-Out")
+@Category(PackMetrics.CATEGORY)
+@Description("The current packs sent to every online player, or a paced rollout started")
+final class PackFanOutEvent extends jdk.jfr.Event {
+    @Label("Players")
+    int players;
+
+    @Label("Paced")
+    boolean paced;
+
+    @Label("Duration")
+    @Timespan
+    long elapsed;
+}
@@ -0,0 +1,31 @@
+package io.github.alathra.vpack.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("io.github.alathra.vpack.PackJoin")
+@Label("Pack Join")
+@Category(PackMetrics.CATEGORY)
+@Description("A server connection from its start until the player answered every pack sent for it")
+final class PackJoinEvent extends jdk.jfr.Event {
+    @Label("Player")
+    String player;
+
+    @Label("Server")
+    String server;
+
+    @Label("Configuration Phase")
+    @Description("Whether the packs were sent before the player entered the world")
+    boolean configurationPhase;
+
+    @Label("Settled")
+    @Description("Whether the player answered every pack before the timeout")
+    boolean settled;
+
+    @Label("Duration")
+    @Timespan
+    long elapsed;
+}
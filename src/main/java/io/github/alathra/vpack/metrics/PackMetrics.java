@@ -0,0 +1,322 @@
+package io.github.alathra.vpack.metrics;
+
+import com.velocitypowered.api.event.player.PlayerResourcePackStatusEvent;
+import io.github.alathra.vpack.pack.http.PackHttpClient;
+import io.github.alathra.vpack.pack.resource.PlayerPackStates;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects timings of the pack pipeline since startup, from downloading and hashing packs to players loading them.
+ * Every recorded measurement is also emitted as a JFR event in the {@value #CATEGORY} category, so single
+ * slow downloads or joins can be inspected in a flight recording.
+ */
+public final class PackMetrics {
+    static final String CATEGORY = "VPack";
+
+    private static final LongAdder DOWNLOADS = new LongAdder();
+    private static final LongAdder NOT_MODIFIED = new LongAdder();
+    private static final LongAdder DOWNLOADED_BYTES = new LongAdder();
+    private static final LongAdder DOWNLOAD_NANOS = new LongAdder();
+    private static final LongAdder HASH_NANOS = new LongAdder();
+
+    private static final LongAdder GITHUB_POLLS = new LongAdder();
+    private static final LongAdder GITHUB_POLL_FAILURES = new LongAdder();
+    private static final LongAdder GITHUB_POLL_NANOS = new LongAdder();
+    private static volatile int githubQuota = -1;
+
+    private static final LongAdder FAN_OUTS = new LongAdder();
+    private static final LongAdder FAN_OUT_NANOS = new LongAdder();
+    private static volatile int lastFanOutPlayers;
+
+    private static final LongAdder JOIN_SENDS = new LongAdder();
+    private static final LongAdder JOIN_SEND_NANOS = new LongAdder();
+
+    private static final LongAdder CONFIGURATION_JOINS = new LongAdder();
+    private static final LongAdder CONFIGURATION_JOIN_NANOS = new LongAdder();
+    private static final LongAdder CONNECTED_JOINS = new LongAdder();
+    private static final LongAdder CONNECTED_JOIN_NANOS = new LongAdder();
+
+    private static final LongAdder LOADS = new LongAdder();
+    private static final LongAdder LOAD_MILLIS = new LongAdder();
+
+    private PackMetrics() {
+    }
+
+    /**
+     * Records a pack download or revalidation.
+     *
+     * @param url      the url the pack was downloaded from
+     * @param response the completed download
+     */
+    public static void recordDownload(URL url, PackHttpClient.Response response) {
+        final long transferNanos = response.transferTime().toNanos();
+        final long hashNanos = response.hashTime().toNanos();
+
+        DOWNLOADS.increment();
+        if (response.isNotModified())
+            NOT_MODIFIED.increment();
+        DOWNLOADED_BYTES.add(response.bytesRead());
+        DOWNLOAD_NANOS.add(transferNanos);
+        HASH_NANOS.add(hashNanos);
+
+        final PackDownloadEvent event = new PackDownloadEvent();
+        if (event.shouldCommit()) {
+            event.url = url.toString();
+            event.status = response.statusCode();
+            event.bytes = response.bytesRead();
+            event.transferTime = transferNanos;
+            event.hashTime = hashNanos;
+            event.reused = response.reused();
+            event.commit();
+        }
+    }
+
+    /**
+     * Records a poll of the GitHub API.
+     *
+     * @param elapsedNanos the time the poll took
+     * @param remaining    the requests left in the rate limit afterwards, or -1 if unknown
+     * @param success      whether the latest release was fetched
+     */
+    public static void recordGithubPoll(long elapsedNanos, int remaining, boolean success) {
+        GITHUB_POLLS.increment();
+        if (!success)
+            GITHUB_POLL_FAILURES.increment();
+        GITHUB_POLL_NANOS.add(elapsedNanos);
+        if (remaining >= 0)
+            githubQuota = remaining;
+
+        final GithubPollEvent event = new GithubPollEvent();
+        if (event.shouldCommit()) {
+            event.latency = elapsedNanos;
+            event.remaining = remaining;
+            event.success = success;
+            event.commit();
+        }
+    }
+
+    /**
+     * Records sending the current packs to every online player.
+     *
+     * @param players      the amount of online players
+     * @param paced        whether the packs are sent in waves, in which case only starting the rollout was timed
+     * @param elapsedNanos the time the fan-out took
+     */
+    public static void recordFanOut(int players, boolean paced, long elapsedNanos) {
+        FAN_OUTS.increment();
+        FAN_OUT_NANOS.add(elapsedNanos);
+        lastFanOutPlayers = players;
+
+        final PackFanOutEvent event = new PackFanOutEvent();
+        if (event.shouldCommit()) {
+            event.players = players;
+            event.paced = paced;
+            event.elapsed = elapsedNanos;
+            event.commit();
+        }
+    }
+
+    /**
+     * Records sending packs to a player that connected to a server.
+     *
+     * @param player       the name of the player
+     * @param server       the server the player connected to
+     * @param sent         whether any pack was sent or removed
+     * @param elapsedNanos the time it took to build and send the request
+     */
+    public static void recordJoinSend(String player, @Nullable String server, boolean sent, long elapsedNanos) {
+        JOIN_SENDS.increment();
+        JOIN_SEND_NANOS.add(elapsedNanos);
+
+        final PackSendEvent event = new PackSendEvent();
+        if (event.shouldCommit()) {
+            event.player = player;
+            event.server = server;
+            event.sent = sent;
+            event.elapsed = elapsedNanos;
+            event.commit();
+        }
+    }
+
+    /**
+     * Records the time from the start of a server connection until the player answered every pack sent for it.
+     * Only connections that settled before the timeout are counted towards the averages.
+     *
+     * @param player             the name of the player
+     * @param server             the server the player connected to
+     * @param configurationPhase whether the packs were sent in the configuration phase, before the player entered the world
+     * @param settled            whether the player answered every pack before the timeout
+     * @param elapsedNanos       the time since the connection started
+     */
+    public static void recordJoin(String player, @Nullable String server, boolean configurationPhase, boolean settled, long elapsedNanos) {
+        if (settled) {
+            (configurationPhase ? CONFIGURATION_JOINS : CONNECTED_JOINS).increment();
+            (configurationPhase ? CONFIGURATION_JOIN_NANOS : CONNECTED_JOIN_NANOS).add(elapsedNanos);
+        }
+
+        final PackJoinEvent event = new PackJoinEvent();
+        if (event.shouldCommit()) {
+            event.player = player;
+            event.server = server;
+            event.configurationPhase = configurationPhase;
+            event.settled = settled;
+            event.elapsed = elapsedNanos;
+            event.commit();
+        }
+    }
+
+    /**
+     * Records a status reported by the client of a player for a pack sent by this plugin.
+     * The time from sending a pack to it being loaded is counted towards the average load time.
+     *
+     * @param player the name of the player
+     * @param packId the pack
+     * @param state  the state of the pack after the status was applied
+     */
+    public static void recordStatus(String player, @Nullable UUID packId, PlayerPackStates.PackState state) {
+        final long sinceSent = Math.max(state.updatedAt() - state.sentAt(), 0);
+        if (state.status() == PlayerResourcePackStatusEvent.Status.SUCCESSFUL) {
+            LOADS.increment();
+            LOAD_MILLIS.add(sinceSent);
+        }
+
+        final PackStatusEvent event = new PackStatusEvent();
+        if (event.shouldCommit()) {
+            event.player = player;
+            event.packId = packId == null ? null : packId.toString();
+            event.status = String.valueOf(state.status());
+            event.attempt = state.attempts();
+            event.sinceSent = TimeUnit.MILLISECONDS.toNanos(sinceSent);
+            event.commit();
+        }
+    }
+
+    /**
+     * Gets a snapshot of the metrics since startup.
+     *
+     * @return the metrics
+     */
+    public static Snapshot snapshot() {
+        return new Snapshot(
+            DOWNLOADS.sum(),
+            NOT_MODIFIED.sum(),
+            DOWNLOADED_BYTES.sum(),
+            Duration.ofNanos(DOWNLOAD_NANOS.sum()),
+            Duration.ofNanos(HASH_NANOS.sum()),
+            GITHUB_POLLS.sum(),
+            GITHUB_POLL_FAILURES.sum(),
+            Duration.ofNanos(GITHUB_POLL_NANOS.sum()),
+            githubQuota,
+            FAN_OUTS.sum(),
+            Duration.ofNanos(FAN_OUT_NANOS.sum()),
+            lastFanOutPlayers,
+            JOIN_SENDS.sum(),
+            Duration.ofNanos(JOIN_SEND_NANOS.sum()),
+            CONFIGURATION_JOINS.sum(),
+            Duration.ofNanos(CONFIGURATION_JOIN_NANOS.sum()),
+            CONNECTED_JOINS.sum(),
+            Duration.ofNanos(CONNECTED_JOIN_NANOS.sum()),
+            LOADS.sum(),
+            Duration.ofMillis(LOAD_MILLIS.sum())
+        );
+    }
+
+    /**
+     * The metrics of the pack pipeline since startup.
+     *
+     * @param downloads             the amount of pack downloads, including revalidations
+     * @param notModified           the amount of revalidations that did not have to download the pack
+     * @param downloadedBytes       the total amount of pack bytes downloaded
+     * @param downloadTime          the total time spent downloading packs
+     * @param hashTime              the part of the download time spent hashing packs
+     * @param githubPolls           the amount of GitHub polls
+     * @param githubFailures        the amount of GitHub polls that failed
+     * @param githubPollTime        the total time spent polling GitHub
+     * @param githubQuota           the requests left in the GitHub rate limit, or -1 if GitHub was not polled yet
+     * @param fanOuts               the amount of times packs were sent to all online players
+     * @param fanOutTime            the total time spent sending packs to all online players
+     * @param lastFanOutPlayers     the amount of players the last fan-out was sent to
+     * @param joinSends             the amount of server connections packs were checked for
+     * @param joinSendTime          the total time spent sending packs on server connections
+     * @param configurationJoins    the amount of server connections whose packs were loaded in the configuration phase
+     * @param configurationJoinTime the total time from the start of those connections until their packs were loaded
+     * @param connectedJoins        the amount of server connections whose packs were loaded after connecting
+     * @param connectedJoinTime     the total time from the start of those connections until their packs were loaded
+     * @param loads                 the amount of packs players loaded successfully
+     * @param loadTime              the total time from sending a pack to it being loaded
+     */
+    public record Snapshot(
+        long downloads,
+        long notModified,
+        long downloadedBytes,
+        Duration downloadTime,
+        Duration hashTime,
+        long githubPolls,
+        long githubFailures,
+        Duration githubPollTime,
+        int githubQuota,
+        long fanOuts,
+        Duration fanOutTime,
+        int lastFanOutPlayers,
+        long joinSends,
+        Duration joinSendTime,
+        long configurationJoins,
+        Duration configurationJoinTime,
+        long connectedJoins,
+        Duration connectedJoinTime,
+        long loads,
+        Duration loadTime
+    ) {
+        /**
+         * Gets the average pack download rate over all downloads.
+         *
+         * @return the rate in bytes per second
+         */
+        public long downloadBytesPerSecond() {
+            final long nanos = downloadTime.toNanos();
+            return nanos == 0 ? 0 : (long) (downloadedBytes / (nanos / 1_000_000_000d));
+        }
+
+        public Duration averageDownloadTime() {
+            return average(downloadTime, downloads);
+        }
+
+        public Duration averageHashTime() {
+            return average(hashTime, downloads - notModified);
+        }
+
+        public Duration averageGithubPollTime() {
+            return average(githubPollTime, githubPolls);
+        }
+
+        public Duration averageFanOutTime() {
+            return average(fanOutTime, fanOuts);
+        }
+
+        public Duration averageJoinSendTime() {
+            return average(joinSendTime, joinSends);
+        }
+
+        public Duration averageConfigurationJoinTime() {
+            return average(configurationJoinTime, configurationJoins);
+        }
+
+        public Duration averageConnectedJoinTime() {
+            return average(connectedJoinTime, connectedJoins);
+        }
+
+        public Duration averageLoadTime() {
+            return average(loadTime, loads);
+        }
+
+        private static Duration average(Duration total, long count) {
+            return count <= 0 ? Duration.ZERO : total.dividedBy(count);
+        }
+    }
+}
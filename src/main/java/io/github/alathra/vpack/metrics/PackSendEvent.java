@@ -0,0 +1,27 @@
+package io.github.alathra.vpack.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("io.github.alathra.vpack.PackSend")
+@Label("Pack Send")
+@Category(PackMetrics.CATEGORY)
+@Description("The packs of a server sent to a player that connected to it")
+final class PackSendEvent extends jdk.jfr.Event {
+    @Label("Player")
+    String player;
+
+    @Label("Server")
+    String server;
+
+    @Label("Sent")
+    @Description("Whether any pack was sent or removed")
+    boolean sent;
+
+    @Label("Duration")
+    @Timespan
+    long elapsed;
+}
@@ -0,0 +1,29 @@
+package io.github.alathra.vpack.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("io.github.alathra.vpack.PackStatus")
+@Label("Pack Status")
+@Category(PackMetrics.CATEGORY)
+@Description("A resource pack status reported by a client for a pack sent by the proxy")
+final class PackStatusEvent extends jdk.jfr.Event {
+    @Label("Player")
+    String player;
+
+    @Label("Pack Id")
+    String packId;
+
+    @Label("Status")
+    String status;
+
+    @Label("Attempt")
+    int attempt;
+
+    @Label("Time Since Sent")
+    @Timespan
+    long sinceSent;
+}
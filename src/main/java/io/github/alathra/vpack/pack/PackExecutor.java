@@ -0,0 +1,164 @@
+package io.github.alathra.vpack.pack;
+
+import io.github.alathra.vpack.config.Settings;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded executor for the blocking network work of the pack pipeline (downloading, hashing and polling).
+ * Keeping this work off the common pool and the Velocity scheduler means a hung connection can only ever occupy one
+ * of its own threads, and all of it is cancelled when the plugin shuts down.
+ */
+public final class PackExecutor implements Executor {
+    private static final int QUEUE_CAPACITY = 64;
+
+    private final Logger logger;
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService scheduler;
+    private final int retries;
+    private final long retryDelayMillis;
+
+    public PackExecutor(Logger logger) {
+        this.logger = logger;
+        this.retries = Math.max(Settings.getNetworkRetries(), 0);
+        this.retryDelayMillis = Math.max(Settings.getNetworkRetryDelay(), 0);
+
+        final int threads = Math.max(Settings.getNetworkThreads(), 1);
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(
+            threads,
+            threads,
+            60L,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+            r -> {
+                final Thread thread = new Thread(r, "VPack Worker #" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+        this.workers.allowCoreThreadTimeOut(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "VPack Retry Scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        workers.execute(command);
+    }
+
+    /**
+     * Runs a blocking operation on this executor.
+     *
+     * @param supplier the operation
+     * @param <T>      the result type
+     * @return a future completed with the result, or exceptionally if the operation failed
+     */
+    public <T> CompletableFuture<T> supply(IOSupplier<T> supplier) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        submit(future, supplier);
+        return future;
+    }
+
+    /**
+     * Runs a blocking operation on this executor, retrying it with exponential backoff when it fails with an
+     * {@link IOException}. The amount of retries and the initial delay are configured with {@code network.retries}
+     * and {@code network.retry-delay}.
+     *
+     * @param description what the operation does, used in log messages
+     * @param supplier    the operation
+     * @param <T>         the result type
+     * @return a future completed with the result, or exceptionally with the last failure once all retries are used up
+     */
+    public <T> CompletableFuture<T> supplyWithRetry(String description, IOSupplier<T> supplier) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        attempt(future, description, supplier, 0);
+        return future;
+    }
+
+    private <T> void attempt(CompletableFuture<T> future, String description, IOSupplier<T> supplier, int attempt) {
+        supply(supplier).whenComplete((result, e) -> {
+            if (e == null) {
+                future.complete(result);
+                return;
+            }
+
+            final Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (!(cause instanceof IOException) || attempt >= retries || isShutdown()) {
+                future.completeExceptionally(cause);
+                return;
+            }
+
+            // Exponential backoff with up to 25% jitter, so several proxies do not retry in lockstep
+            final long delay = retryDelayMillis * (1L << Math.min(attempt, 16));
+            final long jitteredDelay = delay + ThreadLocalRandom.current().nextLong(delay / 4 + 1);
+            logger.warn("Failed to {} ({}), retrying in {} ms ({}/{})", description, cause.getMessage(), jitteredDelay, attempt + 1, retries);
+
+            try {
+                scheduler.schedule(() -> attempt(future, description, supplier, attempt + 1), jitteredDelay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException rejected) {
+                future.completeExceptionally(cause);
+            }
+        });
+    }
+
+    private <T> void submit(CompletableFuture<T> future, IOSupplier<T> supplier) {
+        try {
+            workers.execute(() -> {
+                if (future.isDone())
+                    return;
+
+                try {
+                    future.complete(supplier.get());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(isShutdown() ? new CancellationException("Executor is shut down") : e);
+        }
+    }
+
+    public boolean isShutdown() {
+        return workers.isShutdown();
+    }
+
+    /**
+     * Cancels all queued and running operations and waits briefly for the worker threads to stop.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+        workers.shutdownNow();
+        try {
+            if (!workers.awaitTermination(5, TimeUnit.SECONDS))
+                logger.warn("Some network operations did not stop in time after shutdown");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A blocking operation that may fail with an {@link IOException}.
+     *
+     * @param <T> the result type
+     */
+    @FunctionalInterface
+    public interface IOSupplier<T> {
+        T get() throws IOException;
+    }
+}
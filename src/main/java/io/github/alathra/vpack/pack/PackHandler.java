@@ -3,25 +3,50 @@ package io.github.alathra.vpack.pack;
 import com.velocitypowered.api.proxy.ProxyServer;
 import io.github.alathra.vpack.Reloadable;
 import io.github.alathra.vpack.VPack;
+import io.github.alathra.vpack.config.ConfigHandler;
+import io.github.alathra.vpack.config.PluginConfig;
 import io.github.alathra.vpack.listeners.JoinHandler;
+import io.github.alathra.vpack.listeners.PackStatusHandler;
+import io.github.alathra.vpack.pack.bedrock.BedrockPacks;
+import io.github.alathra.vpack.pack.coordination.PackCoordinator;
 import io.github.alathra.vpack.pack.github.GitHubHandler;
+import io.github.alathra.vpack.pack.http.PackHttpClient;
+import io.github.alathra.vpack.pack.mirror.PackMirrors;
 import io.github.alathra.vpack.pack.resource.PackInfo;
+import io.github.alathra.vpack.pack.server.PackServer;
+import io.github.alathra.vpack.pack.store.PackStore;
 import org.slf4j.Logger;
 
+import java.util.List;
+
 public class PackHandler implements Reloadable {
     private final VPack plugin;
     private final ProxyServer proxy;
     private final Logger logger;
+    private final PackExecutor executor;
+    private final PackHttpClient http;
+    private final PackStore store;
+    private final PackServer packServer;
+    private final PackMirrors mirrors;
     private final PackInfo packInfo;
+    private final PackCoordinator coordinator;
     private final GitHubHandler gitHubHandler;
+    private final BedrockPacks bedrockPacks;
 
     public PackHandler(VPack plugin, ProxyServer proxy, Logger logger) {
         this.plugin = plugin;
         this.proxy = proxy;
         this.logger = logger;
 
-        this.packInfo = new PackInfo(proxy, logger);
-        this.gitHubHandler = new GitHubHandler(plugin, proxy, logger, packInfo);
+        this.executor = new PackExecutor(logger);
+        this.http = new PackHttpClient(logger);
+        this.store = new PackStore(plugin, logger, http);
+        this.packServer = new PackServer(plugin, logger, store);
+        this.mirrors = new PackMirrors(plugin, proxy, logger, executor, http);
+        this.packInfo = new PackInfo(proxy, logger, packServer, executor, store, mirrors);
+        this.coordinator = new PackCoordinator(plugin, proxy, logger, packInfo, executor, store);
+        this.gitHubHandler = new GitHubHandler(plugin, proxy, logger, packInfo, executor, http, store, coordinator);
+        this.bedrockPacks = new BedrockPacks(plugin, proxy, logger, executor, http, coordinator);
 
         // Send the pack to all players on startup if the pack is configured
         this.packInfo.distribute().sendToAllPlayers();
@@ -29,12 +54,84 @@ public class PackHandler implements Reloadable {
 
     @Override
     public void onInit(VPack plugin) {
+        packServer.start();
+        packInfo.distribute().invalidate(); // Point cached requests at the pack server now that it is running
+        mirrors.start(packInfo);
+        bedrockPacks.start(packInfo);
+        coordinator.start(); // Before the first GitHub poll, so only the leader polls
         gitHubHandler.enableUpdateTask();
         proxy.getEventManager().register(plugin, new JoinHandler(packInfo));
+        proxy.getEventManager().register(plugin, new PackStatusHandler(packInfo));
+        subscribe(plugin.getConfigHandler());
+    }
+
+    /**
+     * Applies reloaded settings to the parts that cache them. Settings read per request or per join apply by themselves.
+     */
+    private void subscribe(ConfigHandler config) {
+        config.subscribe(PluginConfig::github, c -> {
+            gitHubHandler.disableUpdateTask();
+            gitHubHandler.enableUpdateTask();
+        });
+        config.subscribe(PluginConfig::mirrors, c -> {
+            mirrors.stop();
+            mirrors.start(packInfo);
+        });
+        config.subscribe(PluginConfig::coordination, c -> {
+            coordinator.stop();
+            coordinator.start();
+        });
+
+        // Cached requests contain the prompt, the server mapping and the pack URLs
+        config.subscribe(PluginConfig::packInfo, c -> packInfo.distribute().invalidate());
+        config.subscribe(PluginConfig::servers, c -> packInfo.distribute().invalidate());
+        config.subscribe(PluginConfig::defaultPacks, c -> packInfo.distribute().invalidate());
+
+        config.subscribe(PluginConfig::packs, c -> logger.warn("Changes to packs require a restart to apply"));
+        config.subscribe(c -> c.packServer().optimize(), c -> packInfo.distribute().invalidate());
+        config.subscribe(
+            c -> List.of(c.packServer().enabled(), c.packServer().bind(), c.packServer().port(), c.packServer().publicUrl(), c.packServer().maxConnections(), c.packServer().keepAliveTimeout()),
+            c -> logger.warn("Changes to pack-server require a restart to apply")
+        );
+        config.subscribe(
+            c -> List.of(c.bedrock().packEnabled(), c.bedrock().packUri(), c.bedrock().assetPattern()),
+            c -> logger.warn("Changes to bedrock.pack require a restart to apply")
+        );
+        config.subscribe(PluginConfig::network, c -> logger.warn("Changes to network require a restart to apply"));
     }
 
     @Override
     public void onShutdown(VPack plugin) {
         gitHubHandler.disableUpdateTask();
+        coordinator.stop();
+        bedrockPacks.stop();
+        mirrors.stop();
+        packServer.stop();
+        packInfo.distribute().invalidate();
+        executor.shutdown(); // Cancel any download or poll still in progress
+    }
+
+    public PackInfo getPackInfo() {
+        return packInfo;
+    }
+
+    public PackHttpClient getHttpClient() {
+        return http;
+    }
+
+    public PackMirrors getMirrors() {
+        return mirrors;
+    }
+
+    public PackServer getPackServer() {
+        return packServer;
+    }
+
+    public PackStore getStore() {
+        return store;
+    }
+
+    public PackCoordinator getCoordinator() {
+        return coordinator;
     }
 }
@@ -0,0 +1,44 @@
+package io.github.alathra.vpack.pack.bedrock;
+
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import org.geysermc.floodgate.api.FloodgateApi;
+import org.geysermc.geyser.api.GeyserApi;
+
+/**
+ * Detects players that joined from Bedrock Edition through Geyser.
+ * Floodgate is asked first since it knows every Bedrock player even when Geyser runs on another server, Geyser is
+ * only asked if Floodgate is not installed. The APIs of both are only touched if the plugin is loaded.
+ */
+public final class BedrockDetector {
+    private final boolean floodgate;
+    private final boolean geyser;
+
+    public BedrockDetector(ProxyServer proxy) {
+        this.floodgate = proxy.getPluginManager().isLoaded("floodgate");
+        this.geyser = proxy.getPluginManager().isLoaded("geyser");
+    }
+
+    /**
+     * Checks if Bedrock players can be detected at all.
+     *
+     * @return true if Floodgate or Geyser is installed
+     */
+    public boolean isAvailable() {
+        return floodgate || geyser;
+    }
+
+    /**
+     * Checks if a player joined from Bedrock Edition.
+     *
+     * @param player the player
+     * @return true if the player is a Bedrock player, false if not or if neither Floodgate nor Geyser is installed
+     */
+    public boolean isBedrock(Player player) {
+        if (floodgate)
+            return FloodgateApi.getInstance().isFloodgatePlayer(player.getUniqueId());
+        if (geyser)
+            return GeyserApi.api().isBedrockPlayer(player.getUniqueId());
+        return false;
+    }
+}
@@ -0,0 +1,220 @@
+package io.github.alathra.vpack.pack.bedrock;
+
+import com.velocitypowered.api.proxy.ProxyServer;
+import io.github.alathra.vpack.VPack;
+import io.github.alathra.vpack.config.Settings;
+import io.github.alathra.vpack.metrics.PackMetrics;
+import io.github.alathra.vpack.pack.PackExecutor;
+import io.github.alathra.vpack.pack.coordination.PackCoordinator;
+import io.github.alathra.vpack.pack.http.PackHttpClient;
+import io.github.alathra.vpack.pack.resource.PackInfo;
+import io.github.alathra.vpack.pack.resource.PackSnapshot;
+import io.github.alathra.vpack.utils.HexUtil;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Provides Bedrock players with a Bedrock version of the main pack through Geyser.
+ * The Bedrock pack is downloaded once for every version of the main pack and stored in the {@code bedrock} folder
+ * named by the hash of the main pack, so restarts reuse it instead of downloading it again.
+ * With coordination enabled only the leader downloads it, the other proxies copy it from the leader.
+ */
+public final class BedrockPacks {
+    private static final String EXTENSION = ".mcpack";
+
+    private final VPack plugin;
+    private final ProxyServer proxy;
+    private final Logger logger;
+    private final PackExecutor executor;
+    private final PackHttpClient http;
+    private final PackCoordinator coordinator;
+    private final Path directory;
+
+    private volatile @Nullable GeyserPackRegistration registration;
+    private volatile @Nullable String wanted;
+    private volatile @Nullable String current;
+    private @Nullable Path registered; // The file Geyser sends to Bedrock players
+
+    public BedrockPacks(VPack plugin, ProxyServer proxy, Logger logger, PackExecutor executor, PackHttpClient http, PackCoordinator coordinator) {
+        this.plugin = plugin;
+        this.proxy = proxy;
+        this.logger = logger;
+        this.executor = executor;
+        this.http = http;
+        this.coordinator = coordinator;
+        this.directory = plugin.getDataDirectory().resolve("bedrock");
+    }
+
+    /**
+     * Registers the Bedrock pack with Geyser if enabled, and keeps it in sync with the main pack.
+     *
+     * @param packInfo the pack info of the main pack
+     */
+    public void start(PackInfo packInfo) {
+        if (!Settings.getBedrockPackEnabled() || registration != null)
+            return;
+
+        if (!proxy.getPluginManager().isLoaded("geyser")) {
+            logger.warn("Bedrock packs are enabled, but Geyser is not installed on this proxy");
+            return;
+        }
+
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            logger.error("Failed to create Bedrock pack directory {}", directory, e);
+            return;
+        }
+
+        registration = new GeyserPackRegistration(plugin);
+        packInfo.addListener(this::prepare);
+        prepare(packInfo.getSnapshot());
+    }
+
+    public void stop() {
+        if (registration == null)
+            return;
+
+        registration.unregister();
+        registration = null;
+        wanted = null;
+        current = null;
+    }
+
+    /**
+     * Makes sure the Bedrock pack belonging to a version of the main pack is stored and registered.
+     */
+    private void prepare(PackSnapshot snapshot) {
+        if (registration == null || !snapshot.isConfigured())
+            return;
+
+        final String key = HexUtil.toString(snapshot.sha1());
+        wanted = key;
+        if (key.equals(current))
+            return;
+
+        final Path file = directory.resolve(key + EXTENSION);
+        if (Files.isRegularFile(file)) {
+            register(key, file);
+            return;
+        }
+
+        final URL url = getSourceUrl();
+        if (url == null)
+            return;
+
+        final CompletableFuture<Path> stored = coordinator.isLeader()
+            ? downloadAndShare(url, file)
+            : executor.supplyWithRetry("copy Bedrock pack " + key + " shared by the leader", () -> copyShared(file))
+                .exceptionallyCompose(e -> downloadAndShare(url, file)); // The leader may not have shared it, like without coordination
+
+        stored.thenAccept(downloaded -> register(key, downloaded))
+            .exceptionally(e -> {
+                logger.warn("Failed to download Bedrock pack from {}: {}", url, (e.getCause() != null ? e.getCause() : e).getMessage());
+                return null;
+            });
+    }
+
+    /**
+     * Gets the URL of the Bedrock pack, taken from the GitHub release if GitHub updates are enabled.
+     *
+     * @return the url, or null if none is configured
+     */
+    private @Nullable URL getSourceUrl() {
+        final String uri = Settings.getIsGithubEnabled() ? Settings.getBedrockReleasePackUri() : Settings.getBedrockPackUri();
+        if (uri.isEmpty()) {
+            logger.warn("No Bedrock pack found to send to Bedrock players, set \"bedrock.pack.uri\" or attach one to the GitHub release");
+            return null;
+        }
+
+        try {
+            return new URL(uri);
+        } catch (MalformedURLException e) {
+            logger.error("Invalid Bedrock pack URL: {}", uri);
+            return null;
+        }
+    }
+
+    private CompletableFuture<Path> downloadAndShare(URL url, Path file) {
+        return executor.supplyWithRetry("download Bedrock pack from " + url, () -> {
+            download(url, file);
+            coordinator.share(file.getFileName().toString(), file);
+            return file;
+        });
+    }
+
+    private Path copyShared(Path file) throws IOException {
+        if (!coordinator.copyShared(file.getFileName().toString(), file))
+            throw new IOException("The leader has not shared the Bedrock pack yet");
+
+        logger.info("Copied Bedrock pack {} shared by the leader", file.getFileName());
+        return file;
+    }
+
+    private Path download(URL url, Path file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        final Path temp = file.resolveSibling(file.getFileName() + ".part");
+        try {
+            PackMetrics.recordDownload(url, http.download(url, digest, null, temp));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        logger.info("Downloaded Bedrock pack {} from {}", HexUtil.toString(digest.digest()), url);
+        return file;
+    }
+
+    private synchronized void register(String key, Path file) {
+        if (registration == null || !key.equals(wanted))
+            return; // The main pack changed again while downloading
+
+        try {
+            registration.setPack(file);
+        } catch (RuntimeException e) {
+            logger.error("Geyser could not read the Bedrock pack {}", file, e);
+            return;
+        }
+
+        current = key;
+        final Path previous = registered;
+        registered = file;
+        prune(file, previous);
+        logger.info("Sending Bedrock players the Bedrock pack for resource pack {}", key);
+    }
+
+    /**
+     * Deletes the stored Bedrock packs of previous versions of the main pack, except the one registered before.
+     * Bedrock players that joined before the update may still be downloading that one, it is deleted on the next update.
+     *
+     * @param keep     the registered pack
+     * @param previous the pack registered before, or null if there was none
+     */
+    private void prune(Path keep, @Nullable Path previous) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                if (!file.equals(keep) && !file.equals(previous))
+                    Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to delete old Bedrock packs: {}", e.getMessage());
+        }
+    }
+}
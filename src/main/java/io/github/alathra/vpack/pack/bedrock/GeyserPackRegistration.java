@@ -0,0 +1,45 @@
+package io.github.alathra.vpack.pack.bedrock;
+
+import io.github.alathra.vpack.VPack;
+import org.geysermc.geyser.api.GeyserApi;
+import org.geysermc.geyser.api.event.EventRegistrar;
+import org.geysermc.geyser.api.event.EventSubscriber;
+import org.geysermc.geyser.api.event.bedrock.SessionLoadResourcePacksEvent;
+import org.geysermc.geyser.api.pack.PackCodec;
+import org.geysermc.geyser.api.pack.ResourcePack;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+
+/**
+ * Adds the current Bedrock pack to the packs Geyser sends every Bedrock session.
+ * Kept apart from {@link BedrockPacks} so Geyser classes are only loaded when Geyser is installed.
+ */
+final class GeyserPackRegistration {
+    private final EventSubscriber<EventRegistrar, SessionLoadResourcePacksEvent> subscription;
+    private volatile @Nullable ResourcePack pack;
+
+    GeyserPackRegistration(VPack plugin) {
+        this.subscription = GeyserApi.api().eventBus().subscribe(EventRegistrar.of(plugin), SessionLoadResourcePacksEvent.class, this::onSessionLoad);
+    }
+
+    /**
+     * Replaces the registered pack. Sessions that already loaded their packs keep the previous one until they rejoin.
+     *
+     * @param file the Bedrock pack file, or null to stop sending a pack
+     */
+    void setPack(@Nullable Path file) {
+        this.pack = file == null ? null : ResourcePack.create(PackCodec.path(file)); // Reads the manifest once, not per session
+    }
+
+    private void onSessionLoad(SessionLoadResourcePacksEvent event) {
+        final ResourcePack current = pack;
+        if (current != null)
+            event.register(current);
+    }
+
+    void unregister() {
+        GeyserApi.api().eventBus().unsubscribe(subscription);
+        pack = null;
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.alathra.vpack.pack.coordination;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+/**
+ * Shared state between several proxies serving the same pack, so only one of them polls GitHub, downloads and hashes
+ * each release, and the others pick up the result, including the verified pack bytes.
+ * Implementations must be safe to use from several proxies at once, and from several threads of the same proxy.
+ */
+public interface CoordinationBackend {
+    /**
+     * Tries to become the leader, or checks that this proxy still is. Only the leader looks for new packs.
+     * Leadership must be released automatically if the proxy stops or crashes, so another proxy can take over.
+     *
+     * @return true if this proxy is the leader
+     * @throws IOException if the shared state could not be reached
+     */
+    boolean tryLead() throws IOException;
+
+    /**
+     * Publishes a new pack to the other proxies.
+     *
+     * @param pack the pack
+     * @throws IOException if the shared state could not be written
+     */
+    void publish(PublishedPack pack) throws IOException;
+
+    /**
+     * Reads the most recently published pack.
+     *
+     * @return the pack, or null if no pack has been published yet
+     * @throws IOException if the shared state could not be read
+     */
+    @Nullable PublishedPack readLatest() throws IOException;
+
+    /**
+     * Shares the verified bytes of a pack with the other proxies, so they do not have to download it themselves.
+     *
+     * @param name the file name of the pack, like its hash and extension
+     * @param file the pack file
+     * @throws IOException if the pack could not be shared
+     */
+    void sharePack(String name, Path file) throws IOException;
+
+    /**
+     * Copies a pack shared by another proxy.
+     *
+     * @param name   the file name of the pack
+     * @param target the file to copy the pack to, replaced atomically once the copy is complete
+     * @param digest the digest to update with the copied bytes, so they can be verified, or null
+     * @return true if the pack was copied, false if it has not been shared
+     * @throws IOException if the pack could not be copied
+     */
+    boolean copySharedPack(String name, Path target, @Nullable MessageDigest digest) throws IOException;
+
+    /**
+     * Gives up leadership and releases all resources.
+     */
+    void close();
+}
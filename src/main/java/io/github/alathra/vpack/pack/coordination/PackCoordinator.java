@@ -0,0 +1,309 @@
+package io.github.alathra.vpack.pack.coordination;
+
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import io.github.alathra.vpack.VPack;
+import io.github.alathra.vpack.config.Settings;
+import io.github.alathra.vpack.pack.PackExecutor;
+import io.github.alathra.vpack.pack.github.GithubReleaseState;
+import io.github.alathra.vpack.pack.resource.PackInfo;
+import io.github.alathra.vpack.pack.store.PackStore;
+import io.github.alathra.vpack.utils.HexUtil;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets several proxies share the work of updating the pack. One proxy is elected leader and is the only one that polls
+ * GitHub, downloads and hashes a new release. It then publishes the pack and its verified bytes through the configured
+ * {@link CoordinationBackend}, and the other proxies adopt it without downloading or hashing anything.
+ * Every proxy sends the new pack to its players at the same time chosen by the leader, so players on different
+ * proxies get the update together.
+ * <p>
+ * Without a backend configured this proxy is always the leader and new packs are sent right away.
+ */
+public final class PackCoordinator {
+    private static final String PACK_EXTENSION = ".zip";
+
+    private final VPack plugin;
+    private final ProxyServer proxy;
+    private final Logger logger;
+    private final PackInfo packInfo;
+    private final PackExecutor executor;
+    private final PackStore store;
+
+    private volatile @Nullable CoordinationBackend backend;
+    private @Nullable ScheduledTask task;
+    private CompletableFuture<Void> adopting = CompletableFuture.completedFuture(null);
+    private String name = "";
+    private volatile boolean leader = true;
+    private volatile @Nullable PublishedPack lastSeen;
+
+    public PackCoordinator(VPack plugin, ProxyServer proxy, Logger logger, PackInfo packInfo, PackExecutor executor, PackStore store) {
+        this.plugin = plugin;
+        this.proxy = proxy;
+        this.logger = logger;
+        this.packInfo = packInfo;
+        this.executor = executor;
+        this.store = store;
+    }
+
+    /**
+     * Connects to the configured backend and starts competing for leadership.
+     */
+    public void start() {
+        if (backend != null)
+            return;
+
+        backend = createBackend(Settings.getCoordinationBackend());
+        if (backend == null)
+            return;
+
+        name = Settings.getCoordinationProxyName().isBlank() ? hostName() : Settings.getCoordinationProxyName();
+        leader = false;
+        poll();
+        task = proxy.getScheduler()
+            .buildTask(plugin, this::poll)
+            .repeat(Math.max(Settings.getCoordinationPollInterval(), 1), TimeUnit.SECONDS)
+            .schedule();
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+
+        if (backend != null) {
+            backend.close();
+            backend = null;
+        }
+        leader = true;
+    }
+
+    private @Nullable CoordinationBackend createBackend(String type) {
+        return switch (type.toLowerCase(Locale.ROOT)) {
+            case "", "none" -> null;
+            case "directory" -> new SharedDirectoryBackend(plugin.getDataDirectory().resolve(Path.of(Settings.getCoordinationDirectory())));
+            default -> {
+                logger.error("Unknown coordination backend \"{}\", updating the pack without coordination", type);
+                yield null;
+            }
+        };
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+
+    /**
+     * Checks if this proxy should look for new packs.
+     *
+     * @return true if this proxy is the leader or coordination is disabled
+     */
+    public boolean isLeader() {
+        return leader;
+    }
+
+    /**
+     * Renews leadership, and adopts the latest pack published by the leader if this proxy is a follower.
+     */
+    private synchronized void poll() {
+        final CoordinationBackend current = backend;
+        if (current == null)
+            return;
+
+        try {
+            final boolean nowLeader = current.tryLead();
+            if (nowLeader != leader) {
+                leader = nowLeader;
+                logger.info(nowLeader
+                    ? "This proxy ({}) is now the coordination leader and looks for new packs"
+                    : "This proxy ({}) follows the coordination leader for new packs", name);
+            }
+            if (nowLeader)
+                return;
+
+            // Compared by content, not by time, the clock of a new leader may be behind the previous one's
+            final PublishedPack published = current.readLatest();
+            if (published == null || published.isSamePack(lastSeen))
+                return;
+
+            lastSeen = published;
+            adopting = adopting.thenCompose(ignored -> adopt(published)); // One after another, so an older pack never replaces a newer one
+        } catch (IOException e) {
+            logger.warn("Failed to reach the coordination backend: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Copies the pack into the store and publishes it on the pack executor, since both block on file and network access.
+     *
+     * @return a future completed once the pack was adopted or failed to, it never fails itself
+     */
+    private CompletableFuture<Void> adopt(PublishedPack published) {
+        if (!published.isSamePack(lastSeen))
+            return CompletableFuture.completedFuture(null); // Another pack was published while waiting for the previous one
+
+        final URL url;
+        final byte[] sha1;
+        try {
+            url = new URL(published.url());
+            sha1 = HexUtil.toByteArray(published.sha1());
+        } catch (MalformedURLException | IllegalArgumentException e) {
+            logger.error("Ignoring invalid pack published by {}: {}", published.publisher(), e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return executor.supply(() -> copySharedToStore(url, sha1)).thenCompose(ignored -> {
+            if (published.release() != null)
+                Settings.setBedrockReleasePackUri(published.bedrockUrl() == null ? "" : published.bedrockUrl()); // Before the pack is published, which fetches the Bedrock pack
+
+            return packInfo.adopt(url, sha1);
+        }).thenAccept(changed -> {
+            if (published.release() != null)
+                published.release().save(); // Nothing to download if this proxy becomes the leader later
+
+            if (changed) {
+                logger.info("Adopted resource pack {} published by {}", published.sha1(), published.publisher());
+                scheduleDistribution(published.distributeAt());
+            }
+        }).exceptionally(e -> {
+            logger.error("Failed to adopt resource pack published by {}", published.publisher(), e.getCause() != null ? e.getCause() : e);
+            return null;
+        });
+    }
+
+    /**
+     * Copies the main pack shared by the leader into the store, so the pack server does not download it again.
+     * The bytes are hashed while they are copied and discarded if they do not match the published hash.
+     * If the pack can not be copied, the pack server downloads it from the pack url as usual.
+     *
+     * @return true if the pack was copied into the store
+     */
+    private boolean copySharedToStore(URL url, byte[] sha1) {
+        if (!Settings.getPackServerEnabled() || store.contains(sha1))
+            return false; // Only the pack server needs the pack bytes
+
+        final String key = HexUtil.toString(sha1);
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            final Path incoming = store.getIncomingFile(sha1);
+            try {
+                if (!copyShared(key + PACK_EXTENSION, incoming, digest))
+                    return false;
+
+                if (!MessageDigest.isEqual(sha1, digest.digest())) {
+                    logger.warn("Shared resource pack {} does not match its hash, downloading it instead", key);
+                    return false;
+                }
+                store.addVerified(incoming, url, sha1);
+                return true;
+            } finally {
+                Files.deleteIfExists(incoming);
+            }
+        } catch (IOException | NoSuchAlgorithmException e) {
+            logger.warn("Failed to copy the shared resource pack {}, downloading it instead: {}", key, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Shares the verified bytes of a pack with the other proxies. Does nothing if coordination is disabled.
+     *
+     * @param name the file name of the pack, like its hash and extension
+     * @param file the pack file
+     */
+    public void share(String name, Path file) {
+        final CoordinationBackend current = backend;
+        if (current == null)
+            return;
+
+        try {
+            current.sharePack(name, file);
+        } catch (IOException e) {
+            logger.warn("Failed to share {} with the other proxies, they will download it themselves: {}", name, e.getMessage());
+        }
+    }
+
+    /**
+     * Copies a pack shared by the leader.
+     *
+     * @param name   the file name of the pack
+     * @param target the file to copy the pack to
+     * @return true if the pack was copied, false if coordination is disabled or the pack has not been shared
+     * @throws IOException if the pack could not be copied
+     */
+    public boolean copyShared(String name, Path target) throws IOException {
+        return copyShared(name, target, null);
+    }
+
+    private boolean copyShared(String name, Path target, @Nullable MessageDigest digest) throws IOException {
+        final CoordinationBackend current = backend;
+        return current != null && current.copySharedPack(name, target, digest);
+    }
+
+    /**
+     * Announces a new pack found by this proxy. The pack is published to the other proxies if coordination is
+     * enabled, and sent to the online players of every proxy at the same time.
+     *
+     * @param url        the pack url
+     * @param sha1       the SHA-1 hash of the pack
+     * @param release    the GitHub release the pack was taken from, or null if it did not come from GitHub
+     * @param bedrockUrl the url of the Bedrock pack attached to the release, or null or empty if there is none
+     */
+    public void announce(URL url, byte[] sha1, @Nullable GithubReleaseState release, @Nullable String bedrockUrl) {
+        final CoordinationBackend current = backend;
+        if (current == null) {
+            packInfo.distribute().sendToAllPlayers();
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        final PublishedPack pack = new PublishedPack(
+            url.toString(),
+            HexUtil.toString(sha1),
+            release,
+            bedrockUrl,
+            name,
+            now,
+            now + TimeUnit.SECONDS.toMillis(Math.max(Settings.getCoordinationDistributeDelay(), 0))
+        );
+
+        if (store.contains(sha1))
+            share(pack.sha1() + PACK_EXTENSION, store.getFile(sha1)); // Before publishing, so followers find the bytes when they adopt it
+
+        try {
+            current.publish(pack);
+            lastSeen = pack;
+            logger.info("Published resource pack {} to the other proxies", pack.sha1());
+        } catch (IOException e) {
+            logger.error("Failed to publish resource pack to the other proxies", e);
+        }
+        scheduleDistribution(pack.distributeAt());
+    }
+
+    private void scheduleDistribution(long distributeAt) {
+        final long delay = Math.max(distributeAt - System.currentTimeMillis(), 0);
+        proxy.getScheduler()
+            .buildTask(plugin, () -> packInfo.distribute().sendToAllPlayers())
+            .delay(delay, TimeUnit.MILLISECONDS)
+            .schedule();
+    }
+}
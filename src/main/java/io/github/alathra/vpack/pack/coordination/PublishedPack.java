@@ -0,0 +1,28 @@
+package io.github.alathra.vpack.pack.coordination;
+
+import io.github.alathra.vpack.pack.github.GithubReleaseState;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A pack published by the leading proxy for the other proxies to use.
+ *
+ * @param url          the pack url
+ * @param sha1         the hex SHA-1 hash of the pack at the url
+ * @param release      the GitHub release the pack was taken from, or null if it did not come from GitHub
+ * @param bedrockUrl   the url of the Bedrock pack attached to the release, or null or empty if there is none
+ * @param publisher    the name of the proxy that published the pack
+ * @param publishedAt  the time the pack was published, in epoch milliseconds. Only for information, the clocks of the
+ *                     proxies may differ
+ * @param distributeAt the time every proxy sends the pack to its online players, in epoch milliseconds
+ */
+public record PublishedPack(String url, String sha1, @Nullable GithubReleaseState release, @Nullable String bedrockUrl, String publisher, long publishedAt, long distributeAt) {
+    /**
+     * Checks if another published pack is the same pack at the same url, whoever published it and when.
+     *
+     * @param other the other pack, or null
+     * @return true if both packs have the same url and hash
+     */
+    public boolean isSamePack(@Nullable PublishedPack other) {
+        return other != null && sha1.equalsIgnoreCase(other.sha1) && url.equals(other.url);
+    }
+}
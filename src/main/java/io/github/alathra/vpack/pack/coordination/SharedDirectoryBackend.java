@@ -0,0 +1,168 @@
+package io.github.alathra.vpack.pack.coordination;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Coordinates proxies through a directory they all have access to, such as a directory on the same machine or a
+ * network share. Leadership is an exclusive lock on {@code leader.lock}, which the operating system releases when the
+ * leading proxy exits, and the latest pack is stored in {@code pack.json}, replaced atomically on every publish.
+ * Shared pack files are kept in the {@code packs} folder, only the most recently shared ones are kept.
+ */
+public final class SharedDirectoryBackend implements CoordinationBackend {
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+        .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES); // Proxies running a newer version may add fields
+    private static final int SHARED_PACKS_KEPT = 4; // The main and Bedrock pack of the current and the previous release
+
+    private final Path directory;
+    private final Path lockFile;
+    private final Path packFile;
+    private final Path sharedDirectory;
+
+    private @Nullable FileChannel lockChannel;
+    private @Nullable FileLock lock;
+
+    public SharedDirectoryBackend(Path directory) {
+        this.directory = directory;
+        this.lockFile = directory.resolve("leader.lock");
+        this.packFile = directory.resolve("pack.json");
+        this.sharedDirectory = directory.resolve("packs");
+    }
+
+    @Override
+    public synchronized boolean tryLead() throws IOException {
+        if (lock != null && lock.isValid())
+            return true;
+
+        Files.createDirectories(directory);
+        if (lockChannel == null || !lockChannel.isOpen())
+            lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null; // Held by another plugin instance in this JVM
+        }
+        return lock != null;
+    }
+
+    @Override
+    public void publish(PublishedPack pack) throws IOException {
+        Files.createDirectories(directory);
+        final Path temp = Files.createTempFile(directory, "pack", ".json.tmp");
+        try {
+            MAPPER.writeValue(temp.toFile(), pack);
+            Files.move(temp, packFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public @Nullable PublishedPack readLatest() throws IOException {
+        try {
+            return MAPPER.readValue(Files.readAllBytes(packFile), PublishedPack.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void sharePack(String name, Path file) throws IOException {
+        final Path shared = sharedDirectory.resolve(name);
+        if (Files.isRegularFile(shared) && Files.size(shared) == Files.size(file)) {
+            Files.setLastModifiedTime(shared, FileTime.fromMillis(System.currentTimeMillis())); // Shared before, like when rolling back to it
+            return;
+        }
+
+        Files.createDirectories(sharedDirectory);
+        copyAtomically(file, shared, null);
+        pruneSharedPacks();
+    }
+
+    @Override
+    public boolean copySharedPack(String name, Path target, @Nullable MessageDigest digest) throws IOException {
+        final Path shared = sharedDirectory.resolve(name);
+        if (!Files.isRegularFile(shared))
+            return false;
+
+        try {
+            copyAtomically(shared, target, digest);
+        } catch (NoSuchFileException e) {
+            return false; // Pruned by the leader while copying
+        }
+        return true;
+    }
+
+    /**
+     * Copies a file to a temporary file next to the target first, so nobody reads a partially copied pack.
+     * The digest, if any, is updated with the bytes as they are copied.
+     */
+    private static void copyAtomically(Path source, Path target, @Nullable MessageDigest digest) throws IOException {
+        final Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (InputStream in = digest == null ? Files.newInputStream(source) : new DigestInputStream(Files.newInputStream(source), digest)) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Deletes all but the most recently shared packs.
+     */
+    private void pruneSharedPacks() throws IOException {
+        final List<Path> shared;
+        try (Stream<Path> files = Files.list(sharedDirectory)) {
+            shared = files
+                .filter(file -> !file.getFileName().toString().endsWith(".tmp"))
+                .sorted(Comparator.comparing(SharedDirectoryBackend::lastModified).reversed())
+                .toList();
+        }
+
+        for (int i = SHARED_PACKS_KEPT; i < shared.size(); i++)
+            Files.deleteIfExists(shared.get(i));
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            if (lock != null && lock.isValid())
+                lock.release();
+            if (lockChannel != null)
+                lockChannel.close();
+        } catch (IOException ignored) {
+        } finally {
+            lock = null;
+            lockChannel = null;
+        }
+    }
+}
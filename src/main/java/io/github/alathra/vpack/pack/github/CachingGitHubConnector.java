@@ -0,0 +1,145 @@
+package io.github.alathra.vpack.pack.github;
+
+import org.jetbrains.annotations.Nullable;
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.connector.GitHubConnectorRequest;
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wraps a GitHub connector to make every GET request conditional on the ETag of the last response for the same URL.
+ * Unchanged responses come back as {@code 304 Not Modified}, which GitHub does not count against the rate limit, and
+ * are answered from the cached body so the API library never sees the difference.
+ */
+final class CachingGitHubConnector implements GitHubConnector {
+    private final GitHubConnector delegate;
+    private final GithubRateLimit rateLimit;
+    private final Map<String, CachedResponse> cache = new ConcurrentHashMap<>();
+
+    CachingGitHubConnector(GitHubConnector delegate, GithubRateLimit rateLimit) {
+        this.delegate = delegate;
+        this.rateLimit = rateLimit;
+    }
+
+    @Override
+    public GitHubConnectorResponse send(GitHubConnectorRequest request) throws IOException {
+        if (!"GET".equals(request.method())) {
+            final GitHubConnectorResponse response = delegate.send(request);
+            rateLimit.update(response);
+            return response;
+        }
+
+        final String key = request.url().toString();
+        final CachedResponse cached = cache.get(key);
+        final GitHubConnectorResponse response = delegate.send(cached == null ? request : new ConditionalRequest(request, cached.etag()));
+        rateLimit.update(response);
+
+        if (cached != null && response.statusCode() == 304) {
+            final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            headers.putAll(cached.headers());
+            response.allHeaders().forEach((name, values) -> {
+                if (name != null && name.regionMatches(true, 0, "X-RateLimit-", 0, 12))
+                    headers.put(name, values); // Keep the rate limit of the library up to date
+            });
+            response.close();
+            return new Response(request, headers, cached.body());
+        }
+
+        final String etag = response.header("ETag");
+        if (response.statusCode() != 200 || etag == null)
+            return response;
+
+        final CachedResponse fresh;
+        try (response) {
+            fresh = new CachedResponse(etag, withoutEncoding(response.allHeaders()), response.bodyStream().readAllBytes());
+        }
+        cache.put(key, fresh);
+        return new Response(request, fresh.headers(), fresh.body());
+    }
+
+    /**
+     * Copies the headers of a response, dropping the content encoding since the cached body is stored decoded.
+     */
+    private static Map<String, List<String>> withoutEncoding(Map<String, List<String>> headers) {
+        final Map<String, List<String>> copy = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.forEach((name, values) -> {
+            if (name != null && !name.equalsIgnoreCase("Content-Encoding"))
+                copy.put(name, values);
+        });
+        return copy;
+    }
+
+    private record CachedResponse(String etag, Map<String, List<String>> headers, byte[] body) {
+    }
+
+    /**
+     * A response served from the cache.
+     */
+    private static final class Response extends GitHubConnectorResponse.ByteArrayResponse {
+        private final byte[] body;
+
+        Response(GitHubConnectorRequest request, Map<String, List<String>> headers, byte[] body) {
+            super(request, 200, headers);
+            this.body = body;
+        }
+
+        @Override
+        protected InputStream rawBodyStream() {
+            return new ByteArrayInputStream(body);
+        }
+    }
+
+    /**
+     * A request with an added {@code If-None-Match} header.
+     */
+    private record ConditionalRequest(GitHubConnectorRequest request, String etag) implements GitHubConnectorRequest {
+        @Override
+        public String method() {
+            return request.method();
+        }
+
+        @Override
+        public Map<String, List<String>> allHeaders() {
+            final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            headers.putAll(request.allHeaders());
+            headers.put("If-None-Match", new ArrayList<>(List.of(etag)));
+            return headers;
+        }
+
+        @Override
+        public @Nullable String header(String name) {
+            if (name.equalsIgnoreCase("If-None-Match"))
+                return etag;
+            return request.header(name);
+        }
+
+        @Override
+        public @Nullable String contentType() {
+            return request.contentType();
+        }
+
+        @Override
+        public @Nullable InputStream body() {
+            return request.body();
+        }
+
+        @Override
+        public URL url() {
+            return request.url();
+        }
+
+        @Override
+        public boolean hasBody() {
+            return request.hasBody();
+        }
+    }
+}
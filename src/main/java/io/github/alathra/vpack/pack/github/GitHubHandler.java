@@ -3,7 +3,13 @@ package io.github.alathra.vpack.pack.github;
 import com.velocitypowered.api.proxy.ProxyServer;
 import io.github.alathra.vpack.VPack;
 import io.github.alathra.vpack.config.Settings;
+import io.github.alathra.vpack.pack.PackExecutor;
+import io.github.alathra.vpack.pack.coordination.PackCoordinator;
+import io.github.alathra.vpack.pack.http.PackHttpClient;
 import io.github.alathra.vpack.pack.resource.PackInfo;
+import io.github.alathra.vpack.pack.store.PackStore;
+import org.kohsuke.github.connector.GitHubConnector;
+import org.kohsuke.github.extras.HttpClientGitHubConnector;
 import org.slf4j.Logger;
 
 public class GitHubHandler {
@@ -11,35 +17,56 @@ public class GitHubHandler {
     private final ProxyServer proxy;
     private final Logger logger;
     private final PackInfo packInfo;
+    private final PackExecutor executor;
+    private final PackStore store;
+    private final PackCoordinator coordinator;
+    private final GithubRateLimit rateLimit = new GithubRateLimit();
+    private final GitHubConnector connector; // Outlives the update task, so a reload keeps the cached ETags
 
-    public GitHubHandler(VPack plugin, ProxyServer proxy, Logger logger, PackInfo packInfo) {
+    public GitHubHandler(VPack plugin, ProxyServer proxy, Logger logger, PackInfo packInfo, PackExecutor executor, PackHttpClient http, PackStore store, PackCoordinator coordinator) {
         this.plugin = plugin;
         this.proxy = proxy;
         this.logger = logger;
         this.packInfo = packInfo;
+        this.executor = executor;
+        this.store = store;
+        this.coordinator = coordinator;
+        this.connector = new CachingGitHubConnector(new HttpClientGitHubConnector(http.getClient()), rateLimit);
     }
 
     private GithubUpdateTask githubTask = null;
+    private WebhookServer webhookServer = null;
 
     public void enableUpdateTask() {
         final boolean shouldRun = Settings.getIsGithubEnabled();
         if (!shouldRun) return;
-        if (githubTask != null && githubTask.isCancelled()) return;
+        if (githubTask != null) return; // Already running
 
-        final long interval = Settings.getGithubUpdateInterval(); // in seconds, default: 600
-        final long delay = 0; // Wait 2 minutes after startup
+        long interval = Settings.getGithubUpdateInterval(); // in seconds, default: 600
+        final long delay = rateLimit.backoffSeconds(); // Right away, unless a reload restarts the task during a backoff
+
+        githubTask = new GithubUpdateTask(plugin, proxy, logger, packInfo, executor, store, coordinator, rateLimit, connector);
+
+        if (Settings.getGithubWebhookEnabled()) {
+            webhookServer = new WebhookServer(logger, githubTask::trigger);
+            if (webhookServer.start()) // Releases are pushed to us, only poll as a fallback for missed deliveries
+                interval = Math.max(interval, Settings.getGithubWebhookFallbackInterval());
+        }
 
-        githubTask = new GithubUpdateTask(plugin, proxy, logger, packInfo);
         githubTask.start(delay, interval);
     }
 
     public void disableUpdateTask() {
-        if (githubTask == null)
-            return;
+        if (webhookServer != null) {
+            webhookServer.stop();
+            webhookServer = null;
+        }
 
-        if (githubTask.isCancelled())
+        if (githubTask == null)
             return;
 
-        githubTask.cancel();
+        if (!githubTask.isCancelled())
+            githubTask.cancel();
+        githubTask = null;
     }
 }
@@ -0,0 +1,89 @@
+package io.github.alathra.vpack.pack.github;
+
+import org.kohsuke.github.connector.GitHubConnectorResponse;
+
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Tracks the GitHub API rate limit from the headers of every response, so polls can be spaced out before the quota
+ * runs out instead of failing once it has.
+ * The quota is shared by everything polling from the same address or token, so other proxies are accounted for as well.
+ */
+final class GithubRateLimit {
+    private static final int RESERVE = 2; // Requests kept for looking up the repository again after an error
+    private static final double JITTER = 0.1;
+
+    private volatile int remaining = -1;
+    private volatile long resetAt; // Epoch seconds
+    private volatile long retryAt; // Epoch seconds, from Retry-After on secondary rate limits
+
+    /**
+     * Updates the rate limit from the headers of a response.
+     *
+     * @param response the response
+     */
+    void update(GitHubConnectorResponse response) {
+        try {
+            final String remainingHeader = response.header("X-RateLimit-Remaining");
+            final String resetHeader = response.header("X-RateLimit-Reset");
+            if (remainingHeader != null && resetHeader != null) {
+                this.remaining = Integer.parseInt(remainingHeader.trim());
+                this.resetAt = Long.parseLong(resetHeader.trim());
+            }
+
+            final String retryAfterHeader = response.header("Retry-After");
+            if (retryAfterHeader != null)
+                this.retryAt = Instant.now().getEpochSecond() + Long.parseLong(retryAfterHeader.trim());
+        } catch (NumberFormatException ignored) {
+        }
+    }
+
+    /**
+     * Gets the amount of requests left in the current rate limit window.
+     *
+     * @return the remaining requests, or -1 if no response has been seen yet
+     */
+    int getRemaining() {
+        return remaining;
+    }
+
+    /**
+     * Gets how long polls must wait before the quota allows them again, like after a secondary rate limit or once
+     * the requests of the current window are used up.
+     *
+     * @return the delay in seconds, 0 if a poll may run right away
+     */
+    long backoffSeconds() {
+        final long now = Instant.now().getEpochSecond();
+        long delay = Math.max(retryAt - now, 0);
+        if (remaining >= 0 && remaining - RESERVE <= 0 && resetAt > now)
+            delay = Math.max(delay, resetAt - now);
+        return delay;
+    }
+
+    /**
+     * Computes the delay until the next poll.
+     * This is the configured interval unless the remaining requests would not last until the quota resets, in which
+     * case the polls are spread evenly over the time left. A random jitter keeps proxies sharing one address from
+     * polling in lockstep.
+     *
+     * @param intervalSeconds the configured poll interval
+     * @return the delay in seconds
+     */
+    long nextDelaySeconds(long intervalSeconds) {
+        final long now = Instant.now().getEpochSecond();
+        long delay = Math.max(intervalSeconds, 1);
+
+        if (retryAt > now)
+            delay = Math.max(delay, retryAt - now);
+
+        if (remaining >= 0 && resetAt > now) {
+            final long untilReset = resetAt - now;
+            final int usable = remaining - RESERVE;
+            delay = Math.max(delay, usable <= 0 ? untilReset : untilReset / usable);
+        }
+
+        return delay + ThreadLocalRandom.current().nextLong((long) (delay * JITTER) + 1);
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.alathra.vpack.pack.github;
+
+import io.github.alathra.vpack.config.Settings;
+import org.kohsuke.github.GHAsset;
+import org.kohsuke.github.GHRelease;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * The identity of a GitHub release asset, used to detect whether the latest release changed without downloading it.
+ *
+ * @param releaseId the id of the release
+ * @param tag       the tag name of the release
+ * @param assetId   the id of the pack asset
+ * @param assetSize the size of the pack asset in bytes
+ * @param updatedAt the time the pack asset was last updated, in epoch milliseconds
+ */
+public record GithubReleaseState(long releaseId, String tag, long assetId, long assetSize, long updatedAt) {
+    /**
+     * Creates the state of a release asset from the GitHub API objects.
+     *
+     * @param release the release
+     * @param asset   the pack asset of the release
+     * @return the release state
+     * @throws IOException if the update time could not be read
+     */
+    public static GithubReleaseState of(GHRelease release, GHAsset asset) throws IOException {
+        final Date updatedAt = asset.getUpdatedAt();
+        return new GithubReleaseState(
+            release.getId(),
+            release.getTagName(),
+            asset.getId(),
+            asset.getSize(),
+            updatedAt == null ? 0L : updatedAt.getTime()
+        );
+    }
+
+    /**
+     * Loads the last seen release state from data.yml.
+     *
+     * @return the last seen release state
+     */
+    public static GithubReleaseState load() {
+        return new GithubReleaseState(
+            Settings.getGithubReleaseId(),
+            Settings.getGithubReleaseTag(),
+            Settings.getGithubAssetId(),
+            Settings.getGithubAssetSize(),
+            Settings.getGithubAssetUpdatedAt()
+        );
+    }
+
+    /**
+     * Saves this release state to data.yml.
+     */
+    public void save() {
+        Settings.setGithubRelease(releaseId, tag, assetId, assetSize, updatedAt);
+    }
+}
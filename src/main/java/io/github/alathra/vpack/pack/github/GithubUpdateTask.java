@@ -4,101 +4,269 @@ import com.velocitypowered.api.proxy.ProxyServer;
 import com.velocitypowered.api.scheduler.ScheduledTask;
 import io.github.alathra.vpack.VPack;
 import io.github.alathra.vpack.config.Settings;
+import io.github.alathra.vpack.metrics.PackMetrics;
+import io.github.alathra.vpack.pack.PackExecutor;
+import io.github.alathra.vpack.pack.coordination.PackCoordinator;
 import io.github.alathra.vpack.pack.resource.PackInfo;
+import io.github.alathra.vpack.pack.store.PackStore;
+import org.jetbrains.annotations.Nullable;
 import org.kohsuke.github.GHAsset;
 import org.kohsuke.github.GHRelease;
 import org.kohsuke.github.GHRepository;
 import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubAbuseLimitHandler;
+import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.GitHubRateLimitHandler;
+import org.kohsuke.github.connector.GitHubConnector;
 import org.slf4j.Logger;
 
 import java.io.IOException;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 public class GithubUpdateTask implements Runnable {
     private final VPack plugin;
     private final ProxyServer proxy;
     private final Logger logger;
     private final PackInfo packInfo;
+    private final PackExecutor executor;
+    private final PackStore store;
+    private final PackCoordinator coordinator;
 
-    private ScheduledTask scheduledTask;
-    private boolean cancelled = false;
+    private final Pattern assetPattern;
+    private final Pattern bedrockAssetPattern;
+    private final GithubRateLimit rateLimit;
+    private final GitHubConnector connector;
+    private final AtomicBoolean polling = new AtomicBoolean(false);
+    private final AtomicBoolean pollAgain = new AtomicBoolean(false);
 
-    public GithubUpdateTask(VPack plugin, ProxyServer proxy, Logger logger, PackInfo packInfo) {
+    private volatile ScheduledTask scheduledTask;
+    private volatile boolean cancelled = false;
+    private long intervalSeconds;
+    private @Nullable GHRepository repository;
+
+    /**
+     * @param rateLimit the rate limit of the GitHub API, kept across reloads so the backoff is not forgotten
+     * @param connector the connector for GitHub API requests, kept across reloads so its ETags are not forgotten
+     */
+    GithubUpdateTask(VPack plugin, ProxyServer proxy, Logger logger, PackInfo packInfo, PackExecutor executor, PackStore store, PackCoordinator coordinator, GithubRateLimit rateLimit, GitHubConnector connector) {
         super();
         this.plugin = plugin;
         this.proxy = proxy;
         this.logger = logger;
         this.packInfo = packInfo;
+        this.executor = executor;
+        this.store = store;
+        this.coordinator = coordinator;
+        this.rateLimit = rateLimit;
+        this.connector = connector;
+        this.assetPattern = compileAssetPattern(Settings.getGithubAssetPattern());
+        this.bedrockAssetPattern = compileAssetPattern(Settings.getBedrockAssetPattern());
+    }
+
+    private Pattern compileAssetPattern(String pattern) {
+        try {
+            return Pattern.compile(pattern);
+        } catch (PatternSyntaxException e) {
+            logger.error("Invalid GitHub asset pattern \"{}\", matching all assets instead: {}", pattern, e.getMessage());
+            return Pattern.compile(".*");
+        }
     }
 
     public void start(long initialDelaySeconds, long intervalSeconds) {
         if (cancelled) return;
 
+        this.intervalSeconds = intervalSeconds;
+        schedule(initialDelaySeconds);
+    }
+
+    /**
+     * Schedules the next poll. Polls are scheduled one at a time, so the delay can adapt to the rate limit.
+     */
+    private synchronized void schedule(long delaySeconds) {
+        if (cancelled) return;
+
+        final ScheduledTask previous = scheduledTask;
+        if (previous != null)
+            previous.cancel();
+
         this.scheduledTask = proxy.getScheduler()
             .buildTask(plugin, this)
-            .delay(initialDelaySeconds, TimeUnit.SECONDS)
-            .repeat(intervalSeconds, TimeUnit.SECONDS)
+            .delay(delaySeconds, TimeUnit.SECONDS)
             .schedule();
     }
 
+    private void scheduleNext() {
+        if (pollAgain.getAndSet(false)) {
+            schedule(0); // A webhook arrived while polling, the release may not have been visible yet
+            return;
+        }
+
+        final long delay = rateLimit.nextDelaySeconds(intervalSeconds);
+        if (delay > intervalSeconds * 2)
+            logger.info("GitHub rate limit is running low ({} requests left), next poll in {} seconds", rateLimit.getRemaining(), delay);
+
+        schedule(delay);
+    }
+
     public void cancel() {
+        this.cancelled = true;
         if (scheduledTask != null) {
             scheduledTask.cancel();
         }
-        this.cancelled = true;
     }
 
     public boolean isCancelled() {
         return this.cancelled;
     }
 
-    private String getLatestRelease() {
-        try {
-            GitHub gitHub = GitHub.connectAnonymously();
-            String username = Settings.getGithubUsername();
-            String repoName = Settings.getGithubRepository();
-
-            GHRepository repository = gitHub.getRepository(username + "/" + repoName);
-            logger.debug("Fetching latest version from GitHub... at url {}", repository.getUrl());
+    private GHRepository getRepository() throws IOException {
+        if (repository == null) {
+            final GitHubBuilder builder = new GitHubBuilder()
+                .withEndpoint(Settings.getGithubApiUrl())
+                .withConnector(connector)
+                .withRateLimitHandler(GitHubRateLimitHandler.FAIL) // Never block a worker until the limit resets, the next poll is delayed instead
+                .withAbuseLimitHandler(GitHubAbuseLimitHandler.FAIL);
 
-            GHRelease release = repository.getLatestRelease();
-            logger.debug("Found release {} on GitHub!", release.getTagName());
+            final String token = Settings.getGithubToken();
+            if (!token.isBlank())
+                builder.withOAuthToken(token);
 
-            GHAsset latestAsset = release.listAssets().toList().get(0);
-            if (latestAsset != null)
-                return latestAsset.getBrowserDownloadUrl();
-        } catch (IOException e) {
-            logger.warn("Failed to fetch latest GitHub release: {}", e.getMessage());
+            final GitHub gitHub = builder.build();
+            repository = gitHub.getRepository(Settings.getGithubUsername() + "/" + Settings.getGithubRepository());
         }
+        return repository;
+    }
 
+    private @Nullable GHAsset findAsset(GHRelease release, Pattern pattern) {
+        for (GHAsset asset : release.assets()) {
+            if (pattern.matcher(asset.getName()).matches())
+                return asset;
+        }
         return null;
     }
 
     /**
-     * Runs this operation.
+     * Fetches the latest release and its pack asset. This is a blocking call to the GitHub API.
+     *
+     * @return the latest release, or null if it has no asset matching the asset pattern
+     * @throws IOException if the release could not be fetched
      */
-    @Override
-    public void run() {
-        logger.info("Fetching latest version from GitHub...");
-        final String downloadLink = getLatestRelease();
-        if (downloadLink == null)
-            return;
+    private @Nullable LatestRelease fetchLatestRelease() throws IOException {
+        final long startedAt = System.nanoTime();
+        final GHRelease release;
+        try {
+            release = getRepository().getLatestRelease();
+        } catch (IOException e) {
+            PackMetrics.recordGithubPoll(System.nanoTime() - startedAt, rateLimit.getRemaining(), false);
+            throw e;
+        }
+        PackMetrics.recordGithubPoll(System.nanoTime() - startedAt, rateLimit.getRemaining(), true);
+        logger.debug("Found release {} on GitHub!", release.getTagName());
+
+        final GHAsset asset = findAsset(release, assetPattern);
+        if (asset == null) {
+            logger.warn("No asset matching \"{}\" found in GitHub release {}", assetPattern.pattern(), release.getTagName());
+            return null;
+        }
+
+        final GHAsset bedrockAsset = Settings.getBedrockPackEnabled() ? findAsset(release, bedrockAssetPattern) : null;
+        return new LatestRelease(
+            GithubReleaseState.of(release, asset),
+            asset.getBrowserDownloadUrl(),
+            bedrockAsset == null ? "" : bedrockAsset.getBrowserDownloadUrl()
+        );
+    }
 
+    private CompletableFuture<Void> update(@Nullable LatestRelease release) {
+        if (release == null)
+            return CompletableFuture.completedFuture(null);
+
+        // The release and asset are unchanged since the last poll, no need to download anything
+        if (packInfo.isConfigured() && release.state().equals(GithubReleaseState.load())) {
+            logger.info("No new version found on GitHub, current pack is up to date.");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final URL url;
         try {
-            final URL url = new URL(downloadLink);
-            final boolean isNewPack = packInfo.updateUrl(url);
+            url = new URL(release.downloadUrl());
+        } catch (MalformedURLException e) {
+            logger.error("Malformed GitHub asset URL: {}", e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Settings.setBedrockReleasePackUri(release.bedrockDownloadUrl()); // Before the new pack is published, which fetches the Bedrock pack
+        return packInfo.updateUrl(url).thenAccept(isNewPack -> {
+            release.state().save();
 
             if (isNewPack) {
-                packInfo.distribute().sendToAllPlayers();
-                logger.info("Found new version from GitHub, distributing to players...");
+                final byte[] sha1 = packInfo.getSnapshot().sha1();
+                store.label(sha1, release.state().tag()); // Lets "/vpack rollback" find the pack by its release
+                coordinator.announce(url, sha1, release.state(), release.bedrockDownloadUrl());
+                logger.info("Found new version {} from GitHub, distributing to players...", release.state().tag());
             } else {
                 logger.info("No new version found on GitHub, current pack is up to date.");
             }
-        } catch (java.net.MalformedURLException e) {
-            logger.error("Malformed GitHub asset URL: {}", e.getMessage());
-        } catch (IOException e) {
-            logger.error("Failed to update pack url from GitHub: {}", e.getMessage());
+        });
+    }
+
+    /**
+     * Polls for a new release right away, for example because a webhook announced one.
+     * If a poll is already running, another one is started as soon as it completes.
+     */
+    public void trigger() {
+        if (cancelled) return;
+
+        pollAgain.set(true);
+        if (!polling.get())
+            schedule(0);
+    }
+
+    /**
+     * Runs this operation.
+     * The poll itself runs on the pack executor, so the scheduler thread is never blocked by network calls.
+     * Once the poll completes, the next one is scheduled based on the configured interval and the remaining rate limit.
+     * Proxies following another proxy skip the poll, they adopt the packs the leader publishes instead.
+     */
+    @Override
+    public void run() {
+        if (!coordinator.isLeader()) {
+            logger.debug("Another proxy is the coordination leader, skipping GitHub poll");
+            scheduleNext();
+            return;
+        }
+
+        if (!polling.compareAndSet(false, true)) {
+            logger.debug("Previous GitHub poll is still running, skipping this one");
+            return;
         }
+        pollAgain.set(false);
+
+        logger.info("Fetching latest version from GitHub...");
+        executor.supply(this::fetchLatestRelease)
+            .exceptionally(e -> {
+                if (!executor.isShutdown())
+                    logger.warn("Failed to fetch latest GitHub release: {}", (e.getCause() != null ? e.getCause() : e).getMessage());
+                return null;
+            })
+            .thenCompose(this::update)
+            .exceptionally(e -> {
+                if (!executor.isShutdown())
+                    logger.error("Failed to update pack url from GitHub: {}", (e.getCause() != null ? e.getCause() : e).getMessage());
+                return null;
+            })
+            .whenComplete((ignored, e) -> {
+                polling.set(false);
+                scheduleNext();
+            });
+    }
+
+    private record LatestRelease(GithubReleaseState state, String downloadUrl, String bedrockDownloadUrl) {
     }
 }
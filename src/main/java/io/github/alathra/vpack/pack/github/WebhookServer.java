@@ -0,0 +1,222 @@
+package io.github.alathra.vpack.pack.github;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.alathra.vpack.config.Settings;
+import io.github.alathra.vpack.utils.HexUtil;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Receives GitHub {@code release} webhooks and starts a poll right away, so a new release reaches players within
+ * seconds instead of waiting for the next poll interval.
+ * Every delivery must be signed with the configured secret ({@code X-Hub-Signature-256}), unsigned or wrongly signed
+ * requests are rejected before the payload is even parsed.
+ */
+final class WebhookServer {
+    private static final int MAX_PAYLOAD_SIZE = 1024 * 1024; // GitHub caps payloads at 25 MB, release payloads are a few KB
+    private static final String SIGNATURE_PREFIX = "sha256=";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Logger logger;
+    private final Runnable onRelease;
+
+    private @Nullable HttpServer server;
+    private @Nullable ExecutorService executor;
+    private byte[] secret = new byte[0];
+    private String repository = "";
+
+    /**
+     * @param logger    the logger
+     * @param onRelease called for every validly signed release webhook of the configured repository
+     */
+    WebhookServer(Logger logger, Runnable onRelease) {
+        this.logger = logger;
+        this.onRelease = onRelease;
+    }
+
+    /**
+     * Starts the server as configured.
+     *
+     * @return true if the server is listening, false if it is misconfigured or failed to bind
+     */
+    boolean start() {
+        return start(
+            Settings.getGithubWebhookBind(), Settings.getGithubWebhookPort(), Settings.getGithubWebhookPath(),
+            Settings.getGithubWebhookSecret(), Settings.getGithubUsername() + "/" + Settings.getGithubRepository()
+        );
+    }
+
+    /**
+     * Starts the server.
+     *
+     * @param bind             the address to listen on
+     * @param port             the port to listen on, 0 picks a free port
+     * @param path             the path webhooks are delivered to
+     * @param configuredSecret the secret deliveries are signed with
+     * @param repository       the full name of the repository whose releases trigger an update, like {@code owner/name}
+     * @return true if the server is listening, false if it is misconfigured or failed to bind
+     */
+    boolean start(String bind, int port, String path, String configuredSecret, String repository) {
+        if (server != null)
+            return true;
+
+        if (configuredSecret.isBlank()) {
+            logger.error("GitHub webhook is enabled but no secret is configured, not starting the webhook receiver");
+            return false;
+        }
+
+        this.secret = configuredSecret.getBytes(StandardCharsets.UTF_8);
+        this.repository = repository;
+
+        try {
+            final HttpServer httpServer = HttpServer.create(new InetSocketAddress(bind, port), 16);
+            this.executor = Executors.newSingleThreadExecutor(r -> {
+                final Thread thread = new Thread(r, "VPack Webhook");
+                thread.setDaemon(true);
+                return thread;
+            });
+            httpServer.setExecutor(executor);
+            httpServer.createContext(path.startsWith("/") ? path : "/" + path, this::handle);
+            httpServer.start();
+            this.server = httpServer;
+        } catch (IOException e) {
+            logger.error("Failed to start GitHub webhook receiver on {}:{}", bind, port, e);
+            stop();
+            return false;
+        }
+
+        logger.info("Listening for GitHub webhooks on {}:{}{}", bind, getPort(), path);
+        return true;
+    }
+
+    /**
+     * Gets the port the server listens on.
+     *
+     * @return the port, or -1 if the server is not running
+     */
+    int getPort() {
+        final HttpServer current = server;
+        return current == null ? -1 : current.getAddress().getPort();
+    }
+
+    void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                respond(exchange, 405, "Method Not Allowed");
+                return;
+            }
+
+            final byte[] payload = readPayload(exchange.getRequestBody());
+            if (payload == null) {
+                respond(exchange, 413, "Payload Too Large");
+                return;
+            }
+
+            if (!isSignatureValid(payload, exchange.getRequestHeaders().getFirst("X-Hub-Signature-256"))) {
+                logger.warn("Rejected GitHub webhook from {} with an invalid signature", exchange.getRemoteAddress());
+                respond(exchange, 401, "Invalid signature");
+                return;
+            }
+
+            final String event = exchange.getRequestHeaders().getFirst("X-GitHub-Event");
+            if ("ping".equals(event)) {
+                respond(exchange, 200, "pong");
+                return;
+            }
+
+            if (!"release".equals(event)) {
+                respond(exchange, 202, "Ignored event " + event);
+                return;
+            }
+
+            final JsonNode json;
+            try {
+                json = MAPPER.readTree(payload);
+            } catch (IOException e) {
+                respond(exchange, 400, "Malformed payload");
+                return;
+            }
+
+            final String fullName = getString(json.path("repository"), "full_name");
+            if (fullName == null || !fullName.equalsIgnoreCase(repository)) {
+                respond(exchange, 202, "Ignored release of repository " + fullName);
+                return;
+            }
+
+            logger.info("Received GitHub release webhook ({}), checking for a new pack...", getString(json, "action"));
+            onRelease.run();
+            respond(exchange, 202, "Update triggered");
+        }
+    }
+
+    /**
+     * Reads the request body, giving up once it exceeds the maximum payload size.
+     *
+     * @return the payload, or null if it is too large
+     */
+    private static byte @Nullable [] readPayload(InputStream in) throws IOException {
+        final byte[] payload = in.readNBytes(MAX_PAYLOAD_SIZE + 1);
+        return payload.length > MAX_PAYLOAD_SIZE ? null : payload;
+    }
+
+    private boolean isSignatureValid(byte[] payload, @Nullable String signature) {
+        if (signature == null || !signature.toLowerCase(Locale.ROOT).startsWith(SIGNATURE_PREFIX))
+            return false;
+
+        final byte[] expected;
+        try {
+            final Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            expected = HexUtil.toString(mac.doFinal(payload)).getBytes(StandardCharsets.US_ASCII);
+        } catch (GeneralSecurityException e) {
+            logger.error("Failed to verify GitHub webhook signature", e);
+            return false;
+        }
+
+        final byte[] actual = signature.substring(SIGNATURE_PREFIX.length()).toLowerCase(Locale.ROOT).getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, actual); // Constant time, so the signature can not be guessed byte by byte
+    }
+
+    private static @Nullable String getString(@Nullable JsonNode json, String key) {
+        final JsonNode node = json == null ? null : json.get(key);
+        return node != null && node.isValueNode() ? node.asText() : null;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String message) throws IOException {
+        final byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
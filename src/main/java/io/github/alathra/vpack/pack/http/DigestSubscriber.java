@@ -0,0 +1,87 @@
+package io.github.alathra.vpack.pack.http;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Feeds a response body straight from the buffers of the HTTP client into a digest, and optionally a file, without
+ * copying it into an intermediate array first.
+ */
+final class DigestSubscriber implements HttpResponse.BodySubscriber<Long> {
+    private final MessageDigest digest;
+    private final @Nullable FileChannel out;
+    private final AtomicLong bytesRead;
+    private final AtomicLong hashNanos;
+    private final CompletableFuture<Long> result = new CompletableFuture<>();
+    private @Nullable Flow.Subscription subscription;
+
+    /**
+     * @param digest    the digest to update with the body
+     * @param out       the file to write the body to, or null to discard it
+     * @param bytesRead the counter to add received bytes to, also used to detect stalled transfers
+     * @param hashNanos the counter to add the time spent updating the digest to
+     */
+    DigestSubscriber(MessageDigest digest, @Nullable FileChannel out, AtomicLong bytesRead, AtomicLong hashNanos) {
+        this.digest = digest;
+        this.out = out;
+        this.bytesRead = bytesRead;
+        this.hashNanos = hashNanos;
+    }
+
+    @Override
+    public CompletionStage<Long> getBody() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        try {
+            for (ByteBuffer item : items) {
+                bytesRead.addAndGet(item.remaining());
+
+                final long hashStart = System.nanoTime();
+                digest.update(item.duplicate());
+                hashNanos.addAndGet(System.nanoTime() - hashStart);
+
+                if (out != null) {
+                    while (item.hasRemaining())
+                        out.write(item);
+                }
+            }
+        } catch (IOException e) {
+            if (subscription != null)
+                subscription.cancel();
+            result.completeExceptionally(e);
+            return;
+        }
+
+        if (subscription != null)
+            subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        result.complete(bytesRead.get());
+    }
+}
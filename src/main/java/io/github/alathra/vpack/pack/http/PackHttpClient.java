@@ -0,0 +1,348 @@
+package io.github.alathra.vpack.pack.http;
+
+import io.github.alathra.vpack.config.Settings;
+import io.github.alathra.vpack.pack.resource.PackValidators;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The HTTP client shared by all pack downloads and GitHub API calls.
+ * A single long-lived client keeps connections open between requests and multiplexes them over HTTP/2 where the
+ * server supports it, so a hash check or poll does not pay for a new TCP and TLS handshake every time.
+ * Redirects, like the ones from GitHub release assets to their storage host, are followed by the client itself.
+ */
+public final class PackHttpClient {
+    private static final String USER_AGENT = "VPack";
+    private static final long KEEP_ALIVE_NANOS = TimeUnit.SECONDS.toNanos(30); // Idle timeout of pooled connections in the JDK client
+
+    private final Logger logger;
+    private final HttpClient client;
+    private final Duration readTimeout;
+
+    private final Map<String, Long> lastUsed = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder reusedConnections = new LongAdder();
+    private final LongAdder http2Requests = new LongAdder();
+    private final LongAdder bytesTransferred = new LongAdder();
+    private final LongAdder transferNanos = new LongAdder();
+
+    public PackHttpClient(Logger logger) {
+        this(
+            logger,
+            Duration.ofSeconds(Math.max(Settings.getNetworkConnectTimeout(), 1)),
+            Duration.ofSeconds(Math.max(Settings.getNetworkReadTimeout(), 1))
+        );
+    }
+
+    public PackHttpClient(Logger logger, Duration connectTimeout, Duration readTimeout) {
+        this.logger = logger;
+        this.readTimeout = readTimeout;
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(connectTimeout)
+            .build();
+    }
+
+    /**
+     * Gets the underlying client, for libraries that can send their requests through it.
+     *
+     * @return the client
+     */
+    public HttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * Downloads a URL, streaming the body into a digest and optionally a file.
+     * The transfer fails with an {@link HttpTimeoutException} if no data arrives for {@code network.read-timeout}
+     * seconds, and with an {@link InterruptedIOException} if the calling thread is interrupted.
+     *
+     * @param url        the url to download
+     * @param digest     the digest to update with the body
+     * @param validators the validators to make a conditional request with, or null for a plain request
+     * @param target     the file to write the body to, or null to discard it
+     * @return the response, with status {@code 304} if the validators matched and no body was transferred
+     * @throws IOException if the request failed or the server responded with an error status
+     */
+    public Response download(URL url, MessageDigest digest, @Nullable PackValidators validators, @Nullable Path target) throws IOException {
+        final URI uri;
+        try {
+            uri = url.toURI();
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid URL: " + url, e);
+        }
+
+        final HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+            .timeout(readTimeout)
+            .header("User-Agent", USER_AGENT)
+            .GET();
+        if (validators != null)
+            validators.applyTo(request);
+
+        final AtomicLong progress = new AtomicLong();
+        final AtomicLong hashNanos = new AtomicLong();
+        final long startedAt = System.nanoTime();
+        try (final FileChannel out = target == null ? null : FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final HttpResponse<Long> response = await(
+                uri,
+                client.sendAsync(request.build(), info -> info.statusCode() / 100 == 2
+                    ? new DigestSubscriber(digest, out, progress, hashNanos)
+                    : HttpResponse.BodySubscribers.replacing(0L)),
+                progress
+            );
+
+            final int status = response.statusCode();
+            final long elapsedNanos = System.nanoTime() - startedAt;
+            final boolean reused = record(response, elapsedNanos, progress.get());
+            if (status == 304 && validators != null)
+                return new Response(status, response.headers(), 0, reused, Duration.ofNanos(elapsedNanos), Duration.ZERO);
+
+            if (status / 100 != 2)
+                throw new IOException("Server responded with HTTP " + status + " for " + uri);
+
+            return new Response(status, response.headers(), response.body(), reused, Duration.ofNanos(elapsedNanos), Duration.ofNanos(hashNanos.get()));
+        }
+    }
+
+    /**
+     * Continues a download into a partially downloaded file, asking the server for the missing bytes only.
+     * The digest must already contain the bytes of the partial file. If the server ignores the range, or the file
+     * changed since the partial download was started ({@code If-Range} did not match), the whole file is downloaded
+     * again and the digest is reset.
+     *
+     * @param url     the url to download
+     * @param digest  the digest containing the partial file, updated with the rest of the body
+     * @param target  the partial file
+     * @param offset  the number of bytes already downloaded
+     * @param ifRange the ETag or Last-Modified date the partial download was made with
+     * @return the response, with status {@code 206} if the download was resumed, or {@code 416} if the server could not
+     * satisfy the range, usually because the partial file is already complete. {@link Response#bytesRead()} only
+     * counts the bytes received by this request
+     * @throws IOException if the request failed or the server responded with another error status
+     */
+    public Response resume(URL url, MessageDigest digest, Path target, long offset, String ifRange) throws IOException {
+        final URI uri;
+        try {
+            uri = url.toURI();
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid URL: " + url, e);
+        }
+
+        final HttpRequest request = HttpRequest.newBuilder(uri)
+            .timeout(readTimeout)
+            .header("User-Agent", USER_AGENT)
+            .header("Range", "bytes=" + offset + "-")
+            .header("If-Range", ifRange)
+            .GET()
+            .build();
+
+        final AtomicLong progress = new AtomicLong();
+        final AtomicLong hashNanos = new AtomicLong();
+        final long startedAt = System.nanoTime();
+        try (final FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            final HttpResponse<Long> response = await(
+                uri,
+                client.sendAsync(request, info -> {
+                    if (info.statusCode() / 100 != 2)
+                        return HttpResponse.BodySubscribers.replacing(0L);
+
+                    try {
+                        final boolean resumed = info.statusCode() == 206
+                            && info.headers().firstValue("Content-Range").filter(range -> range.startsWith("bytes " + offset + "-")).isPresent();
+                        if (resumed) {
+                            out.position(offset);
+                        } else {
+                            digest.reset(); // The server sent the whole file
+                            out.truncate(0);
+                            out.position(0);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return new DigestSubscriber(digest, out, progress, hashNanos);
+                }),
+                progress
+            );
+
+            final int status = response.statusCode();
+            final long elapsedNanos = System.nanoTime() - startedAt;
+            final boolean reused = record(response, elapsedNanos, progress.get());
+            if (status == 416) // The partial file was left untouched
+                return new Response(status, response.headers(), 0, reused, Duration.ofNanos(elapsedNanos), Duration.ZERO);
+
+            if (status / 100 != 2)
+                throw new IOException("Server responded with HTTP " + status + " for " + uri);
+
+            return new Response(status, response.headers(), response.body(), reused, Duration.ofNanos(elapsedNanos), Duration.ofNanos(hashNanos.get()));
+        }
+    }
+
+    /**
+     * Sends a HEAD request to measure how quickly a server responds, without transferring the body.
+     *
+     * @param url the url to probe
+     * @return the response, with the time until the headers arrived as the transfer time
+     * @throws IOException if the request failed or the server responded with an error status
+     */
+    public Response probe(URL url) throws IOException {
+        final URI uri;
+        try {
+            uri = url.toURI();
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid URL: " + url, e);
+        }
+
+        final HttpRequest request = HttpRequest.newBuilder(uri)
+            .timeout(readTimeout)
+            .header("User-Agent", USER_AGENT)
+            .method("HEAD", HttpRequest.BodyPublishers.noBody())
+            .build();
+
+        final long startedAt = System.nanoTime();
+        final HttpResponse<Void> response = await(uri, client.sendAsync(request, HttpResponse.BodyHandlers.discarding()), new AtomicLong());
+        final long elapsedNanos = System.nanoTime() - startedAt;
+        final boolean reused = record(response, elapsedNanos, 0);
+        if (response.statusCode() / 100 != 2)
+            throw new IOException("Server responded with HTTP " + response.statusCode() + " for " + uri);
+
+        return new Response(response.statusCode(), response.headers(), 0, reused, Duration.ofNanos(elapsedNanos), Duration.ZERO);
+    }
+
+    /**
+     * Waits for a request to complete, cancelling it once no data has arrived for the read timeout.
+     */
+    private <T> HttpResponse<T> await(URI uri, CompletableFuture<HttpResponse<T>> future, AtomicLong progress) throws IOException {
+        long lastProgress = 0;
+        while (true) {
+            try {
+                return future.get(readTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                final long current = progress.get();
+                if (current == lastProgress) {
+                    future.cancel(true);
+                    throw new HttpTimeoutException("No data received from " + uri + " for " + readTimeout.toSeconds() + " seconds");
+                }
+                lastProgress = current;
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Download was cancelled");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io)
+                    throw io;
+                throw new IOException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Records the metrics of a completed request.
+     *
+     * @return whether the request was most likely served over an already open connection
+     */
+    private boolean record(HttpResponse<?> response, long elapsedNanos, long bytes) {
+        final long now = System.nanoTime();
+        final URI uri = response.uri();
+        final Long previous = lastUsed.put(uri.getScheme() + "://" + uri.getAuthority(), now);
+        final boolean reused = previous != null && now - previous < KEEP_ALIVE_NANOS;
+
+        requests.increment();
+        bytesTransferred.add(bytes);
+        transferNanos.add(elapsedNanos);
+        if (reused)
+            reusedConnections.increment();
+        if (response.version() == HttpClient.Version.HTTP_2)
+            http2Requests.increment();
+
+        logger.debug(
+            "Fetched {} bytes from {} over {} in {} ms (connection reused: {})",
+            bytes, uri, response.version(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos), reused
+        );
+        return reused;
+    }
+
+    /**
+     * Gets a snapshot of the transfer metrics since startup.
+     *
+     * @return the metrics
+     */
+    public Stats getStats() {
+        return new Stats(
+            requests.sum(),
+            reusedConnections.sum(),
+            http2Requests.sum(),
+            bytesTransferred.sum(),
+            Duration.ofNanos(transferNanos.sum())
+        );
+    }
+
+    /**
+     * A completed download.
+     *
+     * @param statusCode   the HTTP status of the response
+     * @param headers      the response headers
+     * @param bytesRead    the number of body bytes received
+     * @param reused       whether the request was most likely served over an already open connection
+     * @param transferTime the time from sending the request to receiving the whole body
+     * @param hashTime     the part of the transfer time spent updating the digest
+     */
+    public record Response(int statusCode, HttpHeaders headers, long bytesRead, boolean reused, Duration transferTime, Duration hashTime) {
+        public boolean isNotModified() {
+            return statusCode == 304;
+        }
+    }
+
+    /**
+     * The transfer metrics of the client.
+     *
+     * @param requests          the amount of completed requests
+     * @param reusedConnections the amount of requests to a host that was contacted within the keep-alive timeout,
+     *                          an estimate of the requests served over a pooled connection
+     * @param http2Requests     the amount of requests served over HTTP/2
+     * @param bytes             the total amount of body bytes received
+     * @param transferTime      the total time spent on requests
+     */
+    public record Stats(long requests, long reusedConnections, long http2Requests, long bytes, Duration transferTime) {
+        /**
+         * Gets the average transfer rate over all requests.
+         *
+         * @return the rate in bytes per second
+         */
+        public long bytesPerSecond() {
+            final long nanos = transferTime.toNanos();
+            return nanos == 0 ? 0 : (long) (bytes / (nanos / 1_000_000_000d));
+        }
+
+        @Override
+        public String toString() {
+            return "%d requests, %d reused connections, %d over HTTP/2, %d bytes at %d KiB/s"
+                .formatted(requests, reusedConnections, http2Requests, bytes, bytesPerSecond() / 1024);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package io.github.alathra.vpack.pack.mirror;
+
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import io.github.alathra.vpack.VPack;
+import io.github.alathra.vpack.config.Settings;
+import io.github.alathra.vpack.metrics.PackMetrics;
+import io.github.alathra.vpack.pack.PackExecutor;
+import io.github.alathra.vpack.pack.http.PackHttpClient;
+import io.github.alathra.vpack.pack.resource.PackInfo;
+import io.github.alathra.vpack.pack.resource.PackSnapshot;
+import io.github.alathra.vpack.utils.HexUtil;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Picks the best of several URLs serving the same main pack.
+ * Every mirror is downloaded once per version of the pack and only used after its content matched the pack hash,
+ * which also measures its throughput. Between versions, mirrors are probed with HEAD requests to track their latency
+ * and notice when they go down or change their content. Players are sent the healthy mirror with the shortest expected
+ * download time, and the pack url itself is used if no mirror is healthy.
+ * <p>
+ * Measurements are taken from the proxy, so they reflect the mirror's health rather than each player's route to it.
+ */
+public final class PackMirrors {
+    private static final double SMOOTHING = 0.3; // Weight of the newest measurement in the moving averages
+    private static final double SWITCH_THRESHOLD = 0.8; // Only switch to a healthy mirror that is at least 20% faster
+
+    private final VPack plugin;
+    private final ProxyServer proxy;
+    private final Logger logger;
+    private final PackExecutor executor;
+    private final PackHttpClient http;
+    private final AtomicBoolean probing = new AtomicBoolean(false);
+    private final AtomicBoolean probeAgain = new AtomicBoolean(false);
+
+    private volatile List<Mirror> mirrors = List.of();
+    private volatile @Nullable Mirror selected;
+    private @Nullable PackInfo packInfo;
+    private @Nullable ScheduledTask task;
+
+    public PackMirrors(VPack plugin, ProxyServer proxy, Logger logger, PackExecutor executor, PackHttpClient http) {
+        this.plugin = plugin;
+        this.proxy = proxy;
+        this.logger = logger;
+        this.executor = executor;
+        this.http = http;
+    }
+
+    /**
+     * Loads the configured mirrors and starts probing them.
+     *
+     * @param packInfo the pack info of the main pack
+     */
+    public void start(PackInfo packInfo) {
+        if (task != null)
+            return;
+
+        final List<Mirror> loaded = new ArrayList<>();
+        for (String uri : Settings.getMirrorUrls()) {
+            try {
+                loaded.add(new Mirror(new URL(uri)));
+            } catch (MalformedURLException e) {
+                logger.error("Invalid mirror URL: {}", uri);
+            }
+        }
+        if (loaded.isEmpty())
+            return;
+
+        this.mirrors = List.copyOf(loaded);
+        if (this.packInfo == null) // Stays registered across restarts, probing nothing while there are no mirrors
+            packInfo.addListener(snapshot -> probeAll()); // Verify the mirrors against the new version right away
+        this.packInfo = packInfo;
+        task = proxy.getScheduler()
+            .buildTask(plugin, this::probeAll)
+            .repeat(Math.max(Settings.getMirrorProbeInterval(), 5), TimeUnit.SECONDS)
+            .schedule();
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        mirrors = List.of();
+        selected = null;
+    }
+
+    /**
+     * Gets the URI of the mirror players should download a pack from.
+     *
+     * @param pack the pack snapshot
+     * @return the mirror, or null if the pack is not the main pack or no mirror is healthy
+     * @throws URISyntaxException if the mirror URL is not a valid URI
+     */
+    public @Nullable URI select(PackSnapshot pack) throws URISyntaxException {
+        final Mirror mirror = selected;
+        if (mirror == null || pack.sha1() == null || !mirror.isUsable(pack.sha1()))
+            return null;
+
+        return mirror.url.toURI();
+    }
+
+    /**
+     * Probes all mirrors on the pack executor, one round at a time.
+     */
+    private void probeAll() {
+        final PackInfo info = packInfo;
+        if (info == null)
+            return;
+
+        if (!probing.compareAndSet(false, true)) {
+            probeAgain.set(true); // The pack may have changed after the running round read it
+            return;
+        }
+
+        executor.supply(() -> {
+            final PackSnapshot snapshot = info.getSnapshot();
+            if (snapshot.isConfigured()) {
+                for (Mirror mirror : mirrors)
+                    probe(mirror, snapshot);
+            }
+            return snapshot;
+        }).whenComplete((snapshot, e) -> {
+            probing.set(false);
+            if (snapshot != null && snapshot.isConfigured())
+                reselect(info, snapshot.sha1());
+            if (probeAgain.getAndSet(false))
+                probeAll();
+        });
+    }
+
+    private void probe(Mirror mirror, PackSnapshot snapshot) {
+        final byte[] sha1 = snapshot.sha1();
+        try {
+            if (!mirror.isVerified(sha1) && !mirror.isRejected(sha1)) {
+                verify(mirror, snapshot);
+                return;
+            }
+
+            // A rejected mirror is only downloaded again once its size changed, it may have been fixed
+            final PackHttpClient.Response response = http.probe(mirror.url);
+            final OptionalLong length = response.headers().firstValueAsLong("Content-Length");
+            if (length.isPresent() && length.getAsLong() != mirror.size) {
+                logger.info("Mirror {} changed its content, verifying it again", mirror.url);
+                verify(mirror, snapshot);
+                return;
+            }
+
+            mirror.recordLatency(response.transferTime().toNanos());
+            if (mirror.isVerified(sha1))
+                mirror.failures = 0;
+        } catch (IOException e) {
+            mirror.failures++;
+            logger.warn("Mirror {} failed ({} in a row): {}", mirror.url, mirror.failures, e.getMessage());
+        }
+    }
+
+    /**
+     * Downloads a mirror and checks that it serves the pack with the hash of the snapshot.
+     */
+    private void verify(Mirror mirror, PackSnapshot snapshot) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        final PackHttpClient.Response response = http.download(mirror.url, digest, null, null);
+        PackMetrics.recordDownload(mirror.url, response);
+        final byte[] sha1 = digest.digest();
+        mirror.size = response.bytesRead();
+        if (!MessageDigest.isEqual(sha1, snapshot.sha1())) {
+            mirror.verifiedSha1 = null;
+            mirror.rejectedSha1 = snapshot.sha1();
+            throw new IOException("Content does not match the pack, expected hash " + HexUtil.toString(snapshot.sha1()) + " but got " + HexUtil.toString(sha1));
+        }
+
+        final long nanos = Math.max(response.transferTime().toNanos(), 1);
+        mirror.bytesPerSecond = response.bytesRead() * 1_000_000_000d / nanos;
+        mirror.verifiedSha1 = sha1;
+        mirror.rejectedSha1 = null;
+        mirror.failures = 0;
+        logger.info("Verified mirror {} ({} KiB/s)", mirror.url, (long) mirror.bytesPerSecond / 1024);
+    }
+
+    /**
+     * Picks the mirror with the shortest expected download time, and rebuilds the cached pack requests if it changed.
+     */
+    private synchronized void reselect(PackInfo info, byte[] sha1) {
+        final Mirror current = selected;
+        Mirror best = current != null && current.isUsable(sha1) ? current : null;
+        for (Mirror mirror : mirrors) {
+            if (!mirror.isUsable(sha1) || mirror == best)
+                continue;
+
+            if (best == null || mirror.expectedNanos() < best.expectedNanos() * SWITCH_THRESHOLD)
+                best = mirror;
+        }
+
+        if (best == current)
+            return;
+
+        selected = best;
+        if (best == null)
+            logger.warn("No healthy mirror left, sending players the pack url");
+        else
+            logger.info("Sending players the pack from mirror {}", best.url);
+        info.distribute().invalidate();
+    }
+
+    /**
+     * Gets the health of the mirrors, for the stats command.
+     *
+     * @return a line per mirror
+     */
+    public List<String> describe() {
+        final List<String> lines = new ArrayList<>();
+        final Mirror current = selected;
+        for (Mirror mirror : mirrors) {
+            lines.add("%s%s: %s, %d ms, %d KiB/s, %d failures".formatted(
+                mirror == current ? "* " : "",
+                mirror.url,
+                mirror.verifiedSha1 != null ? "verified" : mirror.rejectedSha1 != null ? "content mismatch" : "unverified",
+                TimeUnit.NANOSECONDS.toMillis((long) mirror.latencyNanos),
+                (long) mirror.bytesPerSecond / 1024,
+                mirror.failures
+            ));
+        }
+        return lines;
+    }
+
+    /**
+     * The measured health of a mirror. Only written by the probe round that currently runs.
+     */
+    private static final class Mirror {
+        private final URL url;
+        private volatile byte @Nullable [] verifiedSha1;
+        private volatile byte @Nullable [] rejectedSha1;
+        private volatile long size;
+        private volatile double latencyNanos;
+        private volatile double bytesPerSecond;
+        private volatile int failures;
+
+        private Mirror(URL url) {
+            this.url = url;
+        }
+
+        private boolean isVerified(byte[] sha1) {
+            final byte[] verified = verifiedSha1;
+            return verified != null && MessageDigest.isEqual(verified, sha1);
+        }
+
+        private boolean isRejected(byte[] sha1) {
+            final byte[] rejected = rejectedSha1;
+            return rejected != null && MessageDigest.isEqual(rejected, sha1);
+        }
+
+        private boolean isUsable(byte[] sha1) {
+            return isVerified(sha1) && failures < Math.max(Settings.getMirrorMaxFailures(), 1);
+        }
+
+        private void recordLatency(long nanos) {
+            latencyNanos = latencyNanos == 0 ? nanos : latencyNanos + SMOOTHING * (nanos - latencyNanos);
+        }
+
+        /**
+         * Gets the expected time to download the pack from this mirror.
+         */
+        private double expectedNanos() {
+            final double transfer = bytesPerSecond <= 0 ? 0 : size * 1_000_000_000d / bytesPerSecond;
+            return latencyNanos + transfer;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package io.github.alathra.vpack.pack.optimize;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.cfg.JsonNodeFeature;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Rewrites a resource pack into a smaller zip with the same content as far as the game is concerned.
+ * <ul>
+ *     <li>JSON files, including {@code .mcmeta}, are minified</li>
+ *     <li>Files the game never reads, like OS metadata and image editor projects, are left out</li>
+ *     <li>PNG textures are recompressed losslessly, see {@link PngRecompressor}</li>
+ *     <li>Every entry is deflated at the highest level, or stored if that does not make it smaller</li>
+ * </ul>
+ * The output only depends on the input, so the same pack always produces the same optimized pack and hash.
+ */
+public final class PackOptimizer {
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+        .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS) // Write numbers exactly as they were,
+        .configure(JsonNodeFeature.STRIP_TRAILING_BIGDECIMAL_ZEROES, false); // without turning 1.0 into 1
+    private static final LocalDateTime ENTRY_TIME = LocalDateTime.of(1980, 1, 1, 0, 0);
+    private static final Set<String> JUNK_NAMES = Set.of(".ds_store", "thumbs.db", "desktop.ini", ".gitignore", ".gitattributes", ".gitkeep");
+    private static final Set<String> JUNK_EXTENSIONS = Set.of(".psd", ".xcf", ".kra", ".pdn", ".blend", ".blend1", ".bbmodel", ".ase", ".aseprite");
+
+    private final boolean recompressPng;
+
+    /**
+     * Creates an optimizer.
+     *
+     * @param recompressPng whether PNG textures are recompressed, which takes most of the time
+     */
+    public PackOptimizer(boolean recompressPng) {
+        this.recompressPng = recompressPng;
+    }
+
+    /**
+     * Writes an optimized copy of a pack.
+     *
+     * @param source the pack to optimize
+     * @param target the file to write the optimized pack to
+     * @return the result, including the SHA-1 hash of the optimized pack
+     * @throws IOException if the pack is not a valid zip or could not be written
+     */
+    public Result optimize(Path source, Path target) throws IOException {
+        final long startedAt = System.nanoTime();
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        int removed = 0;
+        try (
+            ZipFile zip = new ZipFile(source.toFile());
+            OutputStream file = Files.newOutputStream(target);
+            ZipOutputStream out = new ZipOutputStream(new DigestOutputStream(file, digest))
+        ) {
+            out.setLevel(Deflater.BEST_COMPRESSION);
+            final Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory())
+                    continue; // Implied by the file paths
+
+                if (isJunk(entry.getName())) {
+                    removed++;
+                    continue;
+                }
+
+                final byte[] content;
+                try (InputStream in = zip.getInputStream(entry)) {
+                    content = optimize(entry.getName(), in.readAllBytes());
+                }
+                write(out, entry.getName(), content);
+            }
+        }
+
+        return new Result(digest.digest(), Files.size(source), Files.size(target), removed, System.nanoTime() - startedAt);
+    }
+
+    private byte[] optimize(String name, byte[] content) {
+        final String lowerName = name.toLowerCase(Locale.ROOT);
+        if (lowerName.endsWith(".json") || lowerName.endsWith(".mcmeta")) {
+            final byte[] minified = minifyJson(content);
+            return minified != null && minified.length < content.length ? minified : content;
+        }
+
+        if (recompressPng && lowerName.endsWith(".png")) {
+            final byte[] recompressed = PngRecompressor.recompress(content);
+            return recompressed != null ? recompressed : content;
+        }
+
+        return content;
+    }
+
+    private static byte @Nullable [] minifyJson(byte[] content) {
+        try {
+            final JsonNode node = MAPPER.readTree(content);
+            return node == null ? null : MAPPER.writeValueAsBytes(node);
+        } catch (IOException e) {
+            return null; // Lenient JSON the game still accepts, leave it as it is
+        }
+    }
+
+    private static boolean isJunk(String name) {
+        final String lowerName = name.toLowerCase(Locale.ROOT);
+        if (lowerName.startsWith("__macosx/") || lowerName.startsWith(".git/") || lowerName.contains("/.git/"))
+            return true;
+
+        final String fileName = lowerName.substring(lowerName.lastIndexOf('/') + 1);
+        if (fileName.startsWith("._") || JUNK_NAMES.contains(fileName))
+            return true;
+
+        final int extension = fileName.lastIndexOf('.');
+        return extension >= 0 && JUNK_EXTENSIONS.contains(fileName.substring(extension));
+    }
+
+    /**
+     * Writes an entry deflated, or stored if deflating does not make it smaller, like already compressed sounds.
+     */
+    private static void write(ZipOutputStream out, String name, byte[] content) throws IOException {
+        final ZipEntry entry = new ZipEntry(name);
+        entry.setTimeLocal(ENTRY_TIME);
+
+        if (deflatedSize(content) >= content.length) {
+            final CRC32 crc = new CRC32();
+            crc.update(content);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(content.length);
+            entry.setCompressedSize(content.length);
+            entry.setCrc(crc.getValue());
+        } else {
+            entry.setMethod(ZipEntry.DEFLATED);
+        }
+
+        out.putNextEntry(entry);
+        out.write(content);
+        out.closeEntry();
+    }
+
+    private static long deflatedSize(byte[] content) {
+        final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            deflater.setInput(content);
+            deflater.finish();
+            final byte[] buffer = new byte[64 * 1024];
+            while (!deflater.finished())
+                deflater.deflate(buffer);
+            return deflater.getBytesWritten();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * The result of optimizing a pack.
+     *
+     * @param sha1         the SHA-1 hash of the optimized pack
+     * @param originalSize the size of the original pack in bytes
+     * @param size         the size of the optimized pack in bytes
+     * @param removed      the amount of files left out
+     * @param elapsedNanos the time optimizing took
+     */
+    public record Result(byte[] sha1, long originalSize, long size, int removed, long elapsedNanos) {
+        /**
+         * Gets how much smaller the optimized pack is.
+         *
+         * @return the saved size as a percentage of the original size
+         */
+        public double savedPercent() {
+            return originalSize <= 0 ? 0 : 100d * (originalSize - size) / originalSize;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package io.github.alathra.vpack.pack.optimize;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Losslessly shrinks PNG files by recompressing their image data at the highest deflate level and dropping metadata
+ * chunks the game never reads. Pixel data, filters, color type and bit depth are left untouched, so the decoded image
+ * is identical.
+ */
+final class PngRecompressor {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final Set<String> DROPPED_CHUNKS = Set.of("tEXt", "zTXt", "iTXt", "tIME", "eXIf", "pHYs", "iCCP", "sPLT", "hIST");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private PngRecompressor() {
+    }
+
+    /**
+     * Recompresses a PNG file.
+     *
+     * @param png the PNG file
+     * @return the recompressed file, or null if it is not a valid PNG or could not be made smaller
+     */
+    static byte @Nullable [] recompress(byte[] png) {
+        if (png.length < SIGNATURE.length || !Arrays.equals(png, 0, SIGNATURE.length, SIGNATURE, 0, SIGNATURE.length))
+            return null;
+
+        try {
+            final byte[] result = rewrite(png);
+            return result.length < png.length ? result : null;
+        } catch (IOException | DataFormatException | RuntimeException e) {
+            return null; // Leave anything unusual as it is
+        }
+    }
+
+    private static byte[] rewrite(byte[] png) throws IOException, DataFormatException {
+        final ByteBuffer in = ByteBuffer.wrap(png);
+        in.position(SIGNATURE.length);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(png.length);
+        final DataOutputStream data = new DataOutputStream(out);
+        data.write(SIGNATURE);
+
+        final ByteArrayOutputStream idat = new ByteArrayOutputStream(png.length);
+        boolean idatWritten = false;
+        while (in.remaining() >= 12) {
+            final int length = in.getInt();
+            final byte[] typeBytes = new byte[4];
+            in.get(typeBytes);
+            final String type = new String(typeBytes, StandardCharsets.US_ASCII);
+            if (length < 0 || length > in.remaining() - 4)
+                throw new IOException("Truncated chunk " + type);
+
+            final byte[] chunk = new byte[length];
+            in.get(chunk);
+            in.getInt(); // CRC, recalculated for every written chunk
+
+            if (type.equals("IDAT")) {
+                idat.write(chunk);
+                continue;
+            }
+
+            if (idat.size() > 0 && !idatWritten) {
+                writeChunk(data, "IDAT", deflate(inflate(idat.toByteArray())));
+                idatWritten = true;
+            }
+
+            if (DROPPED_CHUNKS.contains(type))
+                continue;
+
+            writeChunk(data, type, chunk);
+            if (type.equals("IEND"))
+                return out.toByteArray();
+        }
+
+        throw new IOException("Missing IEND chunk");
+    }
+
+    private static void writeChunk(DataOutputStream out, String type, byte[] chunk) throws IOException {
+        final byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        final CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(chunk);
+
+        out.writeInt(chunk.length);
+        out.write(typeBytes);
+        out.write(chunk);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static byte[] inflate(byte[] compressed) throws DataFormatException, IOException {
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                final int read = inflater.inflate(buffer);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new IOException("Truncated image data");
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 64);
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished())
+                out.write(buffer, 0, deflater.deflate(buffer));
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -1,46 +1,134 @@
 package io.github.alathra.vpack.pack.resource;
 
+import com.velocitypowered.api.event.player.PlayerResourcePackStatusEvent;
+import com.velocitypowered.api.network.ProtocolVersion;
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
+import io.github.alathra.vpack.VPack;
 import io.github.alathra.vpack.config.Settings;
+import io.github.alathra.vpack.metrics.PackMetrics;
+import io.github.alathra.vpack.pack.PackExecutor;
+import io.github.alathra.vpack.pack.bedrock.BedrockDetector;
+import io.github.alathra.vpack.pack.mirror.PackMirrors;
+import io.github.alathra.vpack.pack.server.PackServer;
+import io.github.alathra.vpack.pack.store.PackStore;
 import io.github.alathra.vpack.utils.HexUtil;
 import io.github.alathra.vpack.utils.ResourcePackUtil;
-import io.github.milkdrinkers.colorparser.velocity.ColorParser;
 import net.kyori.adventure.resource.ResourcePackInfo;
-import net.kyori.adventure.resource.ResourcePackRequest;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.Arrays;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 /**
  * A class that manages the resource pack information, including its URL and SHA-1 hash.
  * It provides methods to get and set the pack URL and hash, as well as to update and save the hash to disk.
+ * Besides the main pack, which is named {@value #DEFAULT_PACK}, any number of named packs with a fixed URL can be
+ * configured and mapped to backend servers.
  */
 public final class PackInfo {
+    /**
+     * The name of the main pack, which is updated from GitHub or the saved pack uri.
+     */
+    public static final String DEFAULT_PACK = "default";
+
     private final ProxyServer proxy;
     private final Logger logger;
+    private final PackServer server;
+    private final PackExecutor executor;
+    private final PackStore store;
+    private final PackMirrors mirrors;
     private final Distribute distribute;
-    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
-
-    private @Nullable URL url;
-    private byte[] sha1;
+    private final AtomicReference<PackSnapshot> snapshot = new AtomicReference<>(PackSnapshot.EMPTY);
+    private final Object publishLock = new Object(); // Keeps the saved pack in the order the snapshots were published
+    private final Map<String, PackSnapshot> namedPacks = new ConcurrentHashMap<>();
+    private final List<Consumer<PackSnapshot>> listeners = new CopyOnWriteArrayList<>();
 
-    public PackInfo(ProxyServer proxy, Logger logger) {
+    public PackInfo(ProxyServer proxy, Logger logger, PackServer server, PackExecutor executor, PackStore store, PackMirrors mirrors) {
         this.proxy = proxy;
         this.logger = logger;
-        this.distribute = new Distribute(proxy, this);
+        this.server = server;
+        this.executor = executor;
+        this.store = store;
+        this.mirrors = mirrors;
+        store.setInUse(this::getPublishedSha1s);
+        loadNamedPacks();
+        this.distribute = new Distribute(proxy, logger, this);
 
         initializeUrl();
-        if (url != null) {
-            initializeHash();
+        if (getSnapshot().url() != null) {
+            revalidateInBackground();
+        }
+        refreshNamedPacks();
+    }
+
+    private void loadNamedPacks() {
+        for (String name : Settings.getPackNames()) {
+            if (name.equals(DEFAULT_PACK)) {
+                logger.warn("The pack name \"{}\" is reserved for the main pack, ignoring it in \"packs\"", DEFAULT_PACK);
+                continue;
+            }
+
+            final String urlString = Settings.getNamedPackUrl(name);
+            try {
+                namedPacks.put(name, PackSnapshot.EMPTY.next(new URL(urlString), null));
+            } catch (MalformedURLException e) {
+                logger.error("Invalid URL for pack {}: {}", name, urlString);
+            }
+        }
+    }
+
+    /**
+     * Fetches the hashes of all named packs in the background, and sends each pack to the players using it once its hash is known.
+     */
+    private void refreshNamedPacks() {
+        for (Map.Entry<String, PackSnapshot> entry : namedPacks.entrySet()) {
+            final String name = entry.getKey();
+            final URL url = entry.getValue().url();
+            if (url == null)
+                continue;
+
+            fetchSha1(url).thenAcceptAsync(sha1 -> {
+                server.prepare(url, sha1);
+                final PackSnapshot previous = namedPacks.get(name);
+                final PackSnapshot updated = namedPacks.computeIfPresent(name, (n, current) -> {
+                    if (!current.hasUrl(url) || (current.sha1() != null && MessageDigest.isEqual(current.sha1(), sha1)))
+                        return current;
+
+                    return current.next(url, sha1);
+                });
+
+                if (updated != previous)
+                    distribute.sendToAllPlayers();
+            }, executor).exceptionally(e -> {
+                logger.warn("Failed to fetch hash of pack {} from {}: {}", name, url, (e.getCause() != null ? e.getCause() : e).getMessage());
+                return null;
+            });
         }
     }
 
@@ -50,119 +138,329 @@ public final class PackInfo {
             if (urlString == null) {
                 logger.warn("Missing config key \"pack-uri\"");
             }
-            this.url = null;
             return;
         }
 
         try {
-            this.url = new URL(urlString);
+            final URL url = new URL(urlString);
+            final byte[] cachedSha1 = loadHashCache(url);
+            updateSnapshot(current -> current.next(url, cachedSha1));
         } catch (MalformedURLException e) {
             logger.error("Invalid pack URL: {}", urlString, e);
-            this.url = null;
         }
     }
 
-    private void initializeHash() {
+    /**
+     * Loads the last verified hash of the pack URL from data.yml, so the pack can be distributed right away on startup.
+     *
+     * @param url the pack url
+     * @return the cached hash, or null if the cached hash belongs to a different url
+     */
+    private byte @Nullable [] loadHashCache(URL url) {
+        if (!Settings.getCachedPackUri().equals(url.toString()))
+            return null;
+
+        final byte[] sha1;
         try {
-            updateSha1();
-        } catch (IOException e) {
-            logger.warn("Failed to fetch resource pack hash on initialization. " +
-                "Hash will be calculated on first request or restart", e);
+            sha1 = HexUtil.toByteArray(Settings.getCachedPackSha1());
+        } catch (IllegalArgumentException e) {
+            return null;
         }
+
+        if (sha1.length != 20)
+            return null;
+
+        final String etag = Settings.getCachedPackEtag();
+        final String lastModified = Settings.getCachedPackLastModified();
+        RevalidationCache.put(url, new PackValidators(
+            etag.isEmpty() ? null : etag,
+            lastModified.isEmpty() ? null : lastModified,
+            Settings.getCachedPackSize()
+        ), sha1);
+
+        logger.info("Using cached resource pack hash {}, revalidating in the background", HexUtil.toString(sha1));
+        return sha1;
     }
 
-    public Optional<URL> getUrl() {
-        lock.readLock().lock();
-        try {
-            return Optional.ofNullable(url);
-        } finally {
-            lock.readLock().unlock();
+    /**
+     * Saves the verified hash and validators of the pack URL to data.yml.
+     */
+    private void saveHashCache(URL url, byte[] sha1) {
+        final RevalidationCache.Entry entry = RevalidationCache.get(url);
+        final PackValidators validators = entry != null && MessageDigest.isEqual(entry.sha1(), sha1)
+            ? entry.validators()
+            : new PackValidators(null, null, -1); // The url may serve another version by now, like after a rollback
+
+        Settings.setCachedPack(
+            url.toString(),
+            HexUtil.toString(sha1),
+            validators.contentLength(),
+            validators.etag() == null ? "" : validators.etag(),
+            validators.lastModified() == null ? "" : validators.lastModified()
+        );
+    }
+
+    /**
+     * Revalidates the hash of the pack off the startup thread, and sends the pack to all players if it changed.
+     */
+    private void revalidateInBackground() {
+        final long version = getSnapshot().version();
+        updateSha1().whenComplete((ignored, e) -> {
+            if (e != null) {
+                logger.warn("Failed to fetch resource pack hash on initialization. " +
+                    "Hash will be calculated on first request or restart", e.getCause() != null ? e.getCause() : e);
+                return;
+            }
+
+            if (getSnapshot().version() != version)
+                distribute.sendToAllPlayers();
+        });
+    }
+
+    /**
+     * Gets the current snapshot of the pack. The snapshot is immutable, so its URL and hash always belong together.
+     *
+     * @return the current pack snapshot
+     */
+    public PackSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Registers a listener that is called with every new snapshot of the main pack, on the thread that published it.
+     *
+     * @param listener the listener
+     */
+    public void addListener(Consumer<PackSnapshot> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Atomically replaces the snapshot of the main pack, and notifies the listeners if it changed.
+     *
+     * @param update the function computing the new snapshot from the current one, may return the current snapshot
+     * @return the snapshot after the update
+     */
+    private PackSnapshot updateSnapshot(UnaryOperator<PackSnapshot> update) {
+        while (true) {
+            final PackSnapshot current = snapshot.get();
+            final PackSnapshot next = update.apply(current);
+            if (!snapshot.compareAndSet(current, next))
+                continue;
+
+            if (next != current) {
+                for (Consumer<PackSnapshot> listener : listeners)
+                    listener.accept(next);
+            }
+            return next;
         }
     }
 
-    private void setUrl(URL newUrl) {
-        lock.writeLock().lock();
-        try {
-            this.url = newUrl;
-            Settings.setPackUrl(newUrl == null ? "" : newUrl.toString());
-            this.sha1 = null;
-        } finally {
-            lock.writeLock().unlock();
+    /**
+     * Gets the current snapshot of a named pack.
+     *
+     * @param name the name of the pack, {@value #DEFAULT_PACK} for the main pack
+     * @return the current pack snapshot, or {@link PackSnapshot#EMPTY} if there is no such pack
+     */
+    public PackSnapshot getSnapshot(String name) {
+        if (name.equals(DEFAULT_PACK))
+            return getSnapshot();
+
+        return namedPacks.getOrDefault(name, PackSnapshot.EMPTY);
+    }
+
+    /**
+     * Gets the names of all packs, including the main pack.
+     *
+     * @return the pack names
+     */
+    public Set<String> getPackNames() {
+        final Set<String> names = new HashSet<>(namedPacks.keySet());
+        names.add(DEFAULT_PACK);
+        return names;
+    }
+
+    /**
+     * Gets the hashes of the current versions of the main pack and all named packs.
+     *
+     * @return the hex hashes
+     */
+    private Set<String> getPublishedSha1s() {
+        final Set<String> sha1s = new HashSet<>();
+        final byte[] main = getSnapshot().sha1();
+        if (main != null)
+            sha1s.add(HexUtil.toString(main));
+        for (PackSnapshot named : namedPacks.values()) {
+            if (named.sha1() != null)
+                sha1s.add(HexUtil.toString(named.sha1()));
         }
+        return sha1s;
+    }
+
+    public Optional<URL> getUrl() {
+        return Optional.ofNullable(getSnapshot().url());
+    }
+
+    /**
+     * Gets the URI players should download the pack in a snapshot from.
+     * This is the local pack server if it is running and has the pack cached, otherwise the healthiest verified mirror,
+     * otherwise the pack URL.
+     *
+     * @param pack the pack snapshot
+     * @return the download URI, or empty if the pack is not configured
+     * @throws URISyntaxException if the pack URL is not a valid URI
+     */
+    public Optional<URI> getDownloadUri(PackSnapshot pack) throws URISyntaxException {
+        return getDownload(pack).map(Download::uri);
+    }
+
+    /**
+     * Gets where players should download the pack in a snapshot from, and the hash of the file they will get.
+     * The hash differs from the hash of the snapshot if the pack server serves an optimized copy of the pack.
+     *
+     * @param pack the pack snapshot
+     * @return the download, or empty if the pack is not configured
+     * @throws URISyntaxException if the pack URL is not a valid URI
+     */
+    public Optional<Download> getDownload(PackSnapshot pack) throws URISyntaxException {
+        if (!pack.isConfigured())
+            return Optional.empty();
+
+        final PackServer.ServedPack served = server.getServed(pack.sha1());
+        if (served != null)
+            return Optional.of(new Download(served.uri(), served.sha1()));
+
+        final URI mirror = mirrors.select(pack);
+        if (mirror != null)
+            return Optional.of(new Download(mirror, pack.sha1()));
+
+        return Optional.of(new Download(pack.url().toURI(), pack.sha1()));
     }
 
     public Optional<byte[]> getSha1() {
-        lock.readLock().lock();
-        try {
-            return Optional.ofNullable(sha1.clone());
-        } finally {
-            lock.readLock().unlock();
-        }
+        final byte[] sha1 = getSnapshot().sha1();
+        return sha1 == null ? Optional.empty() : Optional.of(sha1.clone());
     }
 
-    private void setSha1(byte[] newSha1) {
-        lock.writeLock().lock();
-        try {
-            if (newSha1 != null) {
-                this.sha1 = newSha1.clone();
-            } else {
-                this.sha1 = null;
-            }
-        } finally {
-            lock.writeLock().unlock();
+    /**
+     * Publishes a new pack URL and hash as a single snapshot and saves them to disk.
+     */
+    private void publish(@Nullable URL newUrl, byte @Nullable [] newSha1) {
+        publish(newUrl, newSha1, current -> true);
+    }
+
+    /**
+     * Publishes a new pack URL and hash as a single snapshot and saves them to disk, unless the current snapshot must
+     * be kept. The hash is only cached once it is published, so the cache never holds a hash players were not sent.
+     * Publishing and saving happen under one lock, so concurrent publishes are saved in the order they were published.
+     *
+     * @param replace whether the current snapshot is replaced, checked atomically with the update
+     * @return true if the new snapshot was published
+     */
+    private boolean publish(@Nullable URL newUrl, byte @Nullable [] newSha1, Predicate<PackSnapshot> replace) {
+        if (newUrl != null && newSha1 != null) {
+            store.touch(newSha1, newUrl);
+            server.prepare(newUrl, newSha1); // Cache the pack locally first so requests built for the new version can use it
+        }
+
+        synchronized (publishLock) {
+            final AtomicBoolean replaced = new AtomicBoolean();
+            updateSnapshot(current -> {
+                replaced.set(replace.test(current));
+                return replaced.get() ? current.next(newUrl, newSha1) : current;
+            });
+            if (!replaced.get())
+                return false;
+
+            Settings.setPackUrl(newUrl == null ? "" : newUrl.toString());
+            if (newUrl != null && newSha1 != null)
+                saveHashCache(newUrl, newSha1);
+            return true;
         }
     }
 
+    private CompletableFuture<byte[]> fetchSha1(URL url) {
+        return ResourcePackUtil.fetchSha1FromUrl(url, store, executor).thenApply(newHashOpt -> {
+            if (newHashOpt.isEmpty())
+                throw new CompletionException(new IOException("Failed to fetch SHA1 hash from URL: " + url));
+
+            return newHashOpt.get();
+        });
+    }
 
     /**
-     * Updates the URL of the pack if it is different from the current one.
-     * If the new URL is identical to the current one, it checks if the SHA-1 hash matches.
-     * If both match, it returns false indicating no update was made.
-     * If the URL is updated, it also updates the SHA-1 hash.
+     * Updates the URL of the pack if the pack at the new URL is different from the current one.
+     * The hash of the new URL is fetched first and the URL and hash are then published together,
+     * so players never see a pack without a hash while the update is in progress.
+     * If the pack at the new URL has the same SHA-1 hash as the current pack, it completes with false indicating no update was made.
      *
      * @param newUrl The new URL to set for the pack.
-     * @return true if the URL was updated, false if it was identical and no update was needed.
-     * @throws IOException if there is an error fetching the SHA-1 hash from the new URL.
-     * @apiNote This method is designed to prevent unnecessary updates when the pack at the new URL is identical to the current one. It internally calls {@link #updateSha1()} when required.
+     * @return a future completed with true if the pack was updated, false if it was identical and no update was needed,
+     * or completed exceptionally with an {@link IOException} if the SHA-1 hash could not be fetched from the new URL.
+     * @apiNote This method is designed to prevent unnecessary updates when the pack at the new URL is identical to the current one.
+     * All network work happens on the pack executor, so it is safe to call from any thread.
      */
-    public boolean updateUrl(@Nullable final URL newUrl) throws IOException {
-        final URL currentUrl = getUrl().orElse(null);
+    public CompletableFuture<Boolean> updateUrl(@Nullable final URL newUrl) {
+        if (newUrl == null) {
+            return executor.supply(() -> {
+                publish(null, null);
+                return true;
+            });
+        }
 
-        if (currentUrl != null && newUrl != null) { // Check if both URLs are set
-            try {
-                if (!currentUrl.toURI().equals(newUrl.toURI())) { // Check if the URLs are different
-                    final byte[] currentSha1 = getSha1().orElse(null);
-                    final byte[] remoteSha1 = ResourcePackUtil.fetchSha1FromUrl(newUrl).join().orElse(null);
-                    if (currentSha1 != null && remoteSha1 != null && HexUtil.toString(currentSha1).equals(HexUtil.toString(remoteSha1))) {
-                        return false; // The new pack at the URL is identical to the current one
-                    }
-                }
-            } catch (URISyntaxException ignored) {
+        final PackSnapshot current = getSnapshot();
+        return fetchSha1(newUrl).thenApplyAsync(remoteSha1 -> {
+            if (current.isConfigured() && MessageDigest.isEqual(current.sha1(), remoteSha1)) {
+                return false; // The new pack at the URL is identical to the current one
             }
-        }
 
-        setUrl(newUrl);
-        if (newUrl != null) {
-            updateSha1();
-        }
-        return true;
+            publish(newUrl, remoteSha1);
+            return true;
+        }, executor);
+    }
+
+    /**
+     * Publishes a pack whose hash is already known without downloading it, such as a pack published by another proxy
+     * or a stored version rolled back to.
+     *
+     * @param newUrl  the pack url
+     * @param newSha1 the verified SHA-1 hash of the pack at the url
+     * @return a future completed with true if the pack was updated, or false if it was already the current pack
+     */
+    public CompletableFuture<Boolean> adopt(final URL newUrl, final byte[] newSha1) {
+        return executor.supply(() -> {
+            final PackSnapshot current = getSnapshot();
+            if (current.hasUrl(newUrl) && current.sha1() != null && MessageDigest.isEqual(current.sha1(), newSha1))
+                return false;
+
+            publish(newUrl, newSha1);
+            return true;
+        });
     }
 
     /**
      * Updates the SHA-1 hash of the pack by fetching it from the configured URL.
-     * If the URL is not set, an exception is thrown.
-     * If the fetch fails, an IOException is thrown.
+     * If the URL is not set, the future fails with an {@link IllegalStateException}.
+     * If the fetch fails, the future fails with an {@link IOException}.
+     * If the URL was changed while the hash was being fetched, the fetched hash is discarded.
+     *
+     * @return a future completed once the hash has been updated
      */
-    public void updateSha1() throws IOException {
-        Optional<URL> currentUrl = getUrl();
-        if (currentUrl.isEmpty())
-            throw new IllegalStateException("Cannot update hash: no URL configured");
+    public CompletableFuture<Void> updateSha1() {
+        final URL currentUrl = getSnapshot().url();
+        if (currentUrl == null)
+            return CompletableFuture.failedFuture(new IllegalStateException("Cannot update hash: no URL configured"));
 
-        Optional<byte[]> newHashOpt = ResourcePackUtil.fetchSha1FromUrl(currentUrl.get()).join();
-        if (newHashOpt.isEmpty())
-            throw new IOException("Failed to fetch SHA1 hash from URL: " + currentUrl.get());
+        return fetchSha1(currentUrl).thenAcceptAsync(newSha1 -> {
+            final boolean newlyCached = server.prepare(currentUrl, newSha1);
+            final boolean updated = publish(currentUrl, newSha1, current ->
+                // Keep the current version if the URL changed in the meantime or the hash is unchanged
+                current.hasUrl(currentUrl) && (current.sha1() == null || !MessageDigest.isEqual(current.sha1(), newSha1))
+            );
 
-        setSha1(newHashOpt.get());
+            if (newlyCached && !updated)
+                distribute.invalidate(); // Same pack version, but it can now be served locally
+        }, executor);
     }
 
     /**
@@ -171,12 +469,16 @@ public final class PackInfo {
      * @return true if the pack is configured, false otherwise.
      */
     public boolean isConfigured() {
-        lock.readLock().lock();
-        try {
-            return url != null && sha1 != null;
-        } finally {
-            lock.readLock().unlock();
-        }
+        return getSnapshot().isConfigured();
+    }
+
+    /**
+     * Checks if the main pack or any named pack is ready to be distributed.
+     *
+     * @return true if at least one pack is configured
+     */
+    public boolean hasConfiguredPacks() {
+        return isConfigured() || namedPacks.values().stream().anyMatch(PackSnapshot::isConfigured);
     }
 
     public Distribute distribute() {
@@ -184,60 +486,335 @@ public final class PackInfo {
     }
 
     public static final class Distribute {
+        private static final long MAX_RETRY_DELAY = TimeUnit.MINUTES.toMillis(5);
+
         private final ProxyServer proxy;
+        private final Logger logger;
         private final PackInfo packInfo;
+        private final Map<String, CachedInfo> cachedInfos = new ConcurrentHashMap<>();
+        private final Map<UUID, CompletableFuture<Void>> waiters = new ConcurrentHashMap<>();
+        private final PlayerPackStates states = new PlayerPackStates();
+        private final BedrockDetector bedrock;
+        private volatile PackMapping mapping;
+        private volatile PromptTemplate prompt;
+        private volatile @Nullable Rollout rollout;
 
-        public Distribute(ProxyServer proxy, PackInfo packInfo) {
+        public Distribute(ProxyServer proxy, Logger logger, PackInfo packInfo) {
             this.proxy = proxy;
+            this.logger = logger;
             this.packInfo = packInfo;
+            this.bedrock = new BedrockDetector(proxy);
+            this.mapping = PackMapping.load(packInfo.getPackNames(), logger);
+            this.prompt = PromptTemplate.compile(Settings.getPackPromptMessage());
         }
 
-        public void sendToPlayer(Player player) {
-            if (!packInfo.isConfigured())
-                return;
+        /**
+         * Gets the pack info of a named pack.
+         * The info is only rebuilt when a new version of the pack is published or the cache was invalidated.
+         *
+         * @param name the name of the pack
+         * @return the pack info, or null if the pack is not configured
+         * @throws URISyntaxException if the pack URL is not a valid URI
+         */
+        private @Nullable ResourcePackInfo getInfo(String name) throws URISyntaxException {
+            final PackSnapshot snapshot = packInfo.getSnapshot(name);
+            if (!snapshot.isConfigured())
+                return null;
+
+            final CachedInfo cached = cachedInfos.get(name);
+            if (cached != null && cached.version() == snapshot.version())
+                return cached.info();
+
+            final ResourcePackInfo info = ResourcePackUtil.createPackInfo(packInfo, name, snapshot);
+            cachedInfos.put(name, new CachedInfo(snapshot.version(), info));
+            return info;
+        }
+
+        /**
+         * Discards the cached pack infos, reloads the server mapping and recompiles the prompt, forcing them to be
+         * rebuilt on the next send.
+         * Must be called when anything other than the pack itself that goes into the request changes.
+         */
+        public void invalidate() {
+            cachedInfos.clear();
+            mapping = PackMapping.load(packInfo.getPackNames(), logger);
+            prompt = PromptTemplate.compile(Settings.getPackPromptMessage());
+        }
+
+        /**
+         * Gets the mapping of backend servers to packs.
+         *
+         * @return the mapping
+         */
+        public PackMapping getMapping() {
+            return mapping;
+        }
+
+        /**
+         * Sends the packs of the server a player is connected to.
+         * Only packs the player does not have loaded yet are sent, and packs of this plugin that the server does not
+         * use are removed, so moving between servers with the same packs does not reload anything.
+         * Bedrock players are skipped, since their clients cannot load Java packs.
+         *
+         * @param player the player
+         * @return true if any pack was sent or removed
+         */
+        public boolean sendToPlayer(Player player) {
+            return sendToPlayer(player, player.getCurrentServer()
+                .map(connection -> connection.getServerInfo().getName())
+                .orElse(null));
+        }
+
+        /**
+         * Sends the packs of a server to a player, who does not have to be connected to it yet.
+         *
+         * @param player the player
+         * @param server the name of the server, or null for the default packs
+         * @return true if any pack was sent or removed, false if none was or the packs could not be sent
+         * @see #sendToPlayer(Player)
+         */
+        public boolean sendToPlayer(Player player, @Nullable String server) {
+            if (Settings.getBedrockSkipJavaPacks() && bedrock.isBedrock(player))
+                return false;
 
             try {
-                final ResourcePackInfo info = ResourcePackUtil.createPackInfo(packInfo);
-                final ResourcePackRequest.Builder request = ResourcePackUtil.createPackRequest(info);
-
-                player.sendResourcePacks(
-                    request
-                        .prompt(
-                            ColorParser.of(Settings.getPackPromptMessage())
-                                .legacy()
-                                .mini(player)
-                                .build()
-                        )
-                        .build()
-                );
+                return sendPacks(player, mapping.getPacks(server));
             } catch (URISyntaxException | NoSuchElementException e) {
-                throw new RuntimeException(e);
+                logger.error("Failed to send resource packs to {}: {}", player.getUsername(), e.getMessage());
+                return false; // Keep going, a bad pack must not stop the packs from being sent to the other players
             }
         }
 
+        private boolean sendPacks(Player player, List<String> names) throws URISyntaxException {
+            final Map<UUID, ResourcePackInfo> unique = new LinkedHashMap<>();
+            for (String name : names) {
+                final ResourcePackInfo info = getInfo(name);
+                if (info != null)
+                    unique.putIfAbsent(info.id(), info); // Packs with the same content share an id
+            }
+
+            List<ResourcePackInfo> wanted = new ArrayList<>(unique.values());
+
+            if (player.getProtocolVersion().lessThan(ProtocolVersion.MINECRAFT_1_20_3) && wanted.size() > 1)
+                wanted = List.of(wanted.get(0)); // Older clients can only hold a single server pack
+
+            final UUID uuid = player.getUniqueId();
+            final Map<UUID, PlayerPackStates.PackState> sent = states.getAll(uuid);
+            final Map<UUID, String> tracked = getLoadedPacks(player);
+
+            // Packs are stacked in order, once one pack has to be sent every pack after it is sent again to stay on top
+            final List<ResourcePackInfo> toSend = new ArrayList<>();
+            for (ResourcePackInfo info : wanted) {
+                if (toSend.isEmpty() && !needsSend(sent.get(info.id()), tracked.get(info.id()), info.hash()))
+                    continue;
+
+                toSend.add(info);
+            }
+
+            final Set<UUID> wantedIds = new HashSet<>();
+            for (ResourcePackInfo info : wanted)
+                wantedIds.add(info.id());
+
+            final Set<UUID> current = new HashSet<>(sent.keySet());
+            current.addAll(tracked.keySet());
+
+            final List<UUID> toRemove = new ArrayList<>();
+            for (UUID id : current) {
+                if (!wantedIds.contains(id))
+                    toRemove.add(id);
+            }
+
+            if (!toRemove.isEmpty()) {
+                player.removeResourcePacks(toRemove.get(0), toRemove.subList(1, toRemove.size()).toArray(UUID[]::new));
+                for (UUID id : toRemove)
+                    states.remove(uuid, id);
+            }
+
+            if (!toSend.isEmpty()) {
+                for (ResourcePackInfo info : toSend)
+                    states.onSent(uuid, info.id(), info.hash());
+                player.sendResourcePacks(ResourcePackUtil.createPackRequest(toSend).prompt(prompt.render(player)));
+            }
+
+            if (!toSend.isEmpty() || !toRemove.isEmpty())
+                logger.debug("Sent {} and removed {} resource packs for {}", toSend.size(), toRemove.size(), player.getUsername());
+
+            return !toSend.isEmpty() || !toRemove.isEmpty();
+        }
+
+        /**
+         * Checks if a pack has to be sent to a player.
+         *
+         * @param state       the state of the pack for the player, or null if it was never sent by this plugin
+         * @param trackedHash the hash of the pack as tracked by the proxy, used if this plugin has not sent the player this pack
+         * @param hash        the hash of the current version of the pack
+         * @return true if the player does not have this version loaded or downloading, and has not declined it
+         */
+        private boolean needsSend(PlayerPackStates.@Nullable PackState state, @Nullable String trackedHash, String hash) {
+            if (state == null)
+                return !hash.equals(trackedHash);
+
+            if (!state.hash().equals(hash))
+                return true;
+
+            if (state.isFailed())
+                return state.attempts() < Math.max(Settings.getDistributionMaxAttempts(), 1);
+
+            return false; // Loaded, still downloading or declined by the player
+        }
+
+        /**
+         * Gets the packs of this plugin a player has loaded or is currently downloading, as tracked by the proxy.
+         * Packs of this plugin are recognized by their id being derived from their hash, so this also finds packs
+         * sent before the proxy or plugin restarted.
+         *
+         * @param player the player
+         * @return the hex hash of each pack by id
+         */
+        private Map<UUID, String> getLoadedPacks(Player player) {
+            final Map<UUID, String> loaded = new HashMap<>();
+            for (com.velocitypowered.api.proxy.player.ResourcePackInfo pack : player.getAppliedResourcePacks())
+                addIfOwn(loaded, pack);
+            for (com.velocitypowered.api.proxy.player.ResourcePackInfo pack : player.getPendingResourcePacks())
+                addIfOwn(loaded, pack);
+            return loaded;
+        }
+
+        private static void addIfOwn(Map<UUID, String> loaded, com.velocitypowered.api.proxy.player.ResourcePackInfo pack) {
+            final byte[] hash = pack.getHash();
+            if (hash != null && pack.getId().equals(ResourcePackUtil.packId(hash)))
+                loaded.put(pack.getId(), HexUtil.toString(hash));
+        }
+
         public void sendToAllPlayers() {
-            if (!packInfo.isConfigured())
+            if (!packInfo.hasConfiguredPacks())
                 return;
 
-            try {
-                final ResourcePackInfo info = ResourcePackUtil.createPackInfo(packInfo);
-                final ResourcePackRequest.Builder request = ResourcePackUtil.createPackRequest(info);
-
+            final long startedAt = System.nanoTime();
+            final boolean paced = Settings.getDistributionPaced();
+            if (paced) {
+                startRollout();
+            } else {
                 for (Player player : proxy.getAllPlayers()) {
-                    final ResourcePackRequest builtRequest = request
-                        .prompt(
-                            ColorParser.of(Settings.getPackPromptMessage())
-                                .legacy()
-                                .mini(player)
-                                .build()
-                        )
-                        .build();
-
-                    player.sendResourcePacks(builtRequest);
+                    sendToPlayer(player);
                 }
-            } catch (URISyntaxException | NoSuchElementException e) {
-                throw new RuntimeException(e);
             }
+            PackMetrics.recordFanOut(proxy.getPlayerCount(), paced, System.nanoTime() - startedAt);
+        }
+
+        /**
+         * Starts sending the current pack to all online players in waves, replacing any rollout still in progress.
+         */
+        private void startRollout() {
+            final Rollout previous = rollout;
+            if (previous != null)
+                previous.cancel();
+
+            if (proxy.getPlayerCount() == 0)
+                return;
+
+            final Rollout next = new Rollout(proxy, this, packInfo.getSnapshot().version());
+            rollout = next;
+            next.start();
+        }
+
+        /**
+         * Gets the most recent paced rollout.
+         *
+         * @return the rollout, or empty if no paced rollout has been started
+         */
+        public Optional<Rollout> getRollout() {
+            return Optional.ofNullable(rollout);
+        }
+
+        /**
+         * Gets the resource pack states of the online players.
+         *
+         * @return the state table
+         */
+        public PlayerPackStates getStates() {
+            return states;
+        }
+
+        /**
+         * Waits until the client of a player answered every pack it was sent, successfully or not.
+         *
+         * @param player  the player
+         * @param timeout the time to wait at most
+         * @param unit    the unit of the timeout
+         * @return a future completing with true once no pack is pending, or false if the timeout passed first
+         */
+        public CompletableFuture<Boolean> awaitPacks(Player player, long timeout, TimeUnit unit) {
+            final UUID uuid = player.getUniqueId();
+            final CompletableFuture<Void> waiter = waiters.computeIfAbsent(uuid, id -> new CompletableFuture<>());
+            settle(uuid); // The client may have answered before we started waiting
+            return waiter
+                .thenApply(ignored -> true)
+                .completeOnTimeout(false, timeout, unit);
+        }
+
+        private void settle(UUID uuid) {
+            if (states.getAll(uuid).values().stream().anyMatch(PlayerPackStates.PackState::isPending))
+                return;
+
+            final CompletableFuture<Void> waiter = waiters.remove(uuid);
+            if (waiter != null)
+                waiter.complete(null);
+        }
+
+        public void onStatus(Player player, @Nullable UUID packId, PlayerResourcePackStatusEvent.Status status) {
+            final PlayerPackStates.PackState state = states.onStatus(player.getUniqueId(), packId, status);
+            if (state != null) {
+                PackMetrics.recordStatus(player.getUsername(), packId, state);
+                if (state.isFailed())
+                    scheduleRetry(player, state);
+                settle(player.getUniqueId());
+            }
+
+            final Rollout current = rollout;
+            if (current != null)
+                current.onStatus(player.getUniqueId(), status);
         }
+
+        /**
+         * Sends the packs of a player again after a failed download, waiting longer after every failed attempt.
+         */
+        private void scheduleRetry(Player player, PlayerPackStates.PackState state) {
+            if (state.attempts() >= Math.max(Settings.getDistributionMaxAttempts(), 1)) {
+                logger.warn("{} failed to load a resource pack {} times ({}), giving up", player.getUsername(), state.attempts(), state.status());
+                return;
+            }
+
+            final long delay = Math.min(TimeUnit.SECONDS.toMillis(Math.max(Settings.getDistributionRetryDelay(), 1)) << Math.min(state.attempts() - 1, 16), MAX_RETRY_DELAY);
+            logger.debug("{} failed to load a resource pack ({}), retrying in {} ms", player.getUsername(), state.status(), delay);
+            proxy.getScheduler()
+                .buildTask(VPack.getInstance(), () -> {
+                    if (player.isActive())
+                        sendToPlayer(player);
+                })
+                .delay(delay, TimeUnit.MILLISECONDS)
+                .schedule();
+        }
+
+        public void onDisconnect(Player player) {
+            states.remove(player.getUniqueId());
+            settle(player.getUniqueId());
+
+            final Rollout current = rollout;
+            if (current != null)
+                current.onDisconnect(player.getUniqueId());
+        }
+
+        private record CachedInfo(long version, ResourcePackInfo info) {
+        }
+    }
+
+    /**
+     * Where a pack is downloaded from.
+     *
+     * @param uri  the URI players download the pack from
+     * @param sha1 the SHA-1 hash of the file at the URI. Must not be modified.
+     */
+    public record Download(URI uri, byte[] sha1) {
     }
-}
\ No newline at end of file
+}
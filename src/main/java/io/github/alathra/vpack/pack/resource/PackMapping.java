@@ -0,0 +1,55 @@
+package io.github.alathra.vpack.pack.resource;
+
+import io.github.alathra.vpack.config.Settings;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The packs each backend server uses, read from the config once per load.
+ *
+ * @param servers  the packs of each listed server by lowercase server name, in the order they are stacked
+ * @param fallback the packs of servers that are not listed
+ */
+public record PackMapping(Map<String, List<String>> servers, List<String> fallback) {
+    /**
+     * Loads the mapping from the config, warning about packs that do not exist.
+     *
+     * @param packNames the names of all known packs
+     * @param logger    the logger to warn with
+     * @return the mapping
+     */
+    public static PackMapping load(Set<String> packNames, Logger logger) {
+        final Map<String, List<String>> servers = new HashMap<>();
+        for (String server : Settings.getMappedServers())
+            servers.put(server.toLowerCase(Locale.ROOT), validate(server, Settings.getServerPacks(server), packNames, logger));
+
+        return new PackMapping(Map.copyOf(servers), validate("default-packs", Settings.getDefaultPacks(), packNames, logger));
+    }
+
+    private static List<String> validate(String key, List<String> packs, Set<String> packNames, Logger logger) {
+        for (String pack : packs) {
+            if (!packNames.contains(pack))
+                logger.warn("Unknown pack \"{}\" used by {}, it is skipped until it is added to \"packs\"", pack, key);
+        }
+        return List.copyOf(packs);
+    }
+
+    /**
+     * Gets the packs of a server.
+     *
+     * @param server the name of the server, or null if the player is not connected to one
+     * @return the names of the packs, in the order they are stacked
+     */
+    public List<String> getPacks(@Nullable String server) {
+        if (server == null)
+            return fallback;
+
+        return servers.getOrDefault(server.toLowerCase(Locale.ROOT), fallback);
+    }
+}
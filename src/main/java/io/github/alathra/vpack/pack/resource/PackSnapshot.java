@@ -0,0 +1,54 @@
+package io.github.alathra.vpack.pack.resource;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URL;
+
+/**
+ * An immutable, versioned view of the resource pack URL and its SHA-1 hash.
+ * A new snapshot with a higher version is published every time the pack changes, so readers always see a matching
+ * URL and hash without any locking.
+ *
+ * @param url     the pack url, or null if no pack is configured
+ * @param sha1    the SHA-1 hash of the pack at the url, or null if it is not known yet. Must not be modified.
+ * @param version the version of this snapshot, incremented on every change
+ */
+public record PackSnapshot(@Nullable URL url, byte @Nullable [] sha1, long version) {
+    /**
+     * The snapshot used before any pack has been loaded.
+     */
+    public static final PackSnapshot EMPTY = new PackSnapshot(null, null, 0);
+
+    /**
+     * Checks if this snapshot has both a URL and a SHA-1 hash and is thus safe to be distributed.
+     *
+     * @return true if the pack is configured, false otherwise.
+     */
+    public boolean isConfigured() {
+        return url != null && sha1 != null;
+    }
+
+    /**
+     * Checks if this snapshot points at the given URL, without resolving host names like {@link URL#equals} does.
+     *
+     * @param other the url to compare with
+     * @return true if both urls are the same
+     */
+    public boolean hasUrl(@Nullable URL other) {
+        if (url == null || other == null)
+            return url == other;
+
+        return url.toString().equals(other.toString());
+    }
+
+    /**
+     * Creates the next snapshot of the pack.
+     *
+     * @param newUrl  the new pack url
+     * @param newSha1 the new hash, the array is copied
+     * @return the new snapshot
+     */
+    public PackSnapshot next(@Nullable URL newUrl, byte @Nullable [] newSha1) {
+        return new PackSnapshot(newUrl, newSha1 == null ? null : newSha1.clone(), version + 1);
+    }
+}
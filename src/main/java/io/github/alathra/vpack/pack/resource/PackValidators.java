@@ -0,0 +1,52 @@
+package io.github.alathra.vpack.pack.resource;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+
+/**
+ * The HTTP cache validators of a downloaded resource pack, used to revalidate the pack without downloading it again.
+ *
+ * @param etag          the {@code ETag} header of the response, if any
+ * @param lastModified  the {@code Last-Modified} header of the response, if any
+ * @param contentLength the number of bytes of the pack, or {@code -1} if unknown
+ */
+public record PackValidators(@Nullable String etag, @Nullable String lastModified, long contentLength) {
+    /**
+     * Reads the validators from the headers of a completed response.
+     *
+     * @param headers   the headers of the response the pack was downloaded with
+     * @param bytesRead the number of bytes actually read from the response
+     * @return the validators
+     */
+    public static PackValidators from(HttpHeaders headers, long bytesRead) {
+        return new PackValidators(
+            headers.firstValue("ETag").orElse(null),
+            headers.firstValue("Last-Modified").orElse(null),
+            bytesRead >= 0 ? bytesRead : headers.firstValueAsLong("Content-Length").orElse(-1)
+        );
+    }
+
+    /**
+     * Checks if these validators can be used for a conditional request.
+     *
+     * @return true if either an ETag or a Last-Modified date is present
+     */
+    public boolean isConditional() {
+        return etag != null || lastModified != null;
+    }
+
+    /**
+     * Adds the conditional request headers for these validators to a request.
+     *
+     * @param request the request to revalidate with
+     */
+    public void applyTo(HttpRequest.Builder request) {
+        if (etag != null)
+            request.header("If-None-Match", etag);
+
+        if (lastModified != null)
+            request.header("If-Modified-Since", lastModified);
+    }
+}
@@ -0,0 +1,194 @@
+package io.github.alathra.vpack.pack.resource;
+
+import com.velocitypowered.api.event.player.PlayerResourcePackStatusEvent;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks which version of each pack every online player was sent and the last status their client reported for it.
+ * Distribution uses this to skip players that already have a pack and to retry failed downloads.
+ * Entries of a player are removed when they disconnect.
+ */
+public final class PlayerPackStates {
+    private final Map<UUID, Map<UUID, PackState>> players = new ConcurrentHashMap<>();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder loaded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder declined = new LongAdder();
+
+    /**
+     * Gets the state of a pack for a player.
+     *
+     * @param player the player
+     * @param packId the pack
+     * @return the state, or null if the pack was never sent to the player
+     */
+    public @Nullable PackState get(UUID player, UUID packId) {
+        final Map<UUID, PackState> packs = players.get(player);
+        return packs == null ? null : packs.get(packId);
+    }
+
+    /**
+     * Gets the states of all packs sent to a player.
+     *
+     * @param player the player
+     * @return the states by pack id
+     */
+    public Map<UUID, PackState> getAll(UUID player) {
+        final Map<UUID, PackState> packs = players.get(player);
+        return packs == null ? Map.of() : Map.copyOf(packs);
+    }
+
+    /**
+     * Records that a pack was sent to a player. Sending the same hash again counts as another attempt.
+     *
+     * @param player the player
+     * @param packId the pack
+     * @param hash   the hex SHA-1 hash of the pack that was sent
+     */
+    public void onSent(UUID player, UUID packId, String hash) {
+        players.computeIfAbsent(player, uuid -> new ConcurrentHashMap<>())
+            .compute(packId, (id, previous) -> {
+                final long now = System.currentTimeMillis();
+                return new PackState(hash, null, previous != null && previous.hash().equals(hash) ? previous.attempts() + 1 : 1, now, now);
+            });
+    }
+
+    /**
+     * Records a status reported by the client of a player.
+     *
+     * @param player the player
+     * @param packId the pack, or null if the client did not say which pack, in which case it applies to all pending packs
+     * @param status the reported status
+     * @return the updated state, or null if the pack was not sent by this plugin
+     */
+    public @Nullable PackState onStatus(UUID player, @Nullable UUID packId, PlayerResourcePackStatusEvent.Status status) {
+        final Map<UUID, PackState> packs = players.get(player);
+        if (packs == null)
+            return null;
+
+        PackState updated = null;
+        for (Map.Entry<UUID, PackState> entry : packs.entrySet()) {
+            if (packId != null ? !entry.getKey().equals(packId) : !entry.getValue().isPending())
+                continue;
+
+            updated = packs.computeIfPresent(entry.getKey(), (id, state) -> state.withStatus(status));
+        }
+
+        if (updated != null) {
+            switch (status) {
+                case ACCEPTED -> accepted.increment();
+                case SUCCESSFUL -> loaded.increment();
+                case DECLINED -> declined.increment();
+                default -> {
+                    if (!status.isIntermediate())
+                        failed.increment();
+                }
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * Forgets that a pack was sent to a player, after it was removed from their client.
+     *
+     * @param player the player
+     * @param packId the pack
+     */
+    public void remove(UUID player, UUID packId) {
+        final Map<UUID, PackState> packs = players.get(player);
+        if (packs != null)
+            packs.remove(packId);
+    }
+
+    /**
+     * Forgets all packs of a player that left the proxy.
+     *
+     * @param player the player
+     */
+    public void remove(UUID player) {
+        players.remove(player);
+    }
+
+    /**
+     * Gets the amount of times players accepted a pack since startup.
+     *
+     * @return the amount of accepts
+     */
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    /**
+     * Gets the amount of packs loaded successfully since startup.
+     *
+     * @return the amount of successful loads
+     */
+    public long getLoaded() {
+        return loaded.sum();
+    }
+
+    /**
+     * Gets the amount of pack downloads or reloads that failed since startup.
+     *
+     * @return the amount of failures
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * Gets the amount of times players declined a pack since startup.
+     *
+     * @return the amount of declines
+     */
+    public long getDeclined() {
+        return declined.sum();
+    }
+
+    /**
+     * The state of one pack for one player.
+     *
+     * @param hash      the hex SHA-1 hash of the pack that was sent
+     * @param status    the last status reported by the client, or null if it has not answered yet
+     * @param attempts  the number of times this hash was sent to the player
+     * @param sentAt    the time of the last send, in epoch milliseconds
+     * @param updatedAt the time of the last send or status, in epoch milliseconds
+     */
+    public record PackState(String hash, PlayerResourcePackStatusEvent.@Nullable Status status, int attempts, long sentAt, long updatedAt) {
+        /**
+         * Checks if the client has not reported a final status for the pack yet.
+         *
+         * @return true if the pack is still being downloaded or applied
+         */
+        public boolean isPending() {
+            return status == null || status.isIntermediate();
+        }
+
+        /**
+         * Checks if the pack is loaded on the client, or will be once the download in progress completes.
+         *
+         * @return true if the pack does not need to be sent again
+         */
+        public boolean isLoadedOrPending() {
+            return isPending() || status == PlayerResourcePackStatusEvent.Status.SUCCESSFUL;
+        }
+
+        /**
+         * Checks if the client failed to download or apply the pack.
+         *
+         * @return true if sending the pack again may succeed
+         */
+        public boolean isFailed() {
+            return !isLoadedOrPending() && status != PlayerResourcePackStatusEvent.Status.DECLINED;
+        }
+
+        PackState withStatus(PlayerResourcePackStatusEvent.Status newStatus) {
+            return new PackState(hash, newStatus, attempts, sentAt, System.currentTimeMillis());
+        }
+    }
+}
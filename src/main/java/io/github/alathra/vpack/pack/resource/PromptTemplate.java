@@ -0,0 +1,87 @@
+package io.github.alathra.vpack.pack.resource;
+
+import com.velocitypowered.api.proxy.Player;
+import io.github.milkdrinkers.colorparser.velocity.ColorParser;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A resource pack prompt message compiled once per config load.
+ * Prompts that only use standard formatting render the same for every player, so they are parsed once and the
+ * resulting {@link Component} is shared. Prompts containing placeholders are parsed for each player.
+ */
+public final class PromptTemplate {
+    private static final Pattern TAG = Pattern.compile("<[/!]?([#a-zA-Z0-9_-]+)");
+    private static final TagResolver STANDARD_TAGS = TagResolver.standard();
+
+    private final String message;
+    private final boolean isStatic;
+    private volatile @Nullable Component staticComponent;
+
+    private PromptTemplate(String message, boolean isStatic) {
+        this.message = message;
+        this.isStatic = isStatic;
+    }
+
+    /**
+     * Compiles a prompt message.
+     *
+     * @param message the prompt message in legacy or MiniMessage format
+     * @return the compiled template
+     */
+    public static PromptTemplate compile(String message) {
+        return new PromptTemplate(message, !hasPlaceholders(message));
+    }
+
+    private static boolean hasPlaceholders(String message) {
+        if (message.indexOf('%') != -1)
+            return true;
+
+        final Matcher matcher = TAG.matcher(message);
+        while (matcher.find()) {
+            final String name = matcher.group(1).toLowerCase(Locale.ROOT);
+            if (!name.startsWith("#") && !STANDARD_TAGS.has(name))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if this prompt renders the same for every player.
+     *
+     * @return true if the prompt contains no placeholders
+     */
+    public boolean isStatic() {
+        return isStatic;
+    }
+
+    /**
+     * Renders the prompt for a player.
+     *
+     * @param player the player the prompt is shown to
+     * @return the prompt component, shared between all players if the prompt is static
+     */
+    public Component render(Player player) {
+        if (!isStatic)
+            return parse(player);
+
+        Component component = staticComponent;
+        if (component == null) {
+            component = parse(player);
+            staticComponent = component;
+        }
+        return component;
+    }
+
+    private Component parse(Player player) {
+        return ColorParser.of(message)
+            .legacy()
+            .mini(player)
+            .build();
+    }
+}
@@ -0,0 +1,69 @@
+package io.github.alathra.vpack.pack.resource;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the validators and SHA-1 hash of every pack URL that has been downloaded, so later checks of the same URL
+ * can be made with a conditional request instead of a full download.
+ */
+public final class RevalidationCache {
+    private static final Map<String, Entry> ENTRIES = new ConcurrentHashMap<>();
+    private static final AtomicLong BYTES_SAVED = new AtomicLong();
+
+    /**
+     * Gets the cached entry for a URL.
+     *
+     * @param url the pack url
+     * @return the entry, or null if the URL has not been downloaded yet
+     */
+    public static @Nullable Entry get(URL url) {
+        return ENTRIES.get(url.toString());
+    }
+
+    /**
+     * Stores the validators and hash of a freshly downloaded pack.
+     *
+     * @param url        the pack url
+     * @param validators the validators returned by the server
+     * @param sha1       the SHA-1 hash of the downloaded pack
+     */
+    public static void put(URL url, PackValidators validators, byte[] sha1) {
+        ENTRIES.put(url.toString(), new Entry(validators, sha1.clone()));
+    }
+
+    /**
+     * Forgets the cached entry for a URL, forcing the next check to download the pack.
+     *
+     * @param url the pack url
+     */
+    public static void invalidate(URL url) {
+        ENTRIES.remove(url.toString());
+    }
+
+    /**
+     * Records the bytes that did not have to be downloaded because of a successful revalidation.
+     *
+     * @param bytes the size of the pack that was not downloaded
+     * @return the total amount of bytes saved since startup
+     */
+    public static long recordSaved(long bytes) {
+        return BYTES_SAVED.addAndGet(Math.max(bytes, 0));
+    }
+
+    /**
+     * Gets the total amount of bytes saved by revalidation since startup.
+     *
+     * @return the bytes saved
+     */
+    public static long getBytesSaved() {
+        return BYTES_SAVED.get();
+    }
+
+    public record Entry(PackValidators validators, byte[] sha1) {
+    }
+}
@@ -0,0 +1,192 @@
+package io.github.alathra.vpack.pack.resource;
+
+import com.velocitypowered.api.event.player.PlayerResourcePackStatusEvent;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import io.github.alathra.vpack.VPack;
+import io.github.alathra.vpack.config.Settings;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends the pack to the online players in paced waves instead of all at once, so their clients do not all start
+ * downloading from the pack URL in the same second.
+ * A wave is sent every {@code distribution.batch-interval} milliseconds, and waves pause while
+ * {@code distribution.max-in-flight} players have not reported a final resource pack status yet.
+ */
+public final class Rollout implements Runnable {
+    private final ProxyServer proxy;
+    private final PackInfo.Distribute distribute;
+    private final long version;
+    private final int total;
+    private final long startedAt = System.nanoTime();
+
+    private final Queue<UUID> pending = new ConcurrentLinkedQueue<>();
+    private final Map<UUID, Long> inFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger sent = new AtomicInteger();
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger declined = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    private final int batchSize;
+    private final int maxInFlight;
+    private final long inFlightTimeoutNanos;
+
+    private volatile @Nullable ScheduledTask task;
+    private volatile boolean done = false;
+
+    Rollout(ProxyServer proxy, PackInfo.Distribute distribute, long version) {
+        this.proxy = proxy;
+        this.distribute = distribute;
+        this.version = version;
+        this.batchSize = Math.max(Settings.getDistributionBatchSize(), 1);
+        this.maxInFlight = Math.max(Settings.getDistributionMaxInFlight(), 1);
+        this.inFlightTimeoutNanos = TimeUnit.SECONDS.toNanos(Math.max(Settings.getDistributionInFlightTimeout(), 1));
+
+        for (Player player : proxy.getAllPlayers())
+            pending.add(player.getUniqueId());
+
+        this.total = pending.size();
+    }
+
+    void start() {
+        VPack.getInstance().getLogger().info("Rolling out resource pack to {} players in waves of {}...", total, batchSize);
+        final ScheduledTask scheduled = proxy.getScheduler()
+            .buildTask(VPack.getInstance(), this)
+            .repeat(Math.max(Settings.getDistributionBatchInterval(), 50), TimeUnit.MILLISECONDS)
+            .schedule();
+        this.task = scheduled;
+        if (done)
+            scheduled.cancel(); // The first wave may finish, or the rollout be cancelled, before the task was assigned
+    }
+
+    /**
+     * Stops sending further waves. Players that were already sent the pack are not affected.
+     */
+    public void cancel() {
+        done = true;
+        final ScheduledTask scheduled = task;
+        if (scheduled != null)
+            scheduled.cancel();
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Sends the next wave of players.
+     */
+    @Override
+    public void run() {
+        if (done)
+            return;
+
+        final long now = System.nanoTime();
+        inFlight.values().removeIf(sentAt -> now - sentAt > inFlightTimeoutNanos); // Clients that never answered
+
+        int budget = Math.min(batchSize, maxInFlight - inFlight.size());
+        while (budget > 0) {
+            final UUID uuid = pending.poll();
+            if (uuid == null)
+                break;
+
+            final Player player = proxy.getPlayer(uuid).orElse(null);
+            if (player == null)
+                continue; // Disconnected while waiting, they get the pack when they join again
+
+            inFlight.put(uuid, System.nanoTime());
+            if (!distribute.sendToPlayer(player)) {
+                inFlight.remove(uuid); // Already has the current packs
+                continue;
+            }
+
+            sent.incrementAndGet();
+            budget--;
+        }
+
+        if (pending.isEmpty() && inFlight.isEmpty()) {
+            cancel();
+            VPack.getInstance().getLogger().info("Finished resource pack rollout: {}", getProgress());
+        }
+    }
+
+    /**
+     * Records the resource pack status reported by a player.
+     *
+     * @param uuid   the player
+     * @param status the reported status
+     */
+    public void onStatus(UUID uuid, PlayerResourcePackStatusEvent.Status status) {
+        if (status.isIntermediate() || inFlight.remove(uuid) == null)
+            return;
+
+        switch (status) {
+            case SUCCESSFUL -> succeeded.incrementAndGet();
+            case DECLINED -> declined.incrementAndGet();
+            default -> failed.incrementAndGet();
+        }
+    }
+
+    /**
+     * Stops waiting on a player that left the proxy.
+     *
+     * @param uuid the player
+     */
+    public void onDisconnect(UUID uuid) {
+        inFlight.remove(uuid);
+        pending.remove(uuid);
+    }
+
+    /**
+     * Gets a snapshot of the progress of this rollout.
+     *
+     * @return the progress
+     */
+    public Progress getProgress() {
+        return new Progress(
+            version,
+            total,
+            sent.get(),
+            succeeded.get(),
+            declined.get(),
+            failed.get(),
+            inFlight.size(),
+            pending.size(),
+            Duration.ofNanos(System.nanoTime() - startedAt),
+            done
+        );
+    }
+
+    /**
+     * The progress of a rollout.
+     *
+     * @param version   the pack version being rolled out
+     * @param total     the amount of players online when the rollout started
+     * @param sent      the amount of players the pack was sent to
+     * @param succeeded the amount of players that loaded the pack
+     * @param declined  the amount of players that declined the pack
+     * @param failed    the amount of players whose download or reload failed
+     * @param inFlight  the amount of players currently downloading the pack
+     * @param pending   the amount of players still waiting for their wave
+     * @param elapsed   the time since the rollout started
+     * @param done      whether the rollout has finished or was cancelled
+     */
+    public record Progress(long version, int total, int sent, int succeeded, int declined, int failed, int inFlight,
+                           int pending, Duration elapsed, boolean done) {
+        @Override
+        public String toString() {
+            return "%d/%d sent, %d loaded, %d declined, %d failed, %d downloading, %d waiting (%ds)"
+                .formatted(sent, total, succeeded, declined, failed, inFlight, pending, elapsed.toSeconds());
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package io.github.alathra.vpack.pack.server;
+
+import io.github.alathra.vpack.VPack;
+import io.github.alathra.vpack.config.Settings;
+import io.github.alathra.vpack.pack.optimize.PackOptimizer;
+import io.github.alathra.vpack.pack.store.PackStore;
+import io.github.alathra.vpack.utils.HexUtil;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small HTTP/1.1 server that serves locally cached copies of the resource pack directly from the proxy.
+ * Packs are served from the {@link PackStore}, optimized copies are kept in the {@code packs} folder, all named by
+ * their SHA-1 hash, and written to clients with
+ * {@link java.nio.channels.FileChannel#transferTo}, so pack bytes never have to be copied through the Java heap.
+ */
+public final class PackServer {
+    private static final String BUSY_RESPONSE = "HTTP/1.1 503 Service Unavailable\r\nRetry-After: 1\r\nContent-Length: 0\r\nConnection: close\r\n\r\n";
+
+    private final Logger logger;
+    private final PackStore store;
+    private final Path packDirectory;
+    private final Map<String, String> optimized = new ConcurrentHashMap<>(); // Hash of the optimized copy by hash of the original
+    private final Set<String> prepared = ConcurrentHashMap.newKeySet();
+
+    private volatile @Nullable ServerSocketChannel serverChannel;
+    private @Nullable ExecutorService executor;
+    private Semaphore connections = new Semaphore(0);
+    private String publicUrl = "";
+    private int keepAliveMillis;
+
+    public PackServer(VPack plugin, Logger logger, PackStore store) {
+        this.logger = logger;
+        this.store = store;
+        this.packDirectory = plugin.getDataDirectory().resolve("packs");
+    }
+
+    /**
+     * Starts the server if it is enabled in the config.
+     */
+    public void start() {
+        if (!Settings.getPackServerEnabled() || serverChannel != null)
+            return;
+
+        if (Settings.getPackServerPublicUrl().isBlank()) {
+            logger.error("Not starting the pack server, set \"pack-server.public-url\" to the address players download packs from");
+            return;
+        }
+
+        final String bind = Settings.getPackServerBind();
+        final int port = Settings.getPackServerPort();
+        this.publicUrl = Settings.getPackServerPublicUrl().replaceAll("/+$", "");
+        if (isLoopback(publicUrl))
+            logger.warn("The pack server public URL {} points at this machine, players on other machines can not download packs from it", publicUrl);
+
+        this.keepAliveMillis = (int) TimeUnit.SECONDS.toMillis(Math.max(Settings.getPackServerKeepAliveTimeout(), 1));
+        this.connections = new Semaphore(Math.max(Settings.getPackServerMaxConnections(), 1));
+
+        try {
+            Files.createDirectories(packDirectory);
+            final ServerSocketChannel channel = ServerSocketChannel.open();
+            channel.bind(new InetSocketAddress(bind, port), 128);
+            this.serverChannel = channel;
+        } catch (IOException e) {
+            logger.error("Failed to start pack server on {}:{}", bind, port, e);
+            return;
+        }
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            final Thread thread = new Thread(r, "VPack Pack Server #" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        final Thread acceptThread = new Thread(this::acceptLoop, "VPack Pack Server");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        logger.info("Pack server listening on {}:{}, serving packs at {}", bind, port, publicUrl);
+    }
+
+    /**
+     * Checks if a URL points at the loopback address, like the localhost address meant for testing.
+     */
+    private static boolean isLoopback(String url) {
+        try {
+            final String host = URI.create(url).getHost();
+            return host != null && InetAddress.getByName(host).isLoopbackAddress();
+        } catch (IllegalArgumentException | UnknownHostException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Stops the server and closes all open connections.
+     */
+    public void stop() {
+        final ServerSocketChannel channel = serverChannel;
+        if (channel == null)
+            return;
+
+        serverChannel = null;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+
+        if (executor != null)
+            executor.shutdownNow();
+    }
+
+    public boolean isRunning() {
+        return serverChannel != null;
+    }
+
+    /**
+     * Resolves a requested file name to a cached pack, only allowing files named by a SHA-1 hash.
+     *
+     * @param name the requested file name
+     * @return the pack file, or null if the name is not a pack or the pack is not cached
+     */
+    @Nullable Path resolvePack(String name) {
+        if (!name.matches("[0-9a-f]{40}\\.zip"))
+            return null;
+
+        final Path file = getPackFile(HexUtil.toByteArray(name.substring(0, 40)));
+        return Files.isRegularFile(file) ? file : null;
+    }
+
+    /**
+     * Gets the file of a pack, either an original pack in the store or an optimized copy.
+     */
+    private Path getPackFile(byte[] sha1) {
+        final Path stored = store.getFile(sha1);
+        return Files.isRegularFile(stored) ? stored : packDirectory.resolve(HexUtil.toString(sha1) + ".zip");
+    }
+
+    /**
+     * Makes sure a local copy of the pack exists so the server can serve it.
+     * If pack optimization is enabled, an optimized copy is created as well and served instead of the original.
+     *
+     * @param url  the url to download the pack from if it is not cached yet
+     * @param sha1 the SHA-1 hash of the pack
+     * @return true if the pack can be served since this call, false if it already could or could not be downloaded
+     */
+    public boolean prepare(URL url, byte[] sha1) {
+        if (!Settings.getPackServerEnabled())
+            return false;
+
+        final Path file;
+        try {
+            final boolean stored = store.contains(sha1);
+            file = store.fetch(url, sha1);
+            if (!stored)
+                logger.info("Cached resource pack {} for the pack server", file.getFileName());
+        } catch (IOException e) {
+            logger.warn("Failed to cache resource pack from {}, players will download it from the pack URL instead", url, e);
+            return false;
+        }
+
+        boolean changed = prepared.add(HexUtil.toString(sha1));
+        if (Settings.getPackServerOptimize() && getOptimizedSha1(sha1) == null)
+            changed |= optimize(file, sha1);
+
+        pruneOptimized();
+        return changed;
+    }
+
+    /**
+     * Deletes the optimized copies of packs that were pruned from the store.
+     */
+    private void pruneOptimized() {
+        if (!Files.isDirectory(packDirectory))
+            return;
+
+        try (DirectoryStream<Path> indexes = Files.newDirectoryStream(packDirectory, "*.optimized")) {
+            for (Path index : indexes) {
+                final String name = index.getFileName().toString();
+                final String original = name.substring(0, name.length() - ".optimized".length());
+                if (!original.matches("[0-9a-f]{40}") || store.contains(HexUtil.toByteArray(original)))
+                    continue;
+
+                final String copy = optimized.remove(original);
+                Files.deleteIfExists(packDirectory.resolve((copy != null ? copy : Files.readString(index).trim()) + ".zip"));
+                Files.deleteIfExists(index);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to delete old optimized resource packs: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the optimized copy of a cached pack, named by its own hash.
+     * The hash of the optimized copy is stored next to the original, so every pack is only optimized once.
+     *
+     * @return true if the optimized copy was created
+     */
+    private boolean optimize(Path file, byte[] sha1) {
+        try {
+            Files.createDirectories(packDirectory);
+        } catch (IOException e) {
+            logger.warn("Failed to create pack directory {}", packDirectory, e);
+            return false;
+        }
+
+        final Path temp = packDirectory.resolve(HexUtil.toString(sha1) + ".optimizing");
+        try {
+            final PackOptimizer.Result result = new PackOptimizer(Settings.getPackServerOptimizePng()).optimize(file, temp);
+            if (result.size() >= result.originalSize()) {
+                logger.info("Resource pack {} is already optimal, serving it as it is", file.getFileName());
+                Files.writeString(getOptimizedIndex(sha1), HexUtil.toString(sha1));
+                return false;
+            }
+
+            Files.move(temp, getPackFile(result.sha1()), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.writeString(getOptimizedIndex(sha1), HexUtil.toString(result.sha1()));
+            logger.info(
+                "Optimized resource pack {} in {} ms: {} -> {} bytes ({}% smaller, {} files removed)",
+                file.getFileName(), TimeUnit.NANOSECONDS.toMillis(result.elapsedNanos()), result.originalSize(), result.size(),
+                String.format(Locale.ROOT, "%.1f", result.savedPercent()), result.removed()
+            );
+            return true;
+        } catch (IOException e) {
+            logger.warn("Failed to optimize resource pack {}, serving it as it is", file.getFileName(), e);
+            return false;
+        } finally {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private Path getOptimizedIndex(byte[] sha1) {
+        return packDirectory.resolve(HexUtil.toString(sha1) + ".optimized");
+    }
+
+    /**
+     * Gets the hash of the optimized copy of a pack.
+     *
+     * @param sha1 the SHA-1 hash of the original pack
+     * @return the hash of the optimized copy, the original hash if it could not be made smaller, or null if it was not optimized yet
+     */
+    private byte @Nullable [] getOptimizedSha1(byte[] sha1) {
+        final String key = HexUtil.toString(sha1);
+        final String cached = optimized.get(key);
+        if (cached != null)
+            return HexUtil.toByteArray(cached);
+
+        try {
+            final String hex = Files.readString(getOptimizedIndex(sha1)).trim();
+            final byte[] optimizedSha1 = HexUtil.toByteArray(hex);
+            if (optimizedSha1.length != 20 || !Files.isRegularFile(getPackFile(optimizedSha1)))
+                return null;
+
+            optimized.put(key, hex);
+            return optimizedSha1;
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the pack players can download through this server instead of from the pack URL.
+     * This is the optimized copy of the pack if there is one, which has a different hash than the original.
+     *
+     * @param sha1 the SHA-1 hash of the pack
+     * @return the served pack, or null if the server is not running or the pack is not cached
+     */
+    public @Nullable ServedPack getServed(byte[] sha1) {
+        if (!isRunning())
+            return null;
+
+        byte[] servedSha1 = sha1;
+        if (Settings.getPackServerOptimize()) {
+            final byte[] optimizedSha1 = getOptimizedSha1(sha1);
+            if (optimizedSha1 != null)
+                servedSha1 = optimizedSha1;
+        }
+
+        final Path file = getPackFile(servedSha1);
+        if (!Files.isRegularFile(file))
+            return null;
+
+        return new ServedPack(URI.create(publicUrl + "/" + file.getFileName()), servedSha1);
+    }
+
+    private void acceptLoop() {
+        final ServerSocketChannel channel = serverChannel;
+        final ExecutorService pool = executor;
+        if (channel == null || pool == null)
+            return;
+
+        while (channel.isOpen()) {
+            final SocketChannel client;
+            try {
+                client = channel.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                logger.warn("Pack server failed to accept connection: {}", e.getMessage());
+                continue;
+            }
+
+            if (!connections.tryAcquire()) {
+                reject(client);
+                continue;
+            }
+
+            try {
+                pool.execute(() -> {
+                    try {
+                        new PackServerConnection(client, this::resolvePack, keepAliveMillis, logger).run();
+                    } finally {
+                        connections.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                connections.release();
+                reject(client);
+            }
+        }
+    }
+
+    private void reject(SocketChannel client) {
+        try (client) {
+            client.write(ByteBuffer.wrap(BUSY_RESPONSE.getBytes(StandardCharsets.US_ASCII)));
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * A pack as served by the pack server.
+     *
+     * @param uri  the URI players download the pack from
+     * @param sha1 the SHA-1 hash of the served file, which differs from the original pack if it was optimized
+     */
+    public record ServedPack(URI uri, byte[] sha1) {
+    }
+}
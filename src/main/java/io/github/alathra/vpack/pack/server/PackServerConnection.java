@@ -0,0 +1,357 @@
+package io.github.alathra.vpack.pack.server;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Handles the requests of a single keep-alive connection to the {@link PackServer}.
+ */
+final class PackServerConnection implements Runnable {
+    private static final int MAX_LINE_LENGTH = 8192;
+    private static final int MAX_HEADERS = 64;
+
+    private final SocketChannel channel;
+    private final Function<String, @Nullable Path> packs;
+    private final int keepAliveMillis;
+    private final Logger logger;
+
+    private @Nullable Selector selector; // Waits for the client to read while a response is written, opened on first use
+
+    /**
+     * @param channel         the connection
+     * @param packs           resolves a requested file name to the pack file, or null if there is no such pack
+     * @param keepAliveMillis how long an idle connection, or a client that stopped reading, is waited on
+     * @param logger          the logger
+     */
+    PackServerConnection(SocketChannel channel, Function<String, @Nullable Path> packs, int keepAliveMillis, Logger logger) {
+        this.channel = channel;
+        this.packs = packs;
+        this.keepAliveMillis = keepAliveMillis;
+        this.logger = logger;
+    }
+
+    @Override
+    public void run() {
+        try (channel) {
+            final Socket socket = channel.socket();
+            socket.setSoTimeout(keepAliveMillis);
+            socket.setTcpNoDelay(true);
+
+            final InputStream in = new BufferedInputStream(socket.getInputStream());
+            boolean keepAlive = true;
+            while (keepAlive) {
+                final Request request = Request.read(in);
+                if (request == null)
+                    return;
+
+                channel.configureBlocking(false); // Writes must not block forever on a client that stopped reading
+                try {
+                    keepAlive = handle(request);
+                } finally {
+                    endWrite();
+                }
+            }
+        } catch (SocketTimeoutException | ClosedChannelException ignored) {
+            // Idle keep-alive connection timed out or the server is shutting down
+        } catch (IOException e) {
+            logger.debug("Pack server connection closed: {}", e.getMessage());
+        } finally {
+            closeSelector();
+        }
+    }
+
+    /**
+     * Switches the connection back to blocking mode once a response is written, so the next request can be read
+     * with the read timeout of the socket.
+     */
+    private void endWrite() throws IOException {
+        if (!channel.isOpen())
+            return;
+
+        if (selector != null) {
+            final SelectionKey key = channel.keyFor(selector);
+            if (key != null) {
+                key.cancel();
+                selector.selectNow(); // Deregisters the channel, a registered channel can not block
+            }
+        }
+        channel.configureBlocking(true);
+    }
+
+    private void closeSelector() {
+        if (selector == null)
+            return;
+
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Handles a single request.
+     *
+     * @param request the request
+     * @return whether the connection should be kept open for further requests
+     * @throws IOException if writing the response failed
+     */
+    private boolean handle(Request request) throws IOException {
+        final boolean keepAlive = request.isKeepAlive();
+
+        if (request == Request.MALFORMED) {
+            writeHead(400, "Bad Request", 0, false, null);
+            return false;
+        }
+
+        final boolean head = request.method().equals("HEAD");
+        if (!head && !request.method().equals("GET")) {
+            writeHead(405, "Method Not Allowed", 0, keepAlive, "Allow: GET, HEAD\r\n");
+            return keepAlive;
+        }
+
+        final String name = request.path().replaceFirst("^/+", "").replaceFirst("[?#].*$", "");
+        final Path file = packs.apply(name);
+        if (file == null) {
+            writeHead(404, "Not Found", 0, keepAlive, null);
+            return keepAlive;
+        }
+
+        try (FileChannel pack = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = pack.size();
+            final String etag = "\"" + name.substring(0, name.length() - ".zip".length()) + "\"";
+            final String fileHeaders = "Content-Type: application/zip\r\n" +
+                "Accept-Ranges: bytes\r\n" +
+                "ETag: " + etag + "\r\n" +
+                "Cache-Control: public, max-age=31536000, immutable\r\n";
+
+            if (etag.equals(request.header("if-none-match"))) {
+                writeHead(304, "Not Modified", 0, keepAlive, fileHeaders);
+                return keepAlive;
+            }
+
+            final ByteRange range = ByteRange.parse(request.header("range"), size);
+            if (range == ByteRange.UNSATISFIABLE) {
+                writeHead(416, "Range Not Satisfiable", 0, keepAlive, "Content-Range: bytes */" + size + "\r\n");
+                return keepAlive;
+            }
+
+            final long start = range == null ? 0 : range.start();
+            final long length = range == null ? size : range.length();
+            if (range == null) {
+                writeHead(200, "OK", length, keepAlive, fileHeaders);
+            } else {
+                writeHead(206, "Partial Content", length, keepAlive, fileHeaders +
+                    "Content-Range: bytes " + range.start() + "-" + range.end() + "/" + size + "\r\n");
+            }
+
+            if (!head)
+                transfer(pack, start, length);
+        }
+        return keepAlive;
+    }
+
+    private void transfer(FileChannel pack, long position, long count) throws IOException {
+        long lastProgress = System.nanoTime();
+        while (count > 0) {
+            final long sent = pack.transferTo(position, count, channel);
+            if (sent <= 0) {
+                if (position >= pack.size())
+                    throw new IOException("Pack file was truncated while being sent");
+
+                awaitProgress(lastProgress);
+                continue;
+            }
+
+            lastProgress = System.nanoTime();
+            position += sent;
+            count -= sent;
+        }
+    }
+
+    /**
+     * Waits until the client has read enough for the connection to accept more data, and gives up on a client that
+     * stopped reading.
+     *
+     * @param lastProgress the {@link System#nanoTime()} of the last write that made progress
+     * @throws IOException if no write made progress for the keep-alive timeout, or the thread was interrupted
+     */
+    private void awaitProgress(long lastProgress) throws IOException {
+        if (selector == null)
+            selector = Selector.open();
+        if (channel.keyFor(selector) == null)
+            channel.register(selector, SelectionKey.OP_WRITE);
+
+        final long deadline = lastProgress + TimeUnit.MILLISECONDS.toNanos(keepAliveMillis);
+        while (true) {
+            final long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0)
+                throw new IOException("Client stopped reading for " + keepAliveMillis + " ms");
+
+            if (selector.select(remainingMillis) > 0) {
+                selector.selectedKeys().clear();
+                return;
+            }
+
+            if (Thread.interrupted())
+                throw new InterruptedIOException("Interrupted while waiting for the client to read");
+        }
+    }
+
+    private void writeHead(int status, String reason, long contentLength, boolean keepAlive, @Nullable String extraHeaders) throws IOException {
+        final String head = "HTTP/1.1 " + status + " " + reason + "\r\n" +
+            "Content-Length: " + contentLength + "\r\n" +
+            "Connection: " + (keepAlive ? "keep-alive" : "close") + "\r\n" +
+            (extraHeaders == null ? "" : extraHeaders) +
+            "\r\n";
+
+        final ByteBuffer buffer = ByteBuffer.wrap(head.getBytes(StandardCharsets.US_ASCII));
+        long lastProgress = System.nanoTime();
+        while (buffer.hasRemaining()) {
+            if (channel.write(buffer) > 0)
+                lastProgress = System.nanoTime();
+            else
+                awaitProgress(lastProgress);
+        }
+    }
+
+    /**
+     * A parsed HTTP request head.
+     */
+    private record Request(String method, String path, String version, Map<String, String> headers) {
+        static final Request MALFORMED = new Request("", "", "", Map.of());
+
+        /**
+         * Reads the next request from the connection.
+         *
+         * @param in the connection input
+         * @return the request, {@link #MALFORMED} if it could not be parsed, or null if the connection was closed
+         * @throws IOException if reading failed
+         */
+        static @Nullable Request read(InputStream in) throws IOException {
+            String requestLine = readLine(in);
+            while (requestLine != null && requestLine.isEmpty())
+                requestLine = readLine(in);
+
+            if (requestLine == null)
+                return null;
+
+            final String[] parts = requestLine.split(" ");
+            if (parts.length != 3)
+                return MALFORMED;
+
+            final Map<String, String> headers = new HashMap<>();
+            String line;
+            while ((line = readLine(in)) != null && !line.isEmpty()) {
+                final int colon = line.indexOf(':');
+                if (colon <= 0 || headers.size() >= MAX_HEADERS)
+                    return MALFORMED;
+
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+            }
+
+            return new Request(parts[0], parts[1], parts[2], headers);
+        }
+
+        private static @Nullable String readLine(InputStream in) throws IOException {
+            final ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\n')
+                    return line.toString(StandardCharsets.US_ASCII).stripTrailing();
+
+                if (line.size() >= MAX_LINE_LENGTH)
+                    throw new IOException("Request line too long");
+
+                line.write(b);
+            }
+            return line.size() == 0 ? null : line.toString(StandardCharsets.US_ASCII);
+        }
+
+        @Nullable String header(String name) {
+            return headers.get(name);
+        }
+
+        boolean isKeepAlive() {
+            final String connection = header("connection");
+            if (version.equals("HTTP/1.1"))
+                return connection == null || !connection.equalsIgnoreCase("close");
+
+            return connection != null && connection.equalsIgnoreCase("keep-alive");
+        }
+    }
+
+    /**
+     * A single satisfiable byte range of a file.
+     */
+    private record ByteRange(long start, long end) {
+        static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+        /**
+         * Parses a {@code Range} header. Only single ranges are supported, anything else is served as the full file.
+         *
+         * @param header the header value
+         * @param size   the size of the file
+         * @return the range, {@link #UNSATISFIABLE} if it lies outside the file, or null to serve the full file
+         */
+        static @Nullable ByteRange parse(@Nullable String header, long size) {
+            if (header == null || !header.startsWith("bytes=") || header.indexOf(',') != -1)
+                return null;
+
+            final String spec = header.substring("bytes=".length()).trim();
+            final int dash = spec.indexOf('-');
+            if (dash == -1)
+                return null;
+
+            try {
+                final String first = spec.substring(0, dash).trim();
+                final String last = spec.substring(dash + 1).trim();
+
+                if (first.isEmpty()) { // Suffix range, the last N bytes
+                    if (last.isEmpty())
+                        return null;
+
+                    final long suffix = Long.parseLong(last);
+                    if (suffix <= 0 || size == 0)
+                        return UNSATISFIABLE;
+
+                    return new ByteRange(Math.max(size - suffix, 0), size - 1);
+                }
+
+                final long start = Long.parseLong(first);
+                final long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+                if (start >= size || start > end)
+                    return UNSATISFIABLE;
+
+                return new ByteRange(start, end);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        long length() {
+            return end - start + 1;
+        }
+    }
+}
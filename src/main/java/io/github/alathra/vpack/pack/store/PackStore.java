@@ -0,0 +1,497 @@
+package io.github.alathra.vpack.pack.store;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.alathra.vpack.VPack;
+import io.github.alathra.vpack.config.Settings;
+import io.github.alathra.vpack.metrics.PackMetrics;
+import io.github.alathra.vpack.pack.http.PackHttpClient;
+import io.github.alathra.vpack.pack.resource.PackValidators;
+import io.github.alathra.vpack.pack.resource.RevalidationCache;
+import io.github.alathra.vpack.utils.HexUtil;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Keeps downloaded packs on disk in the {@code store} folder, named by their SHA-1 hash.
+ * <ul>
+ *     <li>Packs are only downloaded once, identical packs from different URLs or releases share one file</li>
+ *     <li>An interrupted download is resumed with a range request instead of starting over</li>
+ *     <li>Any stored version can be served again by the pack server without network access, see {@code /vpack rollback}</li>
+ *     <li>The least recently used packs are deleted once the store exceeds its size or pack budget</li>
+ * </ul>
+ */
+public final class PackStore {
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+        .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    private static final String EXTENSION = ".zip";
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    private final Logger logger;
+    private final PackHttpClient http;
+    private final Path directory;
+    private final Path partialDirectory;
+    private final Path indexFile;
+    private final Supplier<Budget> budget;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>(); // By hex hash
+    private final Map<String, CompletableFuture<byte[]>> downloads = new ConcurrentHashMap<>(); // By hex hash of the url
+    private volatile Supplier<Set<String>> inUse = Set::of;
+
+    public PackStore(VPack plugin, Logger logger, PackHttpClient http) {
+        this(plugin.getDataDirectory().resolve("store"), logger, http, () -> new Budget(
+            Math.max(Settings.getStoreMaxSize(), 1) * 1024L * 1024L,
+            Math.max(Settings.getStoreMaxPacks(), 1)
+        ));
+    }
+
+    PackStore(Path directory, Logger logger, PackHttpClient http, Supplier<Budget> budget) {
+        this.logger = logger;
+        this.http = http;
+        this.budget = budget;
+        this.directory = directory;
+        this.partialDirectory = directory.resolve("partial");
+        this.indexFile = directory.resolve("index.json");
+        load();
+    }
+
+    /**
+     * Loads the index, dropping entries whose pack file was deleted.
+     */
+    private void load() {
+        try {
+            final List<Entry> loaded = MAPPER.readValue(Files.readAllBytes(indexFile), new TypeReference<>() {
+            });
+            for (Entry entry : loaded) {
+                if (Files.isRegularFile(getFile(entry.sha1())))
+                    entries.put(entry.sha1(), entry);
+            }
+        } catch (NoSuchFileException ignored) {
+        } catch (IOException e) {
+            logger.warn("Failed to read the pack store index, stored packs will be downloaded again: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void save() {
+        try {
+            Files.createDirectories(directory);
+            final Path temp = Files.createTempFile(directory, "index", ".json.tmp");
+            try {
+                MAPPER.writeValue(temp.toFile(), List.copyOf(entries.values()));
+                Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to save the pack store index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Sets where to find the packs that are currently published, so they are never pruned while players may be
+     * downloading them.
+     *
+     * @param inUse supplies the hex hashes of the published packs
+     */
+    public void setInUse(Supplier<Set<String>> inUse) {
+        this.inUse = inUse;
+    }
+
+    /**
+     * Gets the file a pack is stored in. The file may not exist.
+     *
+     * @param sha1 the SHA-1 hash of the pack
+     * @return the pack file
+     */
+    public Path getFile(byte[] sha1) {
+        return getFile(HexUtil.toString(sha1));
+    }
+
+    private Path getFile(String sha1) {
+        return directory.resolve(sha1 + EXTENSION);
+    }
+
+    /**
+     * Checks if a pack is stored.
+     *
+     * @param sha1 the SHA-1 hash of the pack
+     * @return true if the pack is stored
+     */
+    public boolean contains(byte[] sha1) {
+        final String key = HexUtil.toString(sha1);
+        return entries.containsKey(key) && Files.isRegularFile(getFile(key));
+    }
+
+    /**
+     * Downloads a pack into the store, blocking until it is complete.
+     * If the URL was downloaded before and its pack is still stored, the server is only asked whether it changed.
+     * An interrupted download of the same URL is resumed where it stopped.
+     * If the URL is already being downloaded, like by the update task and a reload at the same time, this waits for
+     * that download instead of writing to the same partial file.
+     *
+     * @param url the url to download from
+     * @return the SHA-1 hash of the pack
+     * @throws IOException if the download failed, timed out or was interrupted, the partial file is kept to resume from
+     */
+    public byte[] download(URL url) throws IOException {
+        final String key = HexUtil.toString(sha1Digest().digest(url.toString().getBytes(StandardCharsets.UTF_8)));
+        final CompletableFuture<byte[]> download = new CompletableFuture<>();
+        final CompletableFuture<byte[]> running = downloads.putIfAbsent(key, download);
+        if (running != null)
+            return await(running, url).clone();
+
+        try {
+            final byte[] sha1 = download(url, key);
+            download.complete(sha1);
+            return sha1;
+        } catch (IOException | RuntimeException e) {
+            download.completeExceptionally(e);
+            throw e;
+        } finally {
+            downloads.remove(key, download);
+        }
+    }
+
+    /**
+     * Waits for a download of the same URL that was started by another thread.
+     */
+    private static byte[] await(CompletableFuture<byte[]> running, URL url) throws IOException {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Download was cancelled");
+        } catch (ExecutionException e) {
+            throw new IOException("Concurrent download of " + url + " failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Downloads a pack into the store, the caller must be the only one downloading the URL.
+     *
+     * @param key the hex SHA-1 hash of the url, names the partial file
+     */
+    private byte[] download(URL url, String key) throws IOException {
+        final MessageDigest digest = sha1Digest();
+        final Path partial = partialDirectory.resolve(key + ".part");
+        final Path resumeFile = partialDirectory.resolve(key + ".resume");
+        Files.createDirectories(partialDirectory);
+
+        final PackHttpClient.Response response;
+        final String ifRange = readResumeValidator(resumeFile, url);
+        final long offset = Files.isRegularFile(partial) ? Files.size(partial) : 0;
+        if (ifRange != null && offset > 0) {
+            hashFile(partial, digest);
+            final PackHttpClient.Response resumed = http.resume(url, digest, partial, offset, ifRange);
+            if (resumed.statusCode() == 416 && getCompleteLength(resumed.headers()) != offset) {
+                // The server does not confirm the partial file is complete, so it can not be trusted
+                logger.info("Partial download of {} does not match the file on the server, downloading it again", url);
+                digest.reset();
+                writeResumeValidator(resumeFile, url, http.probe(url).headers());
+                response = http.download(url, digest, null, partial);
+            } else {
+                response = resumed;
+                if (response.statusCode() == 206)
+                    logger.info("Resumed download of {} at {} bytes", url, offset);
+                else if (response.statusCode() == 416)
+                    logger.info("Download of {} was already complete at {} bytes", url, offset);
+            }
+        } else {
+            final RevalidationCache.Entry cached = RevalidationCache.get(url);
+            if (cached != null && cached.validators().isConditional() && contains(cached.sha1())) {
+                response = http.download(url, digest, cached.validators(), partial);
+                if (response.isNotModified()) {
+                    PackMetrics.recordDownload(url, response);
+                    final long saved = cached.validators().contentLength();
+                    logger.info(
+                        "Resource pack at {} not modified, reused stored pack (saved {} bytes, {} bytes total)",
+                        url, saved, RevalidationCache.recordSaved(saved)
+                    );
+                    Files.deleteIfExists(partial);
+                    touch(cached.sha1(), url);
+                    return cached.sha1().clone();
+                }
+            } else {
+                // Ask for the validators first, so the download can be resumed if it is interrupted
+                writeResumeValidator(resumeFile, url, http.probe(url).headers());
+                response = http.download(url, digest, null, partial);
+            }
+        }
+        PackMetrics.recordDownload(url, response);
+
+        final byte[] sha1 = digest.digest();
+        RevalidationCache.put(url, PackValidators.from(response.headers(), Files.size(partial)), sha1);
+        add(partial, url, sha1);
+        Files.deleteIfExists(resumeFile);
+        return sha1;
+    }
+
+    /**
+     * Makes sure a pack is stored, downloading it if it is not.
+     *
+     * @param url  the url to download the pack from if it is not stored
+     * @param sha1 the expected SHA-1 hash of the pack
+     * @return the pack file
+     * @throws IOException if the download failed or the downloaded pack did not match the hash
+     */
+    public Path fetch(URL url, byte[] sha1) throws IOException {
+        if (contains(sha1)) {
+            touch(sha1, url);
+            return getFile(sha1);
+        }
+
+        final byte[] downloaded = download(url);
+        if (!MessageDigest.isEqual(sha1, downloaded))
+            throw new IOException("Downloaded pack hash " + HexUtil.toString(downloaded) + " does not match expected hash " + HexUtil.toString(sha1));
+        return getFile(sha1);
+    }
+
+    /**
+     * Gets a temporary file to copy a pack into before it is {@linkplain #addVerified added} to the store.
+     *
+     * @param sha1 the SHA-1 hash of the pack
+     * @return the temporary file
+     * @throws IOException if the directory of the file could not be created
+     */
+    public Path getIncomingFile(byte[] sha1) throws IOException {
+        Files.createDirectories(partialDirectory);
+        return partialDirectory.resolve(HexUtil.toString(sha1) + ".incoming");
+    }
+
+    /**
+     * Moves a pack whose hash was already verified while it was copied, like from another proxy, into the store.
+     *
+     * @param file the pack file, moved into the store
+     * @param url  the url the pack is used from
+     * @param sha1 the verified SHA-1 hash of the pack
+     * @throws IOException if the pack could not be moved
+     */
+    public void addVerified(Path file, URL url, byte[] sha1) throws IOException {
+        add(file, url, sha1);
+    }
+
+    /**
+     * Moves a completely downloaded pack into the store, or discards it if an identical pack is already stored.
+     */
+    private void add(Path partial, URL url, byte[] sha1) throws IOException {
+        final String key = HexUtil.toString(sha1);
+        final Path file = getFile(key);
+        if (Files.isRegularFile(file)) {
+            Files.deleteIfExists(partial);
+            logger.debug("Resource pack {} from {} is already stored", key, url);
+        } else {
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        final long now = System.currentTimeMillis();
+        entries.compute(key, (k, existing) -> existing == null
+            ? new Entry(key, url.toString(), null, sizeOf(file), now, now)
+            : existing.used(url.toString(), now));
+        prune(Set.of(key));
+        save();
+    }
+
+    /**
+     * Marks a stored pack as used, so it is pruned last.
+     *
+     * @param sha1 the SHA-1 hash of the pack
+     * @param url  the url the pack is currently used from
+     */
+    public void touch(byte[] sha1, URL url) {
+        final String key = HexUtil.toString(sha1);
+        if (entries.computeIfPresent(key, (k, existing) -> existing.used(url.toString(), System.currentTimeMillis())) != null)
+            save();
+    }
+
+    /**
+     * Names a stored pack, for example after the GitHub release it came from, so it can be found for a rollback.
+     *
+     * @param sha1  the SHA-1 hash of the pack
+     * @param label the name
+     */
+    public void label(byte[] sha1, String label) {
+        final String key = HexUtil.toString(sha1);
+        if (entries.computeIfPresent(key, (k, existing) -> existing.withLabel(label)) != null)
+            save();
+    }
+
+    /**
+     * Gets all stored packs, the most recently used first.
+     *
+     * @return the stored packs
+     */
+    public List<Entry> list() {
+        final List<Entry> list = new ArrayList<>(entries.values());
+        list.sort(Comparator.comparingLong(Entry::lastUsed).reversed());
+        return list;
+    }
+
+    /**
+     * Finds a stored pack by its label or the start of its hash.
+     *
+     * @param query the label or hash prefix
+     * @return the pack, or null if no pack or more than one pack matches
+     */
+    public @Nullable Entry find(String query) {
+        final String lowerQuery = query.toLowerCase(Locale.ROOT);
+        for (Entry entry : list()) {
+            if (query.equals(entry.label()))
+                return entry;
+        }
+
+        final List<Entry> matches = list().stream()
+            .filter(entry -> entry.sha1().startsWith(lowerQuery))
+            .toList();
+        return matches.size() == 1 ? matches.get(0) : null;
+    }
+
+    /**
+     * Deletes the least recently used packs until the store fits its budget.
+     *
+     * @param keep the hex hashes of packs that must not be deleted, besides the published ones
+     */
+    public synchronized void prune(Set<String> keep) {
+        final Set<String> published = inUse.get();
+        final Budget limits = budget.get();
+
+        final List<Entry> byAge = new ArrayList<>(entries.values());
+        byAge.sort(Comparator.comparingLong(Entry::lastUsed)); // Least recently used first
+        long totalBytes = byAge.stream().mapToLong(Entry::size).sum();
+        int packs = byAge.size();
+        for (Entry entry : byAge) {
+            if (totalBytes <= limits.maxBytes() && packs <= limits.maxPacks())
+                break;
+            if (keep.contains(entry.sha1()) || published.contains(entry.sha1()))
+                continue;
+
+            try {
+                Files.deleteIfExists(getFile(entry.sha1()));
+            } catch (IOException e) {
+                logger.warn("Failed to delete stored resource pack {}: {}", entry.sha1(), e.getMessage());
+                continue;
+            }
+
+            entries.remove(entry.sha1());
+            totalBytes -= entry.size();
+            packs--;
+            logger.info("Deleted least recently used resource pack {} from the store", entry.sha1());
+        }
+    }
+
+    /**
+     * Gets the complete length of a file from the {@code Content-Range: bytes *}{@code /<length>} header of a 416 response.
+     *
+     * @return the length, or -1 if the server did not send it
+     */
+    private static long getCompleteLength(HttpHeaders headers) {
+        final String range = headers.firstValue("Content-Range").orElse("");
+        if (!range.startsWith("bytes */"))
+            return -1;
+
+        try {
+            return Long.parseLong(range.substring("bytes */".length()).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static @Nullable String readResumeValidator(Path resumeFile, URL url) throws IOException {
+        if (!Files.isRegularFile(resumeFile))
+            return null;
+
+        final List<String> lines = Files.readAllLines(resumeFile, StandardCharsets.UTF_8);
+        return lines.size() == 2 && lines.get(0).equals(url.toString()) ? lines.get(1) : null;
+    }
+
+    /**
+     * Remembers the validator an interrupted download can be resumed with. A weak ETag cannot be used for a range
+     * request, the Last-Modified date is used instead.
+     */
+    private static void writeResumeValidator(Path resumeFile, URL url, HttpHeaders headers) throws IOException {
+        final String etag = headers.firstValue("ETag").orElse(null);
+        final String lastModified = headers.firstValue("Last-Modified").orElse(null);
+        final String validator = etag != null && !etag.startsWith("W/") ? etag : lastModified;
+        if (validator == null) {
+            Files.deleteIfExists(resumeFile); // The server gives no way to check the file is unchanged, always start over
+            return;
+        }
+        Files.writeString(resumeFile, url + "\n" + validator, StandardCharsets.UTF_8);
+    }
+
+    private static void hashFile(Path file, MessageDigest digest) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            final byte[] buffer = new byte[HASH_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+                digest.update(buffer, 0, read);
+        }
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static MessageDigest sha1Digest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * A stored pack.
+     *
+     * @param sha1     the hex SHA-1 hash of the pack, also its file name
+     * @param url      the url the pack was last used from
+     * @param label    the name of the pack, like the tag of its GitHub release, or null if it has none
+     * @param size     the size of the pack in bytes
+     * @param storedAt the time the pack was stored, in epoch milliseconds
+     * @param lastUsed the time the pack was last used, in epoch milliseconds
+     */
+    public record Entry(String sha1, String url, @Nullable String label, long size, long storedAt, long lastUsed) {
+        private Entry used(String newUrl, long time) {
+            return new Entry(sha1, newUrl, label, size, storedAt, time);
+        }
+
+        private Entry withLabel(String newLabel) {
+            return new Entry(sha1, url, newLabel, size, storedAt, lastUsed);
+        }
+    }
+
+    /**
+     * The limits the store is pruned to.
+     *
+     * @param maxBytes the maximum total size of the stored packs in bytes
+     * @param maxPacks the maximum number of stored packs
+     */
+    record Budget(long maxBytes, int maxPacks) {
+    }
+}
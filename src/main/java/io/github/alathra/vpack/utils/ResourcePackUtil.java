@@ -1,78 +1,85 @@
 package io.github.alathra.vpack.utils;
 
 import io.github.alathra.vpack.config.Settings;
+import io.github.alathra.vpack.pack.PackExecutor;
 import io.github.alathra.vpack.pack.resource.PackInfo;
+import io.github.alathra.vpack.pack.resource.PackSnapshot;
+import io.github.alathra.vpack.pack.store.PackStore;
 import net.kyori.adventure.resource.ResourcePackInfo;
 import net.kyori.adventure.resource.ResourcePackRequest;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.net.URLConnection;
-import java.security.DigestInputStream;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
 public final class ResourcePackUtil {
     public static ResourcePackInfo createPackInfo(PackInfo packInfo) throws URISyntaxException, NoSuchElementException {
-        if (!packInfo.isConfigured())
-            return ResourcePackInfo.resourcePackInfo()
-                .build();
+        return createPackInfo(packInfo, packInfo.getSnapshot());
+    }
+
+    public static ResourcePackInfo createPackInfo(PackInfo packInfo, PackSnapshot snapshot) throws URISyntaxException, NoSuchElementException {
+        return createPackInfo(packInfo, PackInfo.DEFAULT_PACK, snapshot);
+    }
+
+    public static ResourcePackInfo createPackInfo(PackInfo packInfo, String name, PackSnapshot snapshot) throws URISyntaxException, NoSuchElementException {
+        if (!snapshot.isConfigured())
+            throw new NoSuchElementException("Pack " + name + " is not configured");
 
-        final URL url = packInfo.getUrl().orElseThrow();
-        final byte[] sha1 = packInfo.getSha1().orElseThrow();
+        final PackInfo.Download download = packInfo.getDownload(snapshot).orElseThrow(); // The served file may be an optimized copy with its own hash
 
         return ResourcePackInfo.resourcePackInfo()
-            .uri(url.toURI())
-            .hash(hex(sha1))
+            .id(packId(download.sha1()))
+            .uri(download.uri())
+            .hash(hex(download.sha1()))
             .build();
     }
 
-    public static ResourcePackRequest.Builder createPackRequest(ResourcePackInfo resourcePackInfo) {
+    /**
+     * Gets the id of a pack, derived from its content. The same pack always gets the same id, no matter where it is
+     * downloaded from or how often the proxy restarted, so clients that already have it loaded do not reload it.
+     *
+     * @param sha1 the SHA-1 hash of the pack
+     * @return the pack id
+     */
+    public static UUID packId(byte[] sha1) {
+        return UUID.nameUUIDFromBytes(sha1);
+    }
+
+    /**
+     * Creates a request that adds packs on top of the packs the player already has.
+     * Packs that should no longer be loaded are removed separately, so unchanged packs are not reloaded.
+     *
+     * @param packs the packs to add, from bottom to top
+     * @return the request builder
+     */
+    public static ResourcePackRequest.Builder createPackRequest(List<ResourcePackInfo> packs) {
         return ResourcePackRequest.resourcePackRequest()
-            .packs(resourcePackInfo)
-            .replace(true)
+            .packs(packs)
+            .replace(false)
             .required(Settings.getPackIsRequired());
     }
 
     public static String hex(byte[] bytes) {
-        final StringBuilder hexString = new StringBuilder(bytes.length * 2);
-        for (byte b : bytes) {
-            hexString.append(String.format("%02x", b)); // lowercase hex
-        }
-        return hexString.toString();
+        return HexUtil.toString(bytes); // lowercase hex
     }
 
     /**
-     * Get the SHA1 hash from a downloadable URL
+     * Get the SHA1 hash from a downloadable URL on the pack executor, keeping the pack in the store.
+     * A retry after a failed download resumes where the previous attempt stopped.
      *
-     * @param url the url to download from
-     * @return the sha1 as an optional wrapped in a completable future
+     * @param url      the url to download from
+     * @param store    the store to download into
+     * @param executor the executor to download on
+     * @return the sha1 as an optional wrapped in a completable future, empty if the download failed
+     * @see PackStore#download(URL)
      */
-    public static CompletableFuture<Optional<byte[]>> fetchSha1FromUrl(URL url) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                final MessageDigest digest = MessageDigest.getInstance("SHA-1");
-                final URLConnection con = url.openConnection();
-
-                try (
-                    final InputStream packStream = con.getInputStream();
-                    final DigestInputStream hashStream = new DigestInputStream(packStream, digest)
-                ) {
-                    byte[] buffer = new byte[8192];
-
-                    while (hashStream.read(buffer) != -1) {
-                    }
-
-                    return Optional.of(digest.digest());
-                }
-            } catch (NoSuchAlgorithmException | IOException e) {
-                return Optional.empty();
-            }
-        });
+    public static CompletableFuture<Optional<byte[]>> fetchSha1FromUrl(URL url, PackStore store, PackExecutor executor) {
+        return executor.supplyWithRetry("download resource pack from " + url, () -> store.download(url))
+            .thenApply(Optional::of)
+            .exceptionally(e -> Optional.empty());
     }
 }
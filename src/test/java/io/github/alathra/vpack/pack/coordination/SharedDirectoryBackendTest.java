@@ -0,0 +1,134 @@
+package io.github.alathra.vpack.pack.coordination;
+
+import io.github.alathra.vpack.pack.github.GithubReleaseState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Two proxies coordinating through the same temporary directory.
+ */
+class SharedDirectoryBackendTest {
+    @TempDir
+    Path temp;
+
+    private SharedDirectoryBackend first;
+    private SharedDirectoryBackend second;
+
+    @BeforeEach
+    void setUp() {
+        first = new SharedDirectoryBackend(temp.resolve("shared"));
+        second = new SharedDirectoryBackend(temp.resolve("shared"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        first.close();
+        second.close();
+    }
+
+    @Test
+    void onlyOneProxyLeads() throws IOException {
+        assertTrue(first.tryLead());
+        assertFalse(second.tryLead());
+        assertTrue(first.tryLead(), "The leader keeps leading");
+        assertFalse(second.tryLead());
+    }
+
+    @Test
+    void followerTakesOverWhenLeaderStops() throws IOException {
+        assertTrue(first.tryLead());
+        first.close();
+
+        assertTrue(second.tryLead());
+        assertFalse(first.tryLead());
+    }
+
+    @Test
+    void followerReadsPublishedPack() throws IOException {
+        assertNull(second.readLatest());
+
+        final PublishedPack pack = new PublishedPack(
+            "https://example.com/pack.zip",
+            "0123456789abcdef0123456789abcdef01234567",
+            new GithubReleaseState(1, "v1.0.0", 2, 3, 4),
+            "https://example.com/pack.mcpack",
+            "proxy-1",
+            1000,
+            6000
+        );
+        first.publish(pack);
+
+        assertEquals(pack, second.readLatest());
+    }
+
+    @Test
+    void followerReadsLatestOfSeveralPublishedPacks() throws IOException {
+        first.publish(new PublishedPack("https://example.com/1.zip", "1".repeat(40), null, null, "proxy-1", 1000, 1000));
+        first.publish(new PublishedPack("https://example.com/2.zip", "2".repeat(40), null, null, "proxy-1", 2000, 2000));
+
+        final PublishedPack latest = second.readLatest();
+        assertEquals("https://example.com/2.zip", latest.url());
+        assertNull(latest.release());
+    }
+
+    @Test
+    void followerCopiesSharedPack() throws IOException {
+        final byte[] bytes = {1, 2, 3, 4, 5};
+        final Path pack = Files.write(temp.resolve("pack.zip"), bytes);
+        first.sharePack("abc.zip", pack);
+
+        final Path copy = temp.resolve("copy.zip");
+        assertTrue(second.copySharedPack("abc.zip", copy, null));
+        assertArrayEquals(bytes, Files.readAllBytes(copy));
+    }
+
+    @Test
+    void copiedBytesAreHashed() throws IOException, NoSuchAlgorithmException {
+        final byte[] bytes = {1, 2, 3, 4, 5};
+        final Path pack = Files.write(temp.resolve("pack.zip"), bytes);
+        first.sharePack("abc.zip", pack);
+
+        final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        assertTrue(second.copySharedPack("abc.zip", temp.resolve("copy.zip"), digest));
+        assertArrayEquals(MessageDigest.getInstance("SHA-1").digest(bytes), digest.digest());
+    }
+
+    @Test
+    void followerCannotCopyUnsharedPack() throws IOException {
+        final Path copy = temp.resolve("copy.zip");
+        assertFalse(second.copySharedPack("missing.zip", copy, null));
+        assertFalse(Files.exists(copy));
+    }
+
+    @Test
+    void onlyRecentlySharedPacksAreKept() throws IOException {
+        final Path pack = Files.write(temp.resolve("pack.zip"), new byte[]{1});
+        for (int i = 0; i < 6; i++) {
+            first.sharePack(i + ".zip", pack);
+            Files.setLastModifiedTime(temp.resolve("shared/packs/" + i + ".zip"), FileTime.fromMillis(1000L * i)); // Ordered, whatever the file system's time resolution
+        }
+        first.sharePack("6.zip", pack); // Prunes the oldest
+
+        final Path copy = temp.resolve("copy.zip");
+        assertFalse(second.copySharedPack("0.zip", copy, null));
+        assertFalse(second.copySharedPack("1.zip", copy, null));
+        assertFalse(second.copySharedPack("2.zip", copy, null));
+        assertTrue(second.copySharedPack("3.zip", copy, null));
+        assertTrue(second.copySharedPack("6.zip", copy, null));
+    }
+}
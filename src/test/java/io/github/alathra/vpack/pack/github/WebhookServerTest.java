@@ -0,0 +1,166 @@
+package io.github.alathra.vpack.pack.github;
+
+import io.github.alathra.vpack.utils.HexUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.helpers.NOPLogger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Delivers webhooks to a receiver listening on a local port.
+ */
+class WebhookServerTest {
+    private static final String SECRET = "It's a Secret to Everybody";
+    private static final String RELEASE = "{\"action\":\"published\",\"repository\":{\"full_name\":\"Alathra/Alathra-Resourcepack\"}}";
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final AtomicInteger triggered = new AtomicInteger();
+    private WebhookServer server;
+
+    @BeforeEach
+    void setUp() {
+        server = new WebhookServer(NOPLogger.NOP_LOGGER, triggered::incrementAndGet);
+        assertTrue(server.start("127.0.0.1", 0, "/github", SECRET, "Alathra/Alathra-Resourcepack"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    void signedReleaseTriggersUpdate() throws Exception {
+        final HttpResponse<String> response = deliver("release", RELEASE, sign(SECRET, RELEASE));
+        assertEquals(202, response.statusCode());
+        assertEquals(1, triggered.get());
+    }
+
+    @Test
+    void signatureIsCaseInsensitive() throws Exception {
+        final HttpResponse<String> response = deliver("release", RELEASE, sign(SECRET, RELEASE).toUpperCase(Locale.ROOT));
+        assertEquals(202, response.statusCode());
+        assertEquals(1, triggered.get());
+    }
+
+    @Test
+    void unsignedDeliveryIsRejected() throws Exception {
+        final HttpResponse<String> response = deliver("release", RELEASE, null);
+        assertEquals(401, response.statusCode());
+        assertEquals(0, triggered.get());
+    }
+
+    @Test
+    void deliveryWithWrongSecretIsRejected() throws Exception {
+        final HttpResponse<String> response = deliver("release", RELEASE, sign("wrong secret", RELEASE));
+        assertEquals(401, response.statusCode());
+        assertEquals(0, triggered.get());
+    }
+
+    @Test
+    void tamperedPayloadIsRejected() throws Exception {
+        final String tampered = RELEASE.replace("published", "deleted");
+        final HttpResponse<String> response = deliver("release", tampered, sign(SECRET, RELEASE));
+        assertEquals(401, response.statusCode());
+        assertEquals(0, triggered.get());
+    }
+
+    @Test
+    void pingIsAnswered() throws Exception {
+        final String payload = "{\"zen\":\"Keep it logically awesome.\"}";
+        final HttpResponse<String> response = deliver("ping", payload, sign(SECRET, payload));
+        assertEquals(200, response.statusCode());
+        assertEquals("pong", response.body());
+        assertEquals(0, triggered.get());
+    }
+
+    @Test
+    void otherEventsAreIgnored() throws Exception {
+        final HttpResponse<String> response = deliver("push", RELEASE, sign(SECRET, RELEASE));
+        assertEquals(202, response.statusCode());
+        assertEquals(0, triggered.get());
+    }
+
+    @Test
+    void releaseOfOtherRepositoryIsIgnored() throws Exception {
+        final String payload = "{\"action\":\"published\",\"repository\":{\"full_name\":\"Someone/Else\"}}";
+        final HttpResponse<String> response = deliver("release", payload, sign(SECRET, payload));
+        assertEquals(202, response.statusCode());
+        assertEquals(0, triggered.get());
+    }
+
+    @Test
+    void releaseWithoutRepositoryIsIgnored() throws Exception {
+        final String payload = "{\"action\":\"published\"}";
+        final HttpResponse<String> response = deliver("release", payload, sign(SECRET, payload));
+        assertEquals(202, response.statusCode());
+        assertEquals(0, triggered.get());
+    }
+
+    @Test
+    void malformedPayloadIsRejected() throws Exception {
+        final String payload = "{\"action\":";
+        final HttpResponse<String> response = deliver("release", payload, sign(SECRET, payload));
+        assertEquals(400, response.statusCode());
+        assertEquals(0, triggered.get());
+    }
+
+    @Test
+    void onlyPostIsAllowed() throws Exception {
+        final HttpResponse<String> response = client.send(
+            HttpRequest.newBuilder(uri()).GET().build(),
+            HttpResponse.BodyHandlers.ofString()
+        );
+        assertEquals(405, response.statusCode());
+        assertEquals("POST", response.headers().firstValue("Allow").orElse(null));
+    }
+
+    @Test
+    void oversizedPayloadIsRejected() throws Exception {
+        final String payload = "{\"padding\":\"" + "x".repeat(1024 * 1024) + "\"}";
+        final HttpResponse<String> response = deliver("release", payload, sign(SECRET, payload));
+        assertEquals(413, response.statusCode());
+        assertEquals(0, triggered.get());
+    }
+
+    @Test
+    void blankSecretDoesNotStart() {
+        final WebhookServer unsecured = new WebhookServer(NOPLogger.NOP_LOGGER, triggered::incrementAndGet);
+        assertFalse(unsecured.start("127.0.0.1", 0, "/github", " ", "Alathra/Alathra-Resourcepack"));
+        assertEquals(-1, unsecured.getPort());
+    }
+
+    private URI uri() {
+        return URI.create("http://127.0.0.1:" + server.getPort() + "/github");
+    }
+
+    private HttpResponse<String> deliver(String event, String payload, String signature) throws Exception {
+        final HttpRequest.Builder request = HttpRequest.newBuilder(uri())
+            .header("Content-Type", "application/json")
+            .header("X-GitHub-Event", event)
+            .POST(HttpRequest.BodyPublishers.ofString(payload));
+        if (signature != null)
+            request.header("X-Hub-Signature-256", signature);
+
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String sign(String secret, String payload) throws Exception {
+        final Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return "sha256=" + HexUtil.toString(mac.doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,179 @@
+package io.github.alathra.vpack.pack.optimize;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Optimizes a small pack with the kinds of files real packs contain.
+ */
+class PackOptimizerTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String MCMETA = """
+        {
+            "pack": {
+                "pack_format": 34,
+                "description": "Test pack \\u00a7a with colors"
+            }
+        }
+        """;
+    private static final String MODEL = """
+        {
+            "parent": "minecraft:item/generated",
+            "textures": {
+                "layer0": "minecraft:item/stick"
+            },
+            "display": {
+                "head": { "rotation": [ 0, 180.50, 0 ], "scale": [ 1.0, 1.0, 1.0 ] }
+            }
+        }
+        """;
+    private static final String LENIENT_JSON = "{\n    // A comment the game accepts\n    \"parent\": \"item/generated\",\n}\n";
+
+    @TempDir
+    Path temp;
+
+    private BufferedImage texture;
+    private Path source;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        texture = PngRecompressorTest.texture();
+        final byte[] sound = new byte[4096];
+        new Random(42).nextBytes(sound);
+
+        final Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("pack.mcmeta", MCMETA.getBytes(StandardCharsets.UTF_8));
+        entries.put("assets/minecraft/models/item/stick.json", MODEL.getBytes(StandardCharsets.UTF_8));
+        entries.put("assets/minecraft/models/item/lenient.json", LENIENT_JSON.getBytes(StandardCharsets.UTF_8));
+        entries.put("assets/minecraft/textures/item/stick.png", PngRecompressorTest.uncompressedPng(texture));
+        entries.put("assets/minecraft/sounds/stick.ogg", sound);
+        entries.put(".DS_Store", new byte[]{0, 0, 0, 1});
+        entries.put("__MACOSX/assets/._stick.json", new byte[]{0, 5, 22, 7});
+        entries.put("assets/minecraft/textures/item/stick.psd", new byte[]{'8', 'B', 'P', 'S'});
+        entries.put("assets/minecraft/textures/item/Thumbs.db", new byte[]{1, 2, 3});
+        source = zip(temp.resolve("pack.zip"), entries);
+    }
+
+    @Test
+    void minifiedJsonParsesToSameTree() throws IOException {
+        final Map<String, byte[]> optimized = optimize(new PackOptimizer(false), temp.resolve("optimized.zip"));
+
+        for (String name : new String[]{"pack.mcmeta", "assets/minecraft/models/item/stick.json"}) {
+            final byte[] original = read(source, name);
+            final byte[] minified = optimized.get(name);
+            assertTrue(minified.length < original.length, name + " was not minified");
+            assertEquals(MAPPER.readTree(original), MAPPER.readTree(minified), name + " changed when it was minified");
+        }
+    }
+
+    @Test
+    void invalidJsonIsCopiedVerbatim() throws IOException {
+        final Map<String, byte[]> optimized = optimize(new PackOptimizer(false), temp.resolve("optimized.zip"));
+        assertArrayEquals(LENIENT_JSON.getBytes(StandardCharsets.UTF_8), optimized.get("assets/minecraft/models/item/lenient.json"));
+    }
+
+    @Test
+    void junkEntriesAreDropped() throws IOException {
+        final PackOptimizer.Result result = new PackOptimizer(false).optimize(source, temp.resolve("optimized.zip"));
+        assertEquals(4, result.removed());
+        assertEquals(
+            Set.of(
+                "pack.mcmeta",
+                "assets/minecraft/models/item/stick.json",
+                "assets/minecraft/models/item/lenient.json",
+                "assets/minecraft/textures/item/stick.png",
+                "assets/minecraft/sounds/stick.ogg"
+            ),
+            read(temp.resolve("optimized.zip")).keySet()
+        );
+    }
+
+    @Test
+    void otherFilesAreCopiedVerbatim() throws IOException {
+        final Map<String, byte[]> optimized = optimize(new PackOptimizer(false), temp.resolve("optimized.zip"));
+        assertArrayEquals(read(source, "assets/minecraft/sounds/stick.ogg"), optimized.get("assets/minecraft/sounds/stick.ogg"));
+        assertArrayEquals(read(source, "assets/minecraft/textures/item/stick.png"), optimized.get("assets/minecraft/textures/item/stick.png"));
+    }
+
+    @Test
+    void recompressedTextureDecodesToSamePixels() throws IOException {
+        final Map<String, byte[]> optimized = optimize(new PackOptimizer(true), temp.resolve("optimized.zip"));
+        final byte[] png = optimized.get("assets/minecraft/textures/item/stick.png");
+        assertTrue(png.length < read(source, "assets/minecraft/textures/item/stick.png").length);
+        PngRecompressorTest.assertSamePixels(texture, ImageIO.read(new ByteArrayInputStream(png)));
+    }
+
+    @Test
+    void optimizedPackIsDeterministic() throws Exception {
+        final PackOptimizer optimizer = new PackOptimizer(true);
+        final PackOptimizer.Result first = optimizer.optimize(source, temp.resolve("first.zip"));
+        Thread.sleep(2100); // Past the two second resolution of zip entry times
+        final PackOptimizer.Result second = optimizer.optimize(source, temp.resolve("second.zip"));
+
+        final byte[] firstBytes = Files.readAllBytes(temp.resolve("first.zip"));
+        assertArrayEquals(firstBytes, Files.readAllBytes(temp.resolve("second.zip")));
+        assertArrayEquals(first.sha1(), second.sha1());
+        assertArrayEquals(MessageDigest.getInstance("SHA-1").digest(firstBytes), first.sha1());
+        assertTrue(first.size() < first.originalSize());
+    }
+
+    private Map<String, byte[]> optimize(PackOptimizer optimizer, Path target) throws IOException {
+        optimizer.optimize(source, target);
+        return read(target);
+    }
+
+    private static Path zip(Path file, Map<String, byte[]> entries) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file); ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.setLevel(0); // Like a pack zipped without compression, so every optimization makes it smaller
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue());
+                zip.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    private static Map<String, byte[]> read(Path file) throws IOException {
+        final Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            final Enumeration<? extends ZipEntry> iterator = zip.entries();
+            while (iterator.hasMoreElements()) {
+                final ZipEntry entry = iterator.nextElement();
+                try (InputStream in = zip.getInputStream(entry)) {
+                    entries.put(entry.getName(), in.readAllBytes());
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static byte[] read(Path file, String name) throws IOException {
+        return read(file).get(name);
+    }
+}
@@ -0,0 +1,122 @@
+package io.github.alathra.vpack.pack.optimize;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Recompresses PNG files written by ImageIO without compression.
+ */
+class PngRecompressorTest {
+    private static final int IHDR_END = 8 + 4 + 4 + 13 + 4; // Signature and the IHDR chunk, which always comes first
+
+    @Test
+    void recompressedPngDecodesToSamePixels() throws IOException {
+        final BufferedImage image = texture();
+        final byte[] png = uncompressedPng(image);
+
+        final byte[] recompressed = PngRecompressor.recompress(png);
+        assertNotNull(recompressed);
+        assertTrue(recompressed.length < png.length);
+        assertSamePixels(image, ImageIO.read(new ByteArrayInputStream(recompressed)));
+    }
+
+    @Test
+    void metadataChunksAreDropped() throws IOException {
+        final BufferedImage image = texture();
+        final byte[] png = uncompressedPng(image);
+        final byte[] withText = insertChunk(png, "tEXt", "Software\0Some Image Editor".getBytes(StandardCharsets.ISO_8859_1));
+
+        final byte[] recompressed = PngRecompressor.recompress(withText);
+        assertNotNull(recompressed);
+        assertFalse(new String(recompressed, StandardCharsets.ISO_8859_1).contains("tEXt"));
+        assertSamePixels(image, ImageIO.read(new ByteArrayInputStream(recompressed)));
+    }
+
+    @Test
+    void otherFilesAreLeftAlone() {
+        assertNull(PngRecompressor.recompress("not a png".getBytes(StandardCharsets.US_ASCII)));
+        assertNull(PngRecompressor.recompress(new byte[0]));
+    }
+
+    @Test
+    void truncatedPngIsLeftAlone() throws IOException {
+        final byte[] png = uncompressedPng(texture());
+        assertNull(PngRecompressor.recompress(Arrays.copyOf(png, png.length / 2)));
+    }
+
+    /**
+     * Creates a texture with some structure, so it compresses like a real one.
+     */
+    static BufferedImage texture() {
+        final BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++)
+                image.setRGB(x, y, (x * 4 << 24) | ((x ^ y) << 16) | (y * 4 << 8) | ((x + y) & 0xff));
+        }
+        return image;
+    }
+
+    /**
+     * Writes an image as a PNG whose image data is stored without compression.
+     */
+    static byte[] uncompressedPng(BufferedImage image) throws IOException {
+        final ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            final ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(1.0f); // Deflate level 0
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] insertChunk(byte[] png, String type, byte[] chunk) throws IOException {
+        final byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        final CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(chunk);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final DataOutputStream data = new DataOutputStream(out);
+        data.write(png, 0, IHDR_END);
+        data.writeInt(chunk.length);
+        data.write(typeBytes);
+        data.write(chunk);
+        data.writeInt((int) crc.getValue());
+        data.write(png, IHDR_END, png.length - IHDR_END);
+        return out.toByteArray();
+    }
+
+    static void assertSamePixels(BufferedImage expected, BufferedImage actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++)
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), "Pixel " + x + "," + y);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package io.github.alathra.vpack.pack.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.helpers.NOPLogger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Requests packs from connections served on a local port.
+ */
+class PackServerConnectionTest {
+    private static final String NAME = "0123456789abcdef0123456789abcdef01234567.zip";
+    private static final int SIZE = 256 * 1024;
+    private static final String LARGE_NAME = "89abcdef0123456789abcdef0123456789abcdef.zip";
+    private static final int LARGE_SIZE = 64 * 1024 * 1024; // More than the socket buffers of both sides hold
+    private static final int KEEP_ALIVE_MILLIS = 1000;
+
+    @TempDir
+    Path temp;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private byte[] pack;
+    private ServerSocketChannel serverChannel;
+    private final BlockingQueue<Thread> connections = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        pack = new byte[SIZE];
+        new Random(42).nextBytes(pack);
+        Files.write(temp.resolve(NAME), pack);
+
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress("127.0.0.1", 0));
+        final Thread acceptThread = new Thread(this::acceptLoop, "Pack Server Test");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        serverChannel.close();
+    }
+
+    private void acceptLoop() {
+        try {
+            while (true) {
+                final SocketChannel channel = serverChannel.accept();
+                final PackServerConnection connection = new PackServerConnection(
+                    channel, name -> Files.isRegularFile(temp.resolve(name)) ? temp.resolve(name) : null, KEEP_ALIVE_MILLIS, NOPLogger.NOP_LOGGER
+                );
+                final Thread thread = new Thread(connection);
+                thread.setDaemon(true);
+                thread.start();
+                connections.add(thread);
+            }
+        } catch (IOException ignored) {
+            // Closed by the test
+        }
+    }
+
+    @Test
+    void servesWholePack() throws Exception {
+        final HttpResponse<byte[]> response = get(NAME, null);
+        assertEquals(200, response.statusCode());
+        assertArrayEquals(pack, response.body());
+        assertEquals("application/zip", response.headers().firstValue("Content-Type").orElse(null));
+        assertEquals("bytes", response.headers().firstValue("Accept-Ranges").orElse(null));
+        assertEquals("\"" + NAME.substring(0, 40) + "\"", response.headers().firstValue("ETag").orElse(null));
+    }
+
+    @Test
+    void servesRange() throws Exception {
+        final HttpResponse<byte[]> response = get(NAME, "bytes=1000-1999");
+        assertEquals(206, response.statusCode());
+        assertEquals("bytes 1000-1999/" + SIZE, response.headers().firstValue("Content-Range").orElse(null));
+        assertArrayEquals(Arrays.copyOfRange(pack, 1000, 2000), response.body());
+    }
+
+    @Test
+    void servesOpenEndedRange() throws Exception {
+        final HttpResponse<byte[]> response = get(NAME, "bytes=100000-");
+        assertEquals(206, response.statusCode());
+        assertEquals("bytes 100000-" + (SIZE - 1) + "/" + SIZE, response.headers().firstValue("Content-Range").orElse(null));
+        assertArrayEquals(Arrays.copyOfRange(pack, 100000, SIZE), response.body());
+    }
+
+    @Test
+    void servesSuffixRange() throws Exception {
+        final HttpResponse<byte[]> response = get(NAME, "bytes=-16");
+        assertEquals(206, response.statusCode());
+        assertArrayEquals(Arrays.copyOfRange(pack, SIZE - 16, SIZE), response.body());
+    }
+
+    @Test
+    void clampsRangePastEndOfPack() throws Exception {
+        final HttpResponse<byte[]> response = get(NAME, "bytes=" + (SIZE - 10) + "-" + (SIZE * 2));
+        assertEquals(206, response.statusCode());
+        assertArrayEquals(Arrays.copyOfRange(pack, SIZE - 10, SIZE), response.body());
+    }
+
+    @Test
+    void rejectsRangeOutsidePack() throws Exception {
+        final HttpResponse<byte[]> response = get(NAME, "bytes=" + SIZE + "-");
+        assertEquals(416, response.statusCode());
+        assertEquals("bytes */" + SIZE, response.headers().firstValue("Content-Range").orElse(null));
+        assertEquals(0, response.body().length);
+    }
+
+    @Test
+    void servesWholePackForMultipleRanges() throws Exception {
+        final HttpResponse<byte[]> response = get(NAME, "bytes=0-9,20-29");
+        assertEquals(200, response.statusCode());
+        assertArrayEquals(pack, response.body());
+    }
+
+    @Test
+    void answersMatchingETagWithNotModified() throws Exception {
+        final HttpResponse<byte[]> response = client.send(
+            HttpRequest.newBuilder(uri(NAME)).header("If-None-Match", "\"" + NAME.substring(0, 40) + "\"").build(),
+            HttpResponse.BodyHandlers.ofByteArray()
+        );
+        assertEquals(304, response.statusCode());
+        assertEquals(0, response.body().length);
+    }
+
+    @Test
+    void answersHeadWithoutBody() throws Exception {
+        final HttpResponse<byte[]> response = client.send(
+            HttpRequest.newBuilder(uri(NAME)).method("HEAD", HttpRequest.BodyPublishers.noBody()).build(),
+            HttpResponse.BodyHandlers.ofByteArray()
+        );
+        assertEquals(200, response.statusCode());
+        assertEquals(String.valueOf(SIZE), response.headers().firstValue("Content-Length").orElse(null));
+        assertEquals(0, response.body().length);
+    }
+
+    @Test
+    void unknownPackIsNotFound() throws Exception {
+        assertEquals(404, get("ffffffffffffffffffffffffffffffffffffffff.zip", null).statusCode());
+    }
+
+    @Test
+    void onlyGetAndHeadAreAllowed() throws Exception {
+        final HttpResponse<byte[]> response = client.send(
+            HttpRequest.newBuilder(uri(NAME)).POST(HttpRequest.BodyPublishers.noBody()).build(),
+            HttpResponse.BodyHandlers.ofByteArray()
+        );
+        assertEquals(405, response.statusCode());
+        assertEquals("GET, HEAD", response.headers().firstValue("Allow").orElse(null));
+    }
+
+    @Test
+    void keepsConnectionOpenForFurtherRequests() throws IOException {
+        try (Socket socket = new Socket("127.0.0.1", serverChannel.socket().getLocalPort())) {
+            final OutputStream out = socket.getOutputStream();
+            final InputStream in = socket.getInputStream();
+
+            out.write(("GET /" + NAME + " HTTP/1.1\r\nHost: localhost\r\nRange: bytes=0-3\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            assertTrue(readHead(in).startsWith("HTTP/1.1 206 "));
+            assertArrayEquals(Arrays.copyOfRange(pack, 0, 4), in.readNBytes(4));
+
+            out.write(("GET /" + NAME + " HTTP/1.1\r\nHost: localhost\r\nRange: bytes=4-7\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            final String head = readHead(in);
+            assertTrue(head.startsWith("HTTP/1.1 206 "));
+            assertTrue(head.contains("Connection: close"));
+            assertArrayEquals(Arrays.copyOfRange(pack, 4, 8), in.readNBytes(4));
+            assertEquals(-1, in.read(), "The connection is closed after the last request");
+        }
+    }
+
+    @Test
+    void closesConnectionOfClientThatStoppedReading() throws Exception {
+        final byte[] large = new byte[LARGE_SIZE];
+        new Random(7).nextBytes(large);
+        Files.write(temp.resolve(LARGE_NAME), large);
+
+        try (Socket socket = new Socket()) {
+            socket.setReceiveBufferSize(4096);
+            socket.connect(new InetSocketAddress("127.0.0.1", serverChannel.socket().getLocalPort()));
+            final OutputStream out = socket.getOutputStream();
+            final InputStream in = socket.getInputStream();
+
+            out.write(("GET /" + LARGE_NAME + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            assertTrue(readHead(in).startsWith("HTTP/1.1 200 "));
+            assertArrayEquals(Arrays.copyOfRange(large, 0, 1024), in.readNBytes(1024));
+
+            // Stop reading mid-body, the connection must give up once no write made progress for the keep-alive timeout
+            final Thread connection = connections.poll(1, TimeUnit.SECONDS);
+            assertNotNull(connection);
+            connection.join(KEEP_ALIVE_MILLIS * 5L);
+            assertFalse(connection.isAlive(), "The connection is still waiting on a client that stopped reading");
+
+            long received = 1024;
+            try {
+                while (in.read() != -1)
+                    received++;
+            } catch (IOException ignored) {
+                // Reset by the server
+            }
+            assertTrue(received < LARGE_SIZE, "The client received the whole pack although it stopped reading");
+        }
+    }
+
+    private URI uri(String name) {
+        return URI.create("http://127.0.0.1:" + serverChannel.socket().getLocalPort() + "/" + name);
+    }
+
+    private HttpResponse<byte[]> get(String name, String range) throws Exception {
+        final HttpRequest.Builder request = HttpRequest.newBuilder(uri(name)).GET();
+        if (range != null)
+            request.header("Range", range);
+
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    /**
+     * Reads a response head up to the empty line that ends it.
+     */
+    private static String readHead(InputStream in) throws IOException {
+        final ByteArrayOutputStream head = new ByteArrayOutputStream();
+        int b;
+        while (!head.toString(StandardCharsets.US_ASCII).endsWith("\r\n\r\n") && (b = in.read()) != -1)
+            head.write(b);
+        return head.toString(StandardCharsets.US_ASCII);
+    }
+}
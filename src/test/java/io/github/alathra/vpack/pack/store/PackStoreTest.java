@@ -0,0 +1,269 @@
+package io.github.alathra.vpack.pack.store;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.alathra.vpack.pack.http.PackHttpClient;
+import io.github.alathra.vpack.utils.HexUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.helpers.NOPLogger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Downloads packs into a store from a server listening on a local port.
+ */
+class PackStoreTest {
+    private static final int SIZE = 256 * 1024;
+    private static final String ETAG = "\"v1\"";
+
+    @TempDir
+    Path temp;
+
+    private final AtomicInteger gets = new AtomicInteger();
+    private final AtomicLong served = new AtomicLong();
+    private final CountDownLatch requested = new CountDownLatch(1);
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+    private volatile byte[] pack;
+    private volatile PackStore.Budget budget = new PackStore.Budget(Long.MAX_VALUE, Integer.MAX_VALUE);
+    private volatile String lastRange;
+    private volatile String lastIfRange;
+    private volatile String lastIfNoneMatch;
+    private HttpServer server;
+    private ExecutorService executor;
+    private PackStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        pack = new byte[SIZE];
+        new Random(42).nextBytes(pack);
+
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+
+        final PackHttpClient http = new PackHttpClient(NOPLogger.NOP_LOGGER, Duration.ofSeconds(5), Duration.ofSeconds(5));
+        store = new PackStore(temp.resolve("store"), NOPLogger.NOP_LOGGER, http, () -> budget);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Serves {@link #pack} with a strong ETag, answering conditional and {@code bytes=<offset>-} range requests.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            final byte[] body = pack;
+            exchange.getResponseHeaders().set("ETag", ETAG);
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+
+            gets.incrementAndGet();
+            requested.countDown();
+            if (!gate.await(5, TimeUnit.SECONDS))
+                throw new IOException("The test did not release the response");
+
+            lastRange = exchange.getRequestHeaders().getFirst("Range");
+            lastIfRange = exchange.getRequestHeaders().getFirst("If-Range");
+            lastIfNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (ETAG.equals(lastIfNoneMatch)) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+
+            int offset = 0;
+            if (lastRange != null && (lastIfRange == null || lastIfRange.equals(ETAG)))
+                offset = Integer.parseInt(lastRange.substring("bytes=".length(), lastRange.length() - 1));
+            if (offset >= body.length) {
+                exchange.getResponseHeaders().set("Content-Range", "bytes */" + body.length);
+                exchange.sendResponseHeaders(416, -1);
+                return;
+            }
+
+            if (offset > 0) {
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + offset + "-" + (body.length - 1) + "/" + body.length);
+                exchange.sendResponseHeaders(206, body.length - offset);
+            } else {
+                exchange.sendResponseHeaders(200, body.length);
+            }
+            exchange.getResponseBody().write(body, offset, body.length - offset);
+            served.addAndGet(body.length - offset);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    @Test
+    void concurrentDownloadsOfSameUrlShareOneRequest() throws Exception {
+        final URL url = url("concurrent.zip");
+        gate = new CountDownLatch(1);
+
+        final ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            final Future<byte[]> first = callers.submit(() -> store.download(url));
+            assertTrue(requested.await(5, TimeUnit.SECONDS));
+            final Future<byte[]> second = callers.submit(() -> store.download(url));
+            Thread.sleep(200); // A second download would send its own request and write to the same partial file now
+            gate.countDown();
+
+            assertArrayEquals(sha1(pack), first.get(10, TimeUnit.SECONDS));
+            assertArrayEquals(sha1(pack), second.get(10, TimeUnit.SECONDS));
+        } finally {
+            callers.shutdownNow();
+        }
+
+        assertEquals(1, gets.get(), "The second download did not wait for the first one");
+        assertArrayEquals(pack, Files.readAllBytes(store.getFile(sha1(pack))));
+    }
+
+    @Test
+    void resumesInterruptedDownloadWithIfRange() throws Exception {
+        final URL url = url("resume.zip");
+        interrupted(url, Arrays.copyOf(pack, SIZE / 4), ETAG);
+
+        assertArrayEquals(sha1(pack), store.download(url));
+        assertEquals("bytes=" + SIZE / 4 + "-", lastRange);
+        assertEquals(ETAG, lastIfRange);
+        assertEquals(SIZE - SIZE / 4, served.get(), "The bytes of the partial file were downloaded again");
+        assertArrayEquals(pack, Files.readAllBytes(store.getFile(sha1(pack))));
+        assertFalse(Files.exists(partialFile(url, ".part")));
+        assertFalse(Files.exists(partialFile(url, ".resume")));
+    }
+
+    @Test
+    void resumeWithChangedFileDownloadsItAgain() throws Exception {
+        final URL url = url("changed.zip");
+        interrupted(url, Arrays.copyOf(pack, SIZE / 4), "\"v0\"");
+
+        assertArrayEquals(sha1(pack), store.download(url));
+        assertEquals(SIZE, served.get());
+        assertArrayEquals(pack, Files.readAllBytes(store.getFile(sha1(pack))));
+    }
+
+    @Test
+    void completePartialFileIsPromotedWhenServerConfirmsItsLength() throws Exception {
+        final URL url = url("complete.zip");
+        interrupted(url, pack, ETAG);
+
+        assertArrayEquals(sha1(pack), store.download(url));
+        assertEquals(1, gets.get(), "The pack was downloaded again although the partial file was complete");
+        assertEquals(0, served.get());
+        assertArrayEquals(pack, Files.readAllBytes(store.getFile(sha1(pack))));
+    }
+
+    @Test
+    void partialFileOfOtherLengthIsDownloadedAgain() throws Exception {
+        final URL url = url("longer.zip");
+        final byte[] longer = Arrays.copyOf(pack, SIZE + 100); // Not a prefix of the pack, the server answers 416
+        interrupted(url, longer, ETAG);
+
+        assertArrayEquals(sha1(pack), store.download(url));
+        assertEquals(2, gets.get());
+        assertEquals(SIZE, served.get());
+        assertArrayEquals(pack, Files.readAllBytes(store.getFile(sha1(pack))));
+        assertFalse(store.contains(sha1(longer)));
+    }
+
+    @Test
+    void notModifiedReusesStoredPack() throws Exception {
+        final URL url = url("revalidate.zip");
+        final byte[] stored = pack;
+        assertArrayEquals(sha1(stored), store.download(url));
+
+        final byte[] changed = stored.clone();
+        changed[0]++;
+        pack = changed; // Same ETag, so only a conditional request can return the stored pack
+        assertArrayEquals(sha1(stored), store.download(url));
+        assertEquals(ETAG, lastIfNoneMatch);
+        assertEquals(SIZE, served.get(), "The pack was transferred again although it was not modified");
+        assertTrue(store.contains(sha1(stored)));
+        assertFalse(Files.exists(partialFile(url, ".part")));
+    }
+
+    @Test
+    void pruneNeverDeletesPublishedPacks() throws Exception {
+        budget = new PackStore.Budget(Long.MAX_VALUE, 1);
+        final byte[] published = add("published");
+        store.setInUse(() -> Set.of(HexUtil.toString(published)));
+        final byte[] older = add("older");
+        final byte[] newest = add("newest");
+
+        assertTrue(store.contains(published));
+        assertFalse(store.contains(older));
+        assertTrue(store.contains(newest));
+
+        store.prune(Set.of());
+        assertTrue(store.contains(published));
+        assertTrue(Files.isRegularFile(store.getFile(published)));
+        assertFalse(store.contains(newest));
+    }
+
+    /**
+     * Leaves a partial download of a URL behind, as if it was interrupted.
+     */
+    private void interrupted(URL url, byte[] partial, String validator) throws Exception {
+        Files.createDirectories(partialFile(url, ".part").getParent());
+        Files.write(partialFile(url, ".part"), partial);
+        Files.writeString(partialFile(url, ".resume"), url + "\n" + validator, StandardCharsets.UTF_8);
+    }
+
+    private Path partialFile(URL url, String extension) throws Exception {
+        final String key = HexUtil.toString(sha1(url.toString().getBytes(StandardCharsets.UTF_8)));
+        return temp.resolve("store").resolve("partial").resolve(key + extension);
+    }
+
+    /**
+     * Adds a pack to the store without downloading it.
+     */
+    private byte[] add(String content) throws Exception {
+        final byte[] data = content.getBytes(StandardCharsets.UTF_8);
+        final byte[] sha1 = sha1(data);
+        final Path file = store.getIncomingFile(sha1);
+        Files.write(file, data);
+        store.addVerified(file, url(content + ".zip"), sha1);
+        Thread.sleep(5); // Orders the packs by their last use
+        return sha1;
+    }
+
+    private URL url(String name) throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/" + name);
+    }
+
+    private static byte[] sha1(byte[] data) throws Exception {
+        return MessageDigest.getInstance("SHA-1").digest(data);
+    }
+}